@@ -0,0 +1,142 @@
+package com.example.bench;
+
+import com.example.service.DocumentLoader;
+import com.example.service.EditorManager;
+import com.example.service.FileSaver;
+import com.example.service.LargeFileDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File open and save as the editor does them: through the
+ * {@link DocumentLoader} and the {@link FileSaver} for small files, and
+ * through a mapped document for files above the large-file threshold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileIoBenchmark {
+
+    // Lines paged into the editor when a large file is opened
+    private static final int WINDOW_LINES = 5000;
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private Path file;
+    private Path largeFile;
+    private Path largeTarget;
+    private String content;
+
+    /**
+     * Collects what a load delivers, as the editor tab would.
+     */
+    private static final class Collector implements DocumentLoader.Listener {
+        final StringBuilder text = new StringBuilder();
+        final CompletableFuture<LargeFileDocument> done = new CompletableFuture<>();
+        LargeFileDocument document;
+
+        @Override
+        public void onText(String chunk) {
+            text.append(chunk);
+        }
+
+        @Override
+        public void onLargeDocument(LargeFileDocument document) {
+            this.document = document;
+        }
+
+        @Override
+        public void onLoaded() {
+            done.complete(document);
+        }
+
+        @Override
+        public void onFailed(IOException error) {
+            done.completeExceptionally(error);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        content = Samples.source(size);
+        file = Files.createTempFile("jwrite-io-bench", ".java");
+        Files.writeString(file, content);
+
+        // Repeat the sample until it crosses the large-file threshold
+        largeFile = Files.createTempFile("jwrite-io-bench-large", ".java");
+        long written = 0;
+        while (written < EditorManager.DEFAULT_LARGE_FILE_THRESHOLD) {
+            Files.writeString(largeFile, content, StandardOpenOption.APPEND);
+            written += content.length();
+        }
+        // Large saves go here, so the file that is opened stays the same size
+        largeTarget = Files.createTempFile("jwrite-io-bench-saved", ".java");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(largeFile);
+        Files.deleteIfExists(largeTarget);
+    }
+
+    private static Collector load(Path path) throws Exception {
+        Collector collector = new Collector();
+        DocumentLoader.start(path, EditorManager.DEFAULT_LARGE_FILE_THRESHOLD, collector, Runnable::run);
+        collector.done.get();
+        return collector;
+    }
+
+    @Benchmark
+    public String open() throws Exception {
+        return load(file).text.toString();
+    }
+
+    @Benchmark
+    public FileSaver.Status save() throws Exception {
+        // A new saver knows nothing of the file, so the unchanged text is still written
+        FileSaver.Result result = new FileSaver().save(file, content).get();
+        if (result.error() != null) {
+            throw result.error();
+        }
+        return result.status();
+    }
+
+    @Benchmark
+    public String openLarge() throws Exception {
+        try (LargeFileDocument document = load(largeFile).document) {
+            return document.readLines(0, document.windowEnd(0, WINDOW_LINES, Long.MAX_VALUE));
+        }
+    }
+
+    @Benchmark
+    public void saveLarge() throws Exception {
+        try (LargeFileDocument document = load(largeFile).document) {
+            int end = document.windowEnd(0, WINDOW_LINES, Long.MAX_VALUE);
+            document.updateLines(0, end, "// edited\n" + document.readLines(0, end));
+            document.save(largeTarget);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.bench;
+
+import com.example.service.FileManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Listing the project tree for a synthetic directory with thousands of entries.
+ * Opening a directory only lists its top level; expanding every directory
+ * costs the full walk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileTreeBenchmark {
+
+    // Files per directory; directories nest FAN_OUT wide and DEPTH deep
+    private static final int FILES_PER_DIRECTORY = 20;
+    private static final int FAN_OUT = 6;
+
+    /** Directory depth: 2 gives about 900 entries, 3 about 5,000 and 4 about 33,000. */
+    @Param({"2", "3", "4"})
+    public int depth;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("jwrite-tree-bench");
+        createLevel(root, depth);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int listTopLevel() throws IOException {
+        return FileManager.listDirectory(root).size();
+    }
+
+    @Benchmark
+    public int listAll() throws IOException {
+        return listRecursively(root);
+    }
+
+    private static int listRecursively(Path dir) throws IOException {
+        int count = 0;
+        for (FileManager.DirectoryEntry entry : FileManager.listDirectory(dir)) {
+            count++;
+            if (entry.directory()) {
+                count += listRecursively(entry.file().toPath());
+            }
+        }
+        return count;
+    }
+
+    private static void createLevel(Path dir, int remaining) throws IOException {
+        for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+            Files.createFile(dir.resolve("File" + i + (i % 3 == 0 ? ".java" : ".txt")));
+        }
+        if (remaining > 0) {
+            for (int i = 0; i < FAN_OUT; i++) {
+                createLevel(Files.createDirectory(dir.resolve("dir" + i)), remaining - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.bench;
+
+import com.example.util.JavaFormatter;
+import com.example.util.TokenStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Format Document, with and without the tokens an open editor already has.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private List<String> lines;
+    private TokenStore tokens;
+
+    @Setup
+    public void setUp() {
+        // Unindented input, so every line is rewritten
+        lines = Samples.source(size).lines().map(String::strip).toList();
+        tokens = TokenStore.lex(lines);
+    }
+
+    @Benchmark
+    public String format() {
+        return JavaFormatter.format(lines, tokens);
+    }
+
+    @Benchmark
+    public String lexAndFormat() {
+        return JavaFormatter.format(lines, TokenStore.lex(lines));
+    }
+}
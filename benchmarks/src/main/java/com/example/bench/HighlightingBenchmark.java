@@ -0,0 +1,55 @@
+package com.example.bench;
+
+import com.example.service.SyntaxHighlighter;
+import com.example.util.JavaLexer;
+import com.example.util.TokenBuffer;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexing and full-document span building, the work behind every highlight pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HighlightingBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private String source;
+    private final TokenBuffer tokens = new TokenBuffer();
+
+    @Setup
+    public void setUp() {
+        source = Samples.source(size);
+    }
+
+    @Benchmark
+    public int lex() {
+        tokens.clear();
+        JavaLexer.lex(source, 0, source.length(), JavaLexer.STATE_CODE, tokens);
+        return tokens.size();
+    }
+
+    @Benchmark
+    public StyleSpans<Collection<String>> computeHighlighting() {
+        return SyntaxHighlighter.computeHighlighting(source);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.bench;
+
+/**
+ * Synthetic Java sources for the benchmarks, built by repeating a class
+ * body that exercises every token kind the lexer knows about.
+ */
+final class Samples {
+
+    private static final String HEADER = """
+            package com.example.sample;
+
+            import java.util.ArrayList;
+            import java.util.List;
+
+            /**
+             * Generated sample used by the JWrite benchmarks.
+             */
+            public class Sample {
+            """;
+
+    private static final String MEMBER = """
+                private static final int MAX_COUNT_%1$d = 0x1F + %1$d;
+                private final List<String> names%1$d = new ArrayList<>();
+
+                @Override
+                public String toString() {
+                    // Line comment with { braces } and "quotes"
+                    String text = "value " + names%1$d.size() + '\\n';
+                    /* Block comment
+                     * spanning lines ( [ {
+                     */
+                    for (int i = 0; i < MAX_COUNT_%1$d; i++) {
+                        if (i %% 2 == 0 && text.length() > 3.5e2) {
+                            text += String.valueOf(i);
+                        }
+                    }
+                    return text;
+                }
+
+            """;
+
+    /** Roughly 2 KB, 160 KB and 4 MB of source. */
+    static String source(String size) {
+        int members = switch (size) {
+            case "small" -> 3;
+            case "medium" -> 300;
+            case "huge" -> 7500;
+            default -> throw new IllegalArgumentException("Unknown size: " + size);
+        };
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (int i = 0; i < members; i++) {
+            sb.append(MEMBER.formatted(i));
+        }
+        return sb.append("}\n").toString();
+    }
+
+    private Samples() {
+    }
+}
@@ -1,5 +1,7 @@
 package com.example;
 
+import com.example.service.EditJournal;
+import com.example.service.FileSaver;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -8,12 +10,15 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The main entry point for the JWrite Java editor application.
  */
 public class App extends Application {
 
+    private MainController controller;
+
     @Override
     public void start(Stage primaryStage) throws IOException {
         // Use a path relative to the root of the resources folder
@@ -23,7 +28,9 @@ public class App extends Application {
             System.exit(1);
         }
 
-        Parent root = FXMLLoader.load(fxmlUrl);
+        FXMLLoader loader = new FXMLLoader(fxmlUrl);
+        Parent root = loader.load();
+        controller = loader.getController();
         Scene scene = new Scene(root, 1600, 900);
 
         primaryStage.setTitle("JWrite - Java Code Editor");
@@ -31,6 +38,22 @@ public class App extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        if (controller != null) {
+            try {
+                controller.saveSession().get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // The session of the last periodic save is kept
+            }
+            controller.shutdown();
+        }
+        // Unsaved edits are recovered on the next start
+        EditJournal.awaitPending(5, TimeUnit.SECONDS);
+        // Let saves that are still being written finish
+        FileSaver.awaitPending(10, TimeUnit.SECONDS);
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -1,7 +1,20 @@
 package com.example;
 
+import com.example.service.CompileService;
+import com.example.service.DirectoryDeleter;
 import com.example.service.EditorManager;
 import com.example.service.FileManager;
+import com.example.service.FileMetadataCache;
+import com.example.service.FindInFilesPanel;
+import com.example.service.FindReplacePanel;
+import com.example.service.GoToFilePalette;
+import com.example.service.OutputConsole;
+import com.example.service.ProgramRunner;
+import com.example.service.SessionStore;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.Scene;
@@ -10,15 +23,19 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
+import javafx.util.Duration;
+import org.fxmisc.richtext.CodeArea;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Future;
 
 /**
  * Enhanced main controller with VS Code-like features for JWrite.
@@ -31,21 +48,46 @@ public class MainController {
     @FXML
     private TreeView<File> fileTreeView;
     @FXML
+    private VBox editorPane;
+    @FXML
     private TabPane editorTabPane;
     @FXML
-    private TextArea outputConsole;
+    private TabPane bottomTabPane;
+    @FXML
+    private Tab searchTab;
+    @FXML
+    private Tab outputTab;
     @FXML
     private Label statusLabel;
 
     private FileManager fileManager;
     private EditorManager editorManager;
+    private final FindReplacePanel findReplacePanel = new FindReplacePanel();
+    private final FindInFilesPanel findInFilesPanel = new FindInFilesPanel();
+    private final OutputConsole outputConsole = new OutputConsole();
+    private GoToFilePalette goToFilePalette;
+    // Compiles in this JVM, from the editor's text
+    private final CompileService compileService = new CompileService();
+    // Runs programs in a JVM that is kept between runs
+    private final ProgramRunner programRunner = new ProgramRunner();
+    // The program the console's input goes to; FX thread only
+    private ProgramRunner.Run currentRun;
+    private final SessionStore sessionStore = new SessionStore(SessionStore.defaultLocation());
+    // Saves the session now and then, so a crash loses little of it
+    private final Timeline sessionSaver = new Timeline(new KeyFrame(Duration.seconds(60), e -> saveSession()));
 
     @FXML
     public void initialize() {
         this.fileManager = new FileManager();
         this.editorManager = new EditorManager(editorTabPane, statusLabel);
+        this.goToFilePalette = new GoToFilePalette(fileManager);
+        goToFilePalette.setOnOpen(editorManager::openFileInEditor);
         
         setupFileTreeView();
+        setupFindReplace();
+        setupFindInFiles();
+        outputTab.setContent(outputConsole);
+        outputConsole.setOnInput(this::sendInput, this::endInput);
         setupKeyboardShortcuts();
         setupContextMenus();
         
@@ -53,22 +95,74 @@ public class MainController {
         applyDarkTheme();
         
         statusLabel.setText("Welcome to JWrite! Open a directory to begin.");
+        restoreSession();
+        compileService.warmUp();
+    }
+
+    /**
+     * Reopens the directory, expanded directories and tabs of the last
+     * session and any files with unsaved edits, then starts saving the
+     * session periodically.
+     */
+    private void restoreSession() {
+        SessionStore.Session session = sessionStore.load();
+        if (session != null) {
+            Path root = session.getRoot();
+            if (root != null && root.toFile().isDirectory()) {
+                openDirectory(root.toFile());
+                fileManager.expandWhenListed(session.getExpanded());
+            }
+            editorManager.restoreTabs(session);
+        }
+        editorManager.recoverUnsavedEdits();
+        sessionSaver.setCycleCount(Animation.INDEFINITE);
+        sessionSaver.play();
+    }
+
+    /**
+     * Writes the current session in the background, e.g. when the
+     * application exits. Must be called on the FX thread.
+     */
+    public Future<?> saveSession() {
+        File root = fileManager.getRootDirectory();
+        return sessionStore.save(editorManager.createSnapshot(root != null ? root.toPath().toAbsolutePath() : null,
+                fileManager.getExpandedDirectories()));
     }
     
     private void setupFileTreeView() {
         fileManager.setTreeView(fileTreeView);
-        fileTreeView.setCellFactory(tv -> new FileManager.FileTreeCell());
+        fileTreeView.setCellFactory(tv -> new FileManager.FileTreeCell(fileManager.getMetadataCache()));
         fileTreeView.getSelectionModel().selectedItemProperty().addListener(
                 (observable, oldValue, newValue) -> {
                     if (newValue != null) {
                         File selectedFile = newValue.getValue();
-                        if (selectedFile.isFile()) {
+                        FileMetadataCache.Metadata metadata = fileManager.getMetadata(selectedFile);
+                        if (metadata != null ? !metadata.isDirectory() : selectedFile.isFile()) {
                             editorManager.openFileInEditor(selectedFile);
                         }
                     }
                 });
     }
 
+    private void setupFindReplace() {
+        editorPane.getChildren().add(0, findReplacePanel);
+        // Search whichever tab is selected while the bar is open
+        editorTabPane.getSelectionModel().selectedItemProperty().addListener(
+                (observable, oldValue, newValue) -> findReplacePanel.setCodeArea(editorManager.getCurrentCodeArea()));
+    }
+
+    private void setupFindInFiles() {
+        searchTab.setContent(findInFilesPanel);
+        findInFilesPanel.setFilterSource(fileManager::getIgnoreFilter);
+        findInFilesPanel.setOnOpenMatch((file, match) -> {
+            if (match != null) {
+                editorManager.openFileAt(file, match.line(), match.column(), match.length());
+            } else {
+                editorManager.openFileInEditor(file);
+            }
+        });
+    }
+
     private void setupKeyboardShortcuts() {
         Scene scene = rootPane.getScene();
         if (scene != null) {
@@ -136,6 +230,11 @@ public class MainController {
                 new KeyCodeCombination(KeyCode.H, KeyCombination.CONTROL_DOWN),
                 this::handleReplace
             );
+
+            scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.F, KeyCombination.CONTROL_DOWN, KeyCombination.ALT_DOWN),
+                this::handleFindInFiles
+            );
             
             // File tree operations
             scene.getAccelerators().put(
@@ -182,7 +281,7 @@ public class MainController {
         delete.setOnAction(e -> handleDeleteFromContext());
         
         MenuItem refresh = new MenuItem("Refresh");
-        refresh.setOnAction(e -> fileManager.refreshTree());
+        refresh.setOnAction(e -> handleRefreshFileTree());
         
         contextMenu.getItems().addAll(newFile, newFolder, new SeparatorMenuItem(), 
                                     rename, delete, new SeparatorMenuItem(), refresh);
@@ -214,12 +313,17 @@ public class MainController {
         directoryChooser.setTitle("Open Project Directory");
         File dir = directoryChooser.showDialog(rootPane.getScene().getWindow());
         if (dir != null) {
-            TreeItem<File> rootItem = fileManager.createFileTree(dir);
-            fileTreeView.setRoot(rootItem);
-            statusLabel.setText("Opened: " + dir.getAbsolutePath());
+            openDirectory(dir);
         }
     }
 
+    private void openDirectory(File dir) {
+        TreeItem<File> rootItem = fileManager.createFileTree(dir);
+        fileTreeView.setRoot(rootItem);
+        findInFilesPanel.cancel();
+        statusLabel.setText("Opened: " + dir.getAbsolutePath());
+    }
+
     @FXML
     private void handleNewFile() {
         editorManager.createNewFile();
@@ -270,9 +374,32 @@ public class MainController {
     @FXML
     private void handleRefreshFileTree() {
         fileManager.refreshTree();
+        fileManager.rebuildIndex();
         statusLabel.setText("File tree refreshed");
     }
 
+    @FXML
+    private void handleEditExcludes() {
+        TextInputDialog dialog = new TextInputDialog(String.join(", ", fileManager.getExcludes()));
+        dialog.setTitle("Excluded Files");
+        dialog.setHeaderText("Patterns hidden from the file tree, Go to File and Find in Files.\n"
+                + "Same syntax as .gitignore, separated by commas. .gitignore files are applied as well.");
+        dialog.setContentText("Exclude:");
+        dialog.getEditor().setPrefColumnCount(40);
+
+        Optional<String> result = dialog.showAndWait();
+        result.ifPresent(text -> {
+            List<String> excludes = new ArrayList<>();
+            for (String pattern : text.split(",")) {
+                if (!pattern.isBlank()) {
+                    excludes.add(pattern.strip());
+                }
+            }
+            fileManager.setExcludes(excludes);
+            statusLabel.setText("Excludes updated");
+        });
+    }
+
     @FXML
     private void handleShowShortcuts() {
         showShortcutsDialog();
@@ -280,8 +407,7 @@ public class MainController {
 
     @FXML
     private void handleGoToFile() {
-        // TODO: Implement go to file functionality
-        statusLabel.setText("Go to file functionality coming soon...");
+        goToFilePalette.show(rootPane.getScene().getWindow());
     }
 
     @FXML
@@ -291,14 +417,19 @@ public class MainController {
 
     @FXML
     private void handleFind() {
-        // TODO: Implement find functionality
-        statusLabel.setText("Find functionality coming soon...");
+        findReplacePanel.show(editorManager.getCurrentCodeArea(), false);
     }
 
     @FXML
     private void handleReplace() {
-        // TODO: Implement replace functionality
-        statusLabel.setText("Replace functionality coming soon...");
+        findReplacePanel.show(editorManager.getCurrentCodeArea(), true);
+    }
+
+    @FXML
+    private void handleFindInFiles() {
+        bottomTabPane.getSelectionModel().select(searchTab);
+        CodeArea codeArea = editorManager.getCurrentCodeArea();
+        findInFilesPanel.focusQuery(codeArea != null ? codeArea.getSelectedText() : null);
     }
 
     @FXML
@@ -323,6 +454,7 @@ public class MainController {
             Editor Operations:
             • Ctrl+F - Find
             • Ctrl+H - Replace
+            • Ctrl+Alt+F - Find in Files
             • Ctrl+Tab - Next Tab
             • Ctrl+Shift+Tab - Previous Tab
             
@@ -413,11 +545,9 @@ public class MainController {
             
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
-                boolean success = selectedFile.isDirectory() ? 
-                                fileManager.deleteDirectory(selectedFile) : 
-                                fileManager.deleteFile(selectedFile);
-                
-                if (success) {
+                if (selectedFile.isDirectory()) {
+                    deleteDirectory(selectedFile);
+                } else if (fileManager.deleteFile(selectedFile)) {
                     statusLabel.setText("Deleted: " + selectedFile.getName());
                 } else {
                     statusLabel.setText("Failed to delete");
@@ -426,6 +556,67 @@ public class MainController {
         }
     }
 
+    /**
+     * Deletes a directory in the background. A dialog to cancel it appears
+     * if the delete takes more than a moment; failures are listed at the end.
+     */
+    private void deleteDirectory(File directory) {
+        Alert progress = new Alert(Alert.AlertType.INFORMATION, "", ButtonType.CANCEL);
+        progress.setTitle("Deleting");
+        progress.setHeaderText("Deleting " + directory.getName() + "…");
+        progress.initOwner(fileTreeView.getScene().getWindow());
+        statusLabel.setText("Deleting " + directory.getName() + "…");
+
+        PauseTransition showDelay = new PauseTransition(Duration.millis(400));
+        DirectoryDeleter.Handle handle = fileManager.deleteDirectory(directory,
+                count -> {
+                    progress.setContentText(String.format("%,d items deleted", count));
+                    statusLabel.setText(String.format("Deleting %s… %,d items", directory.getName(), count));
+                },
+                report -> {
+                    showDelay.stop();
+                    progress.close();
+                    if (report.isComplete()) {
+                        statusLabel.setText(String.format("Deleted: %s (%,d items)", directory.getName(), report.deleted()));
+                    } else if (report.cancelled() && report.failureCount() == 0) {
+                        statusLabel.setText(String.format("Delete cancelled after %,d items", report.deleted()));
+                    } else {
+                        statusLabel.setText("Failed to delete " + directory.getName());
+                        showDeleteFailures(report);
+                    }
+                });
+        progress.setOnHidden(event -> {
+            if (!handle.isDone()) {
+                handle.cancel();
+            }
+        });
+        showDelay.setOnFinished(event -> {
+            if (!handle.isDone()) {
+                progress.show();
+            }
+        });
+        showDelay.play();
+    }
+
+    private void showDeleteFailures(DirectoryDeleter.Report report) {
+        StringBuilder details = new StringBuilder();
+        for (DirectoryDeleter.Failure failure : report.failures()) {
+            details.append(report.directory().relativize(failure.path())).append(": ").append(failure.reason()).append('\n');
+        }
+        if (report.failureCount() > report.failures().size()) {
+            details.append(String.format("… and %,d more%n", report.failureCount() - report.failures().size()));
+        }
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Delete Failed");
+        alert.setHeaderText(String.format("%,d items in %s could not be deleted; %,d were.",
+                report.failureCount(), report.directory().getFileName(), report.deleted()));
+        TextArea list = new TextArea(details.toString());
+        list.setEditable(false);
+        list.setPrefRowCount(Math.min(12, report.failures().size() + 1));
+        alert.getDialogPane().setContent(list);
+        alert.show();
+    }
+
     @FXML
     private void handleRunCode() {
         File currentFile = editorManager.getCurrentFile();
@@ -439,120 +630,131 @@ public class MainController {
             return;
         }
 
-        // Save the file before running
-        editorManager.saveCurrentFile();
+        // Compiled as it is in the editor; there is no need to save first
+        String source = editorManager.getCurrentText();
+        if (source == null) {
+            showError("The file is still opening or is open in large file mode.");
+            return;
+        }
         outputConsole.clear();
-        statusLabel.setText("Running " + currentFile.getName() + "...");
-
-        // Run the compilation and execution in a background thread
-        new Thread(() -> {
-            try {
-                String fileDir = currentFile.getParent();
-                String className = extractClassName(currentFile);
-                
-                if (className == null) {
-                    showError("Could not find a valid class declaration in the file.");
+
+        // Read from the editor's tokens on the FX thread, before going to the background
+        String className = editorManager.findCurrentClassName();
+        if (className == null) {
+            showError("Could not find a valid class declaration in the file.");
+            return;
+        }
+        // The class of this file, not one of the same name elsewhere in the tree
+        String mainClass = CompileService.qualifiedName(source, className);
+        statusLabel.setText("Compiling " + currentFile.getName() + "...");
+
+        // Starts a runner JVM while compiling, unless one is ready in that directory
+        programRunner.prestart(currentFile.getParentFile().toPath());
+        long started = System.nanoTime();
+        // Only what changed since the last run, and what depends on it, is compiled
+        compileService.compileProject(currentFile.toPath(), source).whenComplete((result, error) -> {
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            Platform.runLater(() -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    outputConsole.append("Error: " + cause.getMessage() + "\n", true);
+                    statusLabel.setText("Compilation failed");
                     return;
                 }
-
-                // Compile the Java file
-                ProcessBuilder compileBuilder = new ProcessBuilder("javac", "-encoding", "UTF-8", currentFile.getName());
-                compileBuilder.directory(new File(fileDir));
-                compileBuilder.redirectErrorStream(true);
-                
-                // Read compilation output
-                Process compileProcess = compileBuilder.start();
-                StringBuilder compileOutput = new StringBuilder();
-                
-                try (var reader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(compileProcess.getInputStream(), "UTF-8"))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        compileOutput.append(line).append("\n");
-                        final String outputLine = line;
-                        Platform.runLater(() -> outputConsole.appendText(outputLine + "\n"));
-                    }
+                for (CompileService.Problem problem : result.problems()) {
+                    outputConsole.append(problem + "\n", problem.isError());
                 }
-
-                int compileExitCode = compileProcess.waitFor();
-                
-                if (compileExitCode != 0) {
-                    Platform.runLater(() -> {
-                        outputConsole.appendText("\n--- Compilation failed with exit code: " + compileExitCode + " ---\n");
-                        statusLabel.setText("Compilation failed");
-                    });
+                if (!result.success()) {
+                    long errors = result.errorCount();
+                    outputConsole.append("\n--- Compilation failed: " + errors
+                            + (errors == 1 ? " error" : " errors") + " ---\n");
+                    statusLabel.setText("Compilation failed");
                     return;
                 }
-                
-                Platform.runLater(() -> {
-                    outputConsole.appendText("\n--- Compilation successful. Running program... ---\n");
-                    statusLabel.setText("Running program...");
-                });
+                String compiled = result.compiled() == 0 ? "Up to date"
+                        : "Compiled " + result.compiled() + (result.compiled() == 1 ? " source" : " sources")
+                        + " in " + millis + " ms";
+                outputConsole.append("\n--- " + compiled + ". Running program... ---\n");
+                statusLabel.setText("Running program...");
+                // Started after the banner, so the program's output follows it
+                runProgram(currentFile, result, mainClass);
+            });
+        });
+    }
 
-                // Run the compiled class
-                ProcessBuilder runBuilder = new ProcessBuilder("java", "-Dfile.encoding=UTF-8", "-cp", ".", className);
-                runBuilder.directory(new File(fileDir));
-                runBuilder.redirectErrorStream(true);
-                
-                Process runProcess = runBuilder.start();
-                
-                // Read program output in a separate thread to prevent deadlocks
-                new Thread(() -> {
-                    try (var reader = new java.io.BufferedReader(
-                            new java.io.InputStreamReader(runProcess.getInputStream(), "UTF-8"))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            final String outputLine = line;
-                            Platform.runLater(() -> outputConsole.appendText(outputLine + "\n"));
+    /**
+     * Runs the compiled program in the warm runner JVM, from the source's
+     * directory; FX thread only. A program that is still running is stopped
+     * first.
+     */
+    private void runProgram(File sourceFile, CompileService.Result result, String mainClass) {
+        try {
+            ProgramRunner.Run run = programRunner.run(sourceFile.getParentFile().toPath(), mainClass,
+                    result.classes(), new ProgramRunner.Listener() {
+                        @Override
+                        public void onOutput(String text, boolean error) {
+                            // Blocks while the console is far behind, which holds the program back
+                            outputConsole.append(text, error);
                         }
-                    } catch (IOException e) {
-                        Platform.runLater(() -> outputConsole.appendText("Error reading program output: " + e.getMessage() + "\n"));
-                    }
-                }).start();
-                
-                // Wait for the process to complete
-                int runExitCode = runProcess.waitFor();
-                
-                Platform.runLater(() -> {
-                    if (runExitCode == 0) {
-                        statusLabel.setText("Program completed successfully");
-                    } else {
-                        statusLabel.setText("Program exited with code: " + runExitCode);
-                    }
-                });
 
-            } catch (IOException | InterruptedException e) {
-                Platform.runLater(() -> {
-                    outputConsole.appendText("\nError: " + e.getMessage() + "\n");
-                    statusLabel.setText("Execution failed");
-                });
+                        @Override
+                        public void onExit(ProgramRunner.Exit exit) {
+                            Platform.runLater(() -> {
+                                if (exit.status() == 0) {
+                                    statusLabel.setText("Program completed successfully");
+                                } else if (exit.status() == -1) {
+                                    statusLabel.setText("Program stopped");
+                                } else {
+                                    statusLabel.setText("Program exited with code: " + exit.status());
+                                }
+                                if (currentRun != null && currentRun.isEnded()) {
+                                    currentRun = null;
+                                    outputConsole.setInputEnabled(false);
+                                }
+                            });
+                        }
+                    });
+            if (!run.isEnded()) {
+                currentRun = run;
+                outputConsole.setInputEnabled(true);
             }
-        }).start();
+        } catch (IOException e) {
+            outputConsole.append("\nError: " + e.getMessage() + "\n", true);
+            statusLabel.setText("Execution failed");
+        }
     }
-    
-    private String extractClassName(File javaFile) throws IOException {
-        String fileContent = new String(Files.readAllBytes(javaFile.toPath()), "UTF-8");
-        
-        // First try to find public class
-        Pattern pattern = Pattern.compile("public\\s+class\\s+(\\w+)");
-        Matcher matcher = pattern.matcher(fileContent);
-        if (matcher.find()) {
-            return matcher.group(1);
+
+    private void sendInput(String text) {
+        try {
+            if (currentRun == null || !currentRun.input(text)) {
+                outputConsole.setInputEnabled(false);
+            }
+        } catch (IOException e) {
+            showError("Could not send input to the program: " + e.getMessage());
         }
-        
-        // If no public class, try any class
-        pattern = Pattern.compile("class\\s+(\\w+)");
-        matcher = pattern.matcher(fileContent);
-        if (matcher.find()) {
-            return matcher.group(1);
+    }
+
+    private void endInput() {
+        try {
+            if (currentRun != null) {
+                currentRun.closeInput();
+            }
+        } catch (IOException e) {
+            showError("Could not send input to the program: " + e.getMessage());
         }
-        
-        return null;
+        outputConsole.setInputEnabled(false);
+    }
+
+    /**
+     * Stops the runner JVM and any program in it; called when the application exits.
+     */
+    public void shutdown() {
+        programRunner.close();
     }
     
     private void showError(String message) {
         Platform.runLater(() -> {
-            outputConsole.appendText("Error: " + message + "\n");
+            outputConsole.append("Error: " + message + "\n", true);
             statusLabel.setText(message);
         });
     }
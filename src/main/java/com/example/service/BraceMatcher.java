@@ -0,0 +1,177 @@
+package com.example.service;
+
+import com.example.util.TokenKind;
+import com.example.util.TokenStore;
+import javafx.application.Platform;
+import org.fxmisc.richtext.CodeArea;
+
+/**
+ * Highlights the bracket next to the caret together with its match. Matching
+ * walks the document's tokens, so brackets inside strings and comments are
+ * ignored without scanning the text again.
+ */
+public class BraceMatcher {
+
+    // Give up on unbalanced code instead of walking the whole document
+    private static final int MAX_SCAN_LINES = 2000;
+
+    private final CodeArea codeArea;
+    private final SyntaxHighlighter highlighter;
+
+    // Absolute positions of the highlighted pair, -1 when nothing is highlighted
+    private int markedOpen = -1;
+    private int markedClose = -1;
+    private int markedKind;
+    private boolean updatePending;
+
+    public BraceMatcher(CodeArea codeArea, SyntaxHighlighter highlighter) {
+        this.codeArea = codeArea;
+        this.highlighter = highlighter;
+        codeArea.caretPositionProperty().addListener((obs, oldPos, newPos) -> scheduleUpdate());
+        // Re-highlighting replaces the spans of the marked brackets
+        highlighter.setOnHighlighted(this::update);
+    }
+
+    /**
+     * The caret moves while an edit is still being applied; match once the
+     * highlighter has seen the edit, and only once per pulse.
+     */
+    private void scheduleUpdate() {
+        if (!updatePending) {
+            updatePending = true;
+            Platform.runLater(() -> {
+                updatePending = false;
+                update();
+            });
+        }
+    }
+
+    private void update() {
+        clearMarks();
+        int paragraph = codeArea.getCurrentParagraph();
+        int column = codeArea.getCaretColumn();
+        long[] tokens = highlighter.lineTokens(paragraph);
+        String text = codeArea.getParagraph(paragraph).getText();
+
+        // Prefer the bracket right after the caret, then the one before it
+        int index = bracketAt(tokens, text, column);
+        if (index < 0) {
+            index = bracketAt(tokens, text, column - 1);
+        }
+        if (index < 0) {
+            return;
+        }
+        int kind = TokenStore.kind(tokens[index]);
+        int start = TokenStore.start(tokens[index]);
+        boolean opening = isOpening(text.charAt(start));
+
+        int match = opening
+                ? findClose(paragraph, index, kind)
+                : findOpen(paragraph, index, kind);
+        if (match < 0) {
+            return;
+        }
+        int position = codeArea.getAbsolutePosition(paragraph, start);
+        mark(opening ? position : match, opening ? match : position, kind);
+    }
+
+    private static int bracketAt(long[] tokens, String text, int column) {
+        for (int i = 0; i < tokens.length; i++) {
+            int start = TokenStore.start(tokens[i]);
+            if (start == column && isBracket(tokens[i], text)) {
+                return i;
+            }
+            if (start > column) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private int findClose(int paragraph, int index, int kind) {
+        int depth = 0;
+        int lastParagraph = Math.min(codeArea.getParagraphs().size() - 1, paragraph + MAX_SCAN_LINES);
+        for (int line = paragraph; line <= lastParagraph; line++) {
+            long[] tokens = highlighter.lineTokens(line);
+            String text = codeArea.getParagraph(line).getText();
+            for (int i = line == paragraph ? index : 0; i < tokens.length; i++) {
+                if (TokenStore.kind(tokens[i]) != kind || !isBracket(tokens[i], text)) {
+                    continue;
+                }
+                int start = TokenStore.start(tokens[i]);
+                depth += isOpening(text.charAt(start)) ? 1 : -1;
+                if (depth == 0) {
+                    return codeArea.getAbsolutePosition(line, start);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int findOpen(int paragraph, int index, int kind) {
+        int depth = 0;
+        int firstParagraph = Math.max(0, paragraph - MAX_SCAN_LINES);
+        for (int line = paragraph; line >= firstParagraph; line--) {
+            long[] tokens = highlighter.lineTokens(line);
+            String text = codeArea.getParagraph(line).getText();
+            for (int i = line == paragraph ? index : tokens.length - 1; i >= 0; i--) {
+                if (TokenStore.kind(tokens[i]) != kind || !isBracket(tokens[i], text)) {
+                    continue;
+                }
+                int start = TokenStore.start(tokens[i]);
+                depth += isOpening(text.charAt(start)) ? -1 : 1;
+                if (depth == 0) {
+                    return codeArea.getAbsolutePosition(line, start);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void mark(int open, int close, int kind) {
+        codeArea.setStyle(open, open + 1, TokenKind.matchedStyles(kind));
+        codeArea.setStyle(close, close + 1, TokenKind.matchedStyles(kind));
+        markedOpen = open;
+        markedClose = close;
+        markedKind = kind;
+    }
+
+    private void clearMarks() {
+        if (markedOpen < 0) {
+            return;
+        }
+        // The marks may have been edited away or restyled since
+        unmark(markedOpen);
+        unmark(markedClose);
+        markedOpen = -1;
+        markedClose = -1;
+    }
+
+    private void unmark(int position) {
+        if (position < codeArea.getLength()
+                && TokenKind.matchedStyles(markedKind).equals(codeArea.getStyleOfChar(position))) {
+            codeArea.setStyle(position, position + 1, TokenKind.styles(markedKind));
+        }
+    }
+
+    /**
+     * Checks the token against the text as well; right after an edit the
+     * caret can move before the edited paragraph has been lexed again.
+     */
+    private static boolean isBracket(long token, String text) {
+        int kind = TokenStore.kind(token);
+        if (kind != TokenKind.PAREN && kind != TokenKind.BRACE && kind != TokenKind.BRACKET) {
+            return false;
+        }
+        int start = TokenStore.start(token);
+        if (start >= text.length()) {
+            return false;
+        }
+        char c = text.charAt(start);
+        return isOpening(c) || c == ')' || c == '}' || c == ']';
+    }
+
+    private static boolean isOpening(char c) {
+        return c == '(' || c == '{' || c == '[';
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.service;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the last compiles of a source tree produced, per source file: the
+ * hash of the text it was compiled from, the top-level types it declares
+ * and refers to, and its class files. From that it works out which sources
+ * a compile has to include: the changed ones and, transitively, those that
+ * refer to a type a changed or deleted source declares or used to declare.
+ */
+public final class CompileCache {
+
+    /**
+     * A compiled source. {@code size} and {@code lastModified} are the file's
+     * when it was hashed, so an untouched file need not be read again.
+     */
+    public record Unit(Path source, long size, long lastModified, byte[] hash, Set<String> types,
+                       Set<String> references, Map<String, byte[]> classes) {
+    }
+
+    private final Path root;
+    private final Map<Path, Unit> units = new HashMap<>();
+
+    public CompileCache(Path root) {
+        this.root = root;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Unit get(Path source) {
+        return units.get(source);
+    }
+
+    public int size() {
+        return units.size();
+    }
+
+    /**
+     * Returns the sources that have to be compiled, given the hash of every
+     * source there is now.
+     */
+    public Set<Path> dirty(Map<Path, byte[]> hashes) {
+        Set<Path> dirty = new HashSet<>();
+        Set<String> changedTypes = new HashSet<>();
+        for (Map.Entry<Path, byte[]> entry : hashes.entrySet()) {
+            Unit unit = units.get(entry.getKey());
+            if (unit == null || !Arrays.equals(unit.hash(), entry.getValue())) {
+                dirty.add(entry.getKey());
+                if (unit != null) {
+                    changedTypes.addAll(unit.types());
+                }
+            }
+        }
+        for (Unit unit : units.values()) {
+            if (!hashes.containsKey(unit.source())) {
+                // Deleted: whatever referred to its types has to be checked again
+                changedTypes.addAll(unit.types());
+            }
+        }
+
+        Deque<String> queue = new ArrayDeque<>(changedTypes);
+        while (!queue.isEmpty()) {
+            String type = queue.poll();
+            for (Unit unit : units.values()) {
+                if (hashes.containsKey(unit.source()) && unit.references().contains(type)
+                        && dirty.add(unit.source())) {
+                    for (String declared : unit.types()) {
+                        if (changedTypes.add(declared)) {
+                            queue.add(declared);
+                        }
+                    }
+                }
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Records a source that compiled, replacing what it produced before.
+     */
+    public void put(Unit unit) {
+        units.put(unit.source(), unit);
+    }
+
+    /**
+     * Drops the sources that no longer exist, with their class files.
+     */
+    public void retainAll(Set<Path> sources) {
+        units.keySet().retainAll(sources);
+    }
+
+    /**
+     * Returns the class files of every compiled source, by binary name.
+     */
+    public Map<String, byte[]> classes() {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (Unit unit : units.values()) {
+            classes.putAll(unit.classes());
+        }
+        return classes;
+    }
+
+    /**
+     * Returns the class files of the sources not in {@code excluded}, for
+     * the compiler to read instead of compiling those sources again.
+     */
+    public Map<String, byte[]> classesExcept(Set<Path> excluded) {
+        Map<String, byte[]> classes = new HashMap<>();
+        for (Unit unit : units.values()) {
+            if (!excluded.contains(unit.source())) {
+                classes.putAll(unit.classes());
+            }
+        }
+        return classes;
+    }
+}
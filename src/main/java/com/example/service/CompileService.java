@@ -0,0 +1,565 @@
+package com.example.service;
+
+import com.example.util.Hashes;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles Java source inside the editor's JVM. The system compiler and its
+ * file manager are created once and reused, so after the first compile the
+ * JDK's classes are loaded and hot; sources come straight from the editor
+ * and class files are kept in memory. Compiles run one at a time on a
+ * background thread.
+ * <p>
+ * {@link #compileProject} compiles the whole source tree a file belongs to,
+ * incrementally: a {@link CompileCache} remembers each source's hash, the
+ * top-level types it declares and uses, and its class files, so only
+ * changed sources and those depending on them are compiled again. The
+ * others are read by the compiler from their cached class files.
+ */
+public class CompileService {
+
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A compiler message. {@code line} and {@code column} are 1-based, or -1
+     * if the message is not about a position in a source.
+     */
+    public record Problem(Diagnostic.Kind kind, String source, long line, long column, String message) {
+
+        public boolean isError() {
+            return kind == Diagnostic.Kind.ERROR;
+        }
+
+        /**
+         * Formats the problem the way javac prints it.
+         */
+        @Override
+        public String toString() {
+            String label = kind.name().toLowerCase(Locale.ROOT).replace('_', ' ');
+            if (source == null) {
+                return label + ": " + message;
+            }
+            return source + ":" + line + ":" + column + ": " + label + ": " + message;
+        }
+    }
+
+    /**
+     * Outcome of a compile: the messages, the class files by binary name if
+     * it succeeded, and how many sources were compiled to get them.
+     */
+    public record Result(boolean success, List<Problem> problems, Map<String, byte[]> classes, int compiled) {
+
+        public long errorCount() {
+            return problems.stream().filter(Problem::isError).count();
+        }
+
+        /**
+         * Writes the class files below {@code directory}, in package directories.
+         */
+        public void writeClasses(Path directory) throws IOException {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                Path file = directory.resolve(entry.getKey().replace('.', '/') + ".class");
+                Files.createDirectories(file.getParent());
+                Files.write(file, entry.getValue());
+            }
+        }
+    }
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    // Compile thread only
+    private StandardJavaFileManager fileManager;
+    private CompileCache cache;
+
+    /**
+     * True if this JVM comes with a compiler, i.e. runs on a JDK.
+     */
+    public boolean isAvailable() {
+        return compiler != null;
+    }
+
+    /**
+     * Compiles a throwaway class in the background, so the first real
+     * compile does not pay for loading the compiler.
+     */
+    public void warmUp() {
+        if (isAvailable()) {
+            compile(Path.of("Warm.java"), "class Warm { }", List.of());
+        }
+    }
+
+    /**
+     * Compiles {@code source}, the text of {@code file}, e.g. as it is in the
+     * editor. Other classes it refers to are looked up as sources in the
+     * file's directory and compiled along with it. {@code options} are passed
+     * on to the compiler.
+     */
+    public CompletableFuture<Result> compile(Path file, String source, List<String> options) {
+        if (!isAvailable()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("No Java compiler available; JWrite has to run on a JDK"));
+        }
+        return CompletableFuture.supplyAsync(() -> run(file, source, options), EXECUTOR);
+    }
+
+    /**
+     * Compiles the source tree {@code file} belongs to, with {@code source}
+     * as the file's text, and returns the class files of the whole tree.
+     * The tree's root is found from the file's package declaration; a file
+     * in the default package is compiled with the other files of its
+     * directory, not those of its subdirectories. Only sources that changed
+     * since the last compile of the tree, and the sources depending on them,
+     * are compiled.
+     */
+    public CompletableFuture<Result> compileProject(Path file, String source) {
+        if (!isAvailable()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("No Java compiler available; JWrite has to run on a JDK"));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return runProject(file.toAbsolutePath(), source);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    private StandardJavaFileManager fileManager() throws IOException {
+        if (fileManager == null) {
+            fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+            // Programs see the JDK and their own classes, not the editor's class path
+            fileManager.setLocation(StandardLocation.CLASS_PATH, List.of());
+        }
+        return fileManager;
+    }
+
+    private Result runProject(Path file, String source) throws IOException {
+        Path root = sourceRoot(file, source);
+        if (cache == null || !cache.getRoot().equals(root)) {
+            cache = new CompileCache(root);
+        }
+
+        // Hash every source; files whose size and mtime are unchanged keep their hash
+        Map<Path, byte[]> hashes = new HashMap<>();
+        Map<Path, String> texts = new HashMap<>();
+        Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        texts.put(file, source);
+        hashes.put(file, Hashes.sha256(source));
+        // A file in the default package only goes with the other files of its directory
+        boolean packaged = !root.equals(file.getParent());
+        for (Path path : listSources(root, packaged)) {
+            if (path.equals(file)) {
+                continue;
+            }
+            BasicFileAttributes fileAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+            attributes.put(path, fileAttributes);
+            CompileCache.Unit unit = cache.get(path);
+            if (unit != null && unit.size() == fileAttributes.size()
+                    && unit.lastModified() == fileAttributes.lastModifiedTime().toMillis()) {
+                hashes.put(path, unit.hash());
+            } else {
+                String text = read(path);
+                texts.put(path, text);
+                hashes.put(path, Hashes.sha256(text));
+            }
+        }
+
+        Set<Path> dirty = cache.dirty(hashes);
+        cache.retainAll(hashes.keySet());
+        if (dirty.isEmpty()) {
+            return new Result(true, List.of(), cache.classes(), 0);
+        }
+        List<SourceFile> sources = new ArrayList<>();
+        Map<URI, Path> paths = new HashMap<>();
+        for (Path path : dirty) {
+            String text = texts.get(path);
+            SourceFile sourceFile = new SourceFile(path, text != null ? text : read(path));
+            sources.add(sourceFile);
+            paths.put(sourceFile.toUri(), path);
+        }
+
+        StandardJavaFileManager standard = fileManager();
+        // Sources that are not compiled are only seen as their cached class files
+        standard.setLocation(StandardLocation.SOURCE_PATH, List.of());
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        MemoryFileManager memory = new MemoryFileManager(standard, cache.classesExcept(dirty));
+        JavacTask task = (JavacTask) compiler.getTask(null, memory, diagnostics,
+                List.of("-encoding", "UTF-8"), null, sources);
+        Iterable<? extends CompilationUnitTree> units = task.parse();
+        task.analyze();
+        boolean success = !hasErrors(diagnostics);
+        if (!success) {
+            return new Result(false, problems(diagnostics), Map.of(), sources.size());
+        }
+        // The trees are only attributed until the class files are generated
+        Map<Path, Set<String>> declared = new HashMap<>();
+        Map<Path, Set<String>> references = new HashMap<>();
+        for (CompilationUnitTree unit : units) {
+            // The compiler hands back its own wrappers of the source files
+            Path path = paths.get(unit.getSourceFile().toUri());
+            Set<String> types = new HashSet<>();
+            Set<String> used = new HashSet<>();
+            collectTypes(task, unit, types, used);
+            used.removeAll(types);
+            declared.put(path, types);
+            references.put(path, used);
+        }
+        task.generate();
+        success = !hasErrors(diagnostics);
+        if (success) {
+            Map<Path, Map<String, byte[]>> classesBySource = memory.classesBySource();
+            for (Path path : dirty) {
+                BasicFileAttributes fileAttributes = attributes.get(path);
+                // The editor's text may differ from the file; its file is hashed again next time
+                long size = path.equals(file) ? -1 : fileAttributes.size();
+                long lastModified = path.equals(file) ? -1 : fileAttributes.lastModifiedTime().toMillis();
+                cache.put(new CompileCache.Unit(path, size, lastModified, hashes.get(path), declared.get(path),
+                        references.get(path), classesBySource.getOrDefault(path, Map.of())));
+            }
+        }
+        return new Result(success, problems(diagnostics), success ? cache.classes() : Map.of(), sources.size());
+    }
+
+    /**
+     * Adds the top-level types a compilation unit declares, and the
+     * top-level types of everything it names, by binary name.
+     */
+    private static void collectTypes(JavacTask task, CompilationUnitTree unit, Set<String> declared,
+                                     Set<String> references) {
+        Trees trees = Trees.instance(task);
+        Elements elements = task.getElements();
+        for (Tree declaration : unit.getTypeDecls()) {
+            if (trees.getElement(TreePath.getPath(unit, declaration)) instanceof TypeElement type) {
+                declared.add(elements.getBinaryName(type).toString());
+            }
+        }
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitIdentifier(IdentifierTree tree, Void unused) {
+                add(trees.getElement(getCurrentPath()));
+                return super.visitIdentifier(tree, unused);
+            }
+
+            @Override
+            public Void visitMemberSelect(MemberSelectTree tree, Void unused) {
+                add(trees.getElement(getCurrentPath()));
+                return super.visitMemberSelect(tree, unused);
+            }
+
+            private void add(Element element) {
+                // Members and nested types count as uses of their top-level type
+                while (element != null && !(element.getEnclosingElement() instanceof PackageElement)) {
+                    element = element.getEnclosingElement();
+                }
+                if (element instanceof TypeElement type) {
+                    references.add(elements.getBinaryName(type).toString());
+                }
+            }
+        }.scan(unit, null);
+    }
+
+    /**
+     * Returns the binary name of the top-level class {@code simpleName}
+     * declared in {@code source}, qualified by the source's package.
+     */
+    public static String qualifiedName(String source, String simpleName) {
+        Matcher matcher = PACKAGE.matcher(source);
+        return matcher.find() ? matcher.group(1) + "." + simpleName : simpleName;
+    }
+
+    private static boolean hasErrors(DiagnosticCollector<JavaFileObject> diagnostics) {
+        return diagnostics.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR);
+    }
+
+    /**
+     * Returns the directory the file's package starts in, or its own
+     * directory if the package does not match where the file is.
+     */
+    private static Path sourceRoot(Path file, String source) {
+        Path directory = file.getParent();
+        Matcher matcher = PACKAGE.matcher(source);
+        if (!matcher.find()) {
+            return directory;
+        }
+        Path root = directory;
+        String[] names = matcher.group(1).split("\\.");
+        for (int i = names.length - 1; i >= 0; i--) {
+            if (root == null || root.getFileName() == null || !root.getFileName().toString().equals(names[i])) {
+                return directory;
+            }
+            root = root.getParent();
+        }
+        return root != null ? root : directory;
+    }
+
+    /**
+     * Returns the sources in {@code root} and, if {@code recursive}, in the
+     * directories below it.
+     */
+    private static List<Path> listSources(Path root, boolean recursive) throws IOException {
+        List<Path> sources = new ArrayList<>();
+        Files.walkFileTree(root, Set.of(), recursive ? Integer.MAX_VALUE : 1, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                // Hidden directories (.git, .jwrite, ...) hold no sources of the program
+                return !dir.equals(root) && dir.getFileName().toString().startsWith(".")
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".java")) {
+                    sources.add(file.toAbsolutePath());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return sources;
+    }
+
+    private static String read(Path path) throws IOException {
+        // Malformed bytes are replaced rather than failing the whole compile
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    private static List<Problem> problems(DiagnosticCollector<JavaFileObject> diagnostics) {
+        List<Problem> problems = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            JavaFileObject from = diagnostic.getSource();
+            problems.add(new Problem(diagnostic.getKind(), from != null ? sourceName(from) : null,
+                    diagnostic.getLineNumber(), diagnostic.getColumnNumber(), diagnostic.getMessage(Locale.getDefault())));
+        }
+        return problems;
+    }
+
+    private Result run(Path file, String source, List<String> options) {
+        StandardJavaFileManager standard;
+        try {
+            standard = fileManager();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        MemoryFileManager memory = new MemoryFileManager(standard, Map.of());
+        List<String> arguments = new ArrayList<>(List.of("-encoding", "UTF-8", "-implicit:class"));
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            arguments.addAll(List.of("-sourcepath", directory.toString()));
+        }
+        arguments.addAll(options);
+
+        boolean success = compiler.getTask(null, memory, diagnostics, arguments, null,
+                List.of(new SourceFile(file, source))).call();
+
+        return new Result(success, problems(diagnostics), success ? memory.classes() : Map.of(), 1);
+    }
+
+    private static String sourceName(JavaFileObject source) {
+        if (source instanceof SourceFile sourceFile) {
+            return sourceFile.file.getFileName().toString();
+        }
+        return source.getName();
+    }
+
+    /**
+     * A compilation unit whose text is given rather than read from disk.
+     */
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final Path file;
+        private final String source;
+
+        SourceFile(Path file, String source) {
+            super(file.toAbsolutePath().toUri(), Kind.SOURCE);
+            this.file = file;
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    /**
+     * A class file written to memory.
+     */
+    private static final class ClassFile extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Path source;
+
+        ClassFile(String className, Path source) {
+            super(URI.create("memory:///" + className.replace('.', '/') + ".class"), Kind.CLASS);
+            this.source = source;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            bytes.reset();
+            return bytes;
+        }
+    }
+
+    /**
+     * A class file from the compile cache, read by the compiler in place of
+     * its source.
+     */
+    private static final class CachedClass extends SimpleJavaFileObject {
+
+        private final String className;
+        private final byte[] bytes;
+
+        CachedClass(String className, byte[] bytes) {
+            super(URI.create("memory:///" + className.replace('.', '/') + ".class"), Kind.CLASS);
+            this.className = className;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+
+    /**
+     * Reads everything through the standard file manager, plus the given
+     * class files on the class path, but keeps the compiler's output in
+     * memory.
+     */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ClassFile> output = new LinkedHashMap<>();
+        private final Map<String, byte[]> classPath;
+
+        MemoryFileManager(StandardJavaFileManager fileManager, Map<String, byte[]> classPath) {
+            super(fileManager);
+            this.classPath = classPath;
+        }
+
+        @Override
+        public boolean hasLocation(Location location) {
+            return location == StandardLocation.CLASS_PATH && !classPath.isEmpty() || super.hasLocation(location);
+        }
+
+        @Override
+        public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+                                             boolean recurse) throws IOException {
+            Iterable<JavaFileObject> listed = super.list(location, packageName, kinds, recurse);
+            if (location != StandardLocation.CLASS_PATH || classPath.isEmpty()
+                    || !kinds.contains(JavaFileObject.Kind.CLASS)) {
+                return listed;
+            }
+            List<JavaFileObject> files = new ArrayList<>();
+            listed.forEach(files::add);
+            for (Map.Entry<String, byte[]> entry : classPath.entrySet()) {
+                String name = entry.getKey();
+                int dot = name.lastIndexOf('.');
+                String classPackage = dot < 0 ? "" : name.substring(0, dot);
+                if (classPackage.equals(packageName)
+                        || recurse && classPackage.startsWith(packageName.isEmpty() ? "" : packageName + ".")) {
+                    files.add(new CachedClass(name, entry.getValue()));
+                }
+            }
+            return files;
+        }
+
+        @Override
+        public String inferBinaryName(Location location, JavaFileObject file) {
+            return file instanceof CachedClass cached ? cached.className : super.inferBinaryName(location, file);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) throws IOException {
+            if (kind != JavaFileObject.Kind.CLASS) {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            ClassFile file = new ClassFile(className, sibling instanceof SourceFile source ? source.file : null);
+            output.put(className, file);
+            return file;
+        }
+
+        @Override
+        public void close() {
+            // The standard file manager is reused by the next compile
+        }
+
+        Map<String, byte[]> classes() {
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            output.forEach((name, file) -> classes.put(name, file.bytes.toByteArray()));
+            return classes;
+        }
+
+        /**
+         * Returns the class files, by binary name, of each source they were
+         * compiled from.
+         */
+        Map<Path, Map<String, byte[]>> classesBySource() {
+            Map<Path, Map<String, byte[]>> classes = new HashMap<>();
+            output.forEach((name, file) -> classes.computeIfAbsent(file.source, source -> new LinkedHashMap<>())
+                    .put(name, file.bytes.toByteArray()));
+            return classes;
+        }
+    }
+}
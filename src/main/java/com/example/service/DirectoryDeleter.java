@@ -0,0 +1,276 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Deletes a directory tree in the background. Like {@code Files.walkFileTree}
+ * it never follows symbolic links and removes a directory after its entries,
+ * but each directory is listed in its own fork/join task, and wide
+ * directories delete their files in parallel batches. Failures do not stop
+ * the walk; they are collected in the report, and the directories above a
+ * failed entry are left in place.
+ */
+public final class DirectoryDeleter {
+
+    private static final int FILES_PER_TASK = 64;
+    // Failures beyond this many are counted but not listed
+    private static final int MAX_REPORTED_FAILURES = 100;
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("directory-deleter-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    /**
+     * An entry that could not be deleted and why.
+     */
+    public record Failure(Path path, String reason) {
+    }
+
+    /**
+     * Outcome of a delete. {@code failures} lists at most
+     * {@value #MAX_REPORTED_FAILURES} of the {@code failureCount} failures.
+     */
+    public record Report(Path directory, int deleted, int failureCount, List<Failure> failures, boolean cancelled) {
+
+        /**
+         * True if the directory is gone.
+         */
+        public boolean isComplete() {
+            return failureCount == 0 && !cancelled;
+        }
+    }
+
+    private DirectoryDeleter() {
+    }
+
+    /**
+     * Starts deleting {@code directory} and everything below it.
+     * {@code onProgress} is called on a worker thread with the number of
+     * entries deleted so far, at most every {@value #PROGRESS_INTERVAL_MILLIS}
+     * ms, and {@code onDone} once the delete has finished or was cancelled.
+     */
+    public static Handle start(Path directory, IntConsumer onProgress, Consumer<Report> onDone) {
+        Handle handle = new Handle(directory, onProgress, onDone);
+        POOL.execute(handle.task);
+        return handle;
+    }
+
+    /**
+     * A running delete.
+     */
+    public static final class Handle {
+
+        private final Path directory;
+        private final IntConsumer onProgress;
+        private final RecursiveTask<Report> task;
+
+        private final AtomicInteger deleted = new AtomicInteger();
+        private final AtomicInteger failureCount = new AtomicInteger();
+        private final Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+        private final AtomicLong lastProgress = new AtomicLong();
+        private volatile boolean cancelled;
+
+        private Handle(Path directory, IntConsumer onProgress, Consumer<Report> onDone) {
+            this.directory = directory;
+            this.onProgress = onProgress;
+            this.task = new RecursiveTask<>() {
+                @Override
+                protected Report compute() {
+                    try {
+                        new DirectoryTask(Handle.this, directory).invoke();
+                    } finally {
+                        onDone.accept(report());
+                    }
+                    return report();
+                }
+            };
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Stops the delete; entries that are being deleted still go.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        /**
+         * Number of entries deleted so far.
+         */
+        public int getDeleted() {
+            return deleted.get();
+        }
+
+        /**
+         * Waits for the delete to finish and returns its report.
+         */
+        public Report join() {
+            return task.join();
+        }
+
+        private Report report() {
+            return new Report(directory, deleted.get(), failureCount.get(), List.copyOf(failures), cancelled);
+        }
+
+        /**
+         * Deletes one entry; returns false and records why if it is still there.
+         */
+        private boolean delete(Path path) {
+            try {
+                Files.delete(path);
+            } catch (NoSuchFileException e) {
+                // Already gone
+            } catch (IOException e) {
+                fail(path, e);
+                return false;
+            }
+            int count = deleted.incrementAndGet();
+            long now = System.currentTimeMillis();
+            long last = lastProgress.get();
+            if (now - last >= PROGRESS_INTERVAL_MILLIS && lastProgress.compareAndSet(last, now)) {
+                onProgress.accept(count);
+            }
+            return true;
+        }
+
+        private void fail(Path path, IOException e) {
+            if (failureCount.incrementAndGet() <= MAX_REPORTED_FAILURES) {
+                failures.add(new Failure(path, reason(e)));
+            }
+        }
+    }
+
+    private static String reason(IOException e) {
+        if (e instanceof AccessDeniedException) {
+            return "Access denied";
+        } else if (e instanceof DirectoryNotEmptyException) {
+            return "Directory not empty";
+        } else if (e instanceof FileSystemException fileSystemException && fileSystemException.getReason() != null) {
+            return fileSystemException.getReason();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    /**
+     * Empties and then deletes one directory; the result tells whether it is gone.
+     */
+    private static final class DirectoryTask extends RecursiveTask<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Handle handle;
+        private final Path directory;
+
+        DirectoryTask(Handle handle, Path directory) {
+            this.handle = handle;
+            this.directory = directory;
+        }
+
+        @Override
+        protected Boolean compute() {
+            List<ForkJoinTask<Boolean>> forked = new ArrayList<>();
+            List<Path> files = new ArrayList<>(FILES_PER_TASK);
+            boolean complete = true;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    if (handle.cancelled) {
+                        complete = false;
+                        break;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (NoSuchFileException e) {
+                        continue;
+                    } catch (IOException e) {
+                        handle.fail(path, e);
+                        complete = false;
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        forked.add(new DirectoryTask(handle, path).fork());
+                    } else {
+                        // Files, and links without their targets
+                        files.add(path);
+                        if (files.size() == FILES_PER_TASK) {
+                            forked.add(new FileBatchTask(handle, files).fork());
+                            files = new ArrayList<>(FILES_PER_TASK);
+                        }
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                return true;
+            } catch (IOException e) {
+                handle.fail(directory, e);
+                complete = false;
+            }
+            complete &= new FileBatchTask(handle, files).compute();
+            for (int i = forked.size() - 1; i >= 0; i--) {
+                complete &= forked.get(i).join();
+            }
+            // A directory that still has entries cannot go; its failures are already reported
+            return complete && !handle.cancelled && handle.delete(directory);
+        }
+    }
+
+    private static final class FileBatchTask extends RecursiveTask<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Handle handle;
+        private final List<Path> files;
+
+        FileBatchTask(Handle handle, List<Path> files) {
+            this.handle = handle;
+            this.files = files;
+        }
+
+        @Override
+        protected Boolean compute() {
+            boolean complete = true;
+            for (Path file : files) {
+                if (handle.cancelled) {
+                    return false;
+                }
+                complete &= handle.delete(file);
+            }
+            return complete;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a set of directories (not their subtrees) and reports the changed
+ * entries in batches. Events are collected until the directories have been
+ * quiet for a moment, so a burst such as a branch checkout arrives as one
+ * batch. A directory with too many changes, or whose events overflowed, is
+ * reported as needing a full listing instead.
+ */
+public class DirectoryWatcher implements Closeable {
+
+    // A batch ends after this long without events, or this long after it started
+    private static final long QUIET_MILLIS = 100;
+    private static final long MAX_DELAY_MILLIS = 1000;
+    // More changed entries than this in one directory are reported as an overflow
+    private static final int MAX_CHANGES_PER_DIRECTORY = 256;
+
+    /**
+     * Changed entries of one directory. If {@link #isOverflow()} the changes
+     * are unknown and the directory has to be listed again.
+     */
+    public static final class Changes {
+        private final Set<Path> paths = new LinkedHashSet<>();
+        private boolean overflow;
+
+        public Set<Path> getPaths() {
+            return paths;
+        }
+
+        public boolean isOverflow() {
+            return overflow;
+        }
+
+        private void add(Path path) {
+            if (overflow) {
+                return;
+            }
+            paths.add(path);
+            if (paths.size() > MAX_CHANGES_PER_DIRECTORY) {
+                overflow();
+            }
+        }
+
+        private void overflow() {
+            overflow = true;
+            paths.clear();
+        }
+    }
+
+    private final WatchService service;
+    private final Consumer<Map<Path, Changes>> listener;
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+
+    /**
+     * Starts watching; {@code listener} is called on the watcher thread with
+     * each batch of changes, keyed by directory.
+     */
+    public DirectoryWatcher(Consumer<Map<Path, Changes>> listener) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+        Thread thread = new Thread(this::run, "directory-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching {@code directory}; returns false if it cannot be watched.
+     */
+    public boolean register(Path directory) {
+        if (directories.containsKey(directory)) {
+            return true;
+        }
+        try {
+            WatchKey key = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            keys.put(key, directory);
+            directories.put(directory, key);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            return false;
+        }
+    }
+
+    public void unregister(Path directory) {
+        WatchKey key = directories.remove(directory);
+        if (key != null) {
+            key.cancel();
+            keys.remove(key);
+        }
+    }
+
+    public void unregisterAll() {
+        for (Path directory : directories.keySet()) {
+            unregister(directory);
+        }
+    }
+
+    public boolean isWatching(Path directory) {
+        return directories.containsKey(directory);
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Map<Path, Changes> batch = new LinkedHashMap<>();
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                while (key != null) {
+                    collect(key, batch);
+                    long wait = Math.min(QUIET_MILLIS, deadline - System.currentTimeMillis());
+                    key = wait > 0 ? service.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+                if (!batch.isEmpty()) {
+                    listener.accept(batch);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void collect(WatchKey key, Map<Path, Changes> batch) {
+        Path directory = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null) {
+                continue;
+            }
+            Changes changes = batch.computeIfAbsent(directory, ignore -> new Changes());
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changes.overflow();
+            } else {
+                changes.add(directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset() && directory != null) {
+            // The directory itself is gone; its parent reports the removal
+            keys.remove(key);
+            directories.remove(directory, key);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reads a file for the editor on a background thread. Text is decoded in
+ * chunks and handed over one chunk at a time, waiting until the previous one
+ * was appended, so a big file shows up progressively without flooding the
+ * FX thread. Files at or above the large-file threshold are mapped as a
+ * {@link LargeFileDocument} instead. A cancelled load stops between chunks
+ * and reports nothing more.
+ */
+public final class DocumentLoader {
+
+    // Bytes decoded per chunk handed to the editor
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-open");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Receives a load's results, in order, through the executor passed to
+     * {@link #start}: text chunks or a large document, then the end.
+     */
+    public interface Listener {
+
+        void onText(String chunk);
+
+        void onLargeDocument(LargeFileDocument document);
+
+        void onLoaded();
+
+        void onFailed(IOException error);
+    }
+
+    private DocumentLoader() {
+    }
+
+    /**
+     * Starts loading {@code path}; {@code listener} is called through
+     * {@code callbacks}, e.g. {@code Platform::runLater}.
+     */
+    public static Handle start(Path path, long largeFileThreshold, Listener listener, Executor callbacks) {
+        Handle handle = new Handle(listener, callbacks);
+        handle.future = EXECUTOR.submit(() -> handle.load(path, largeFileThreshold));
+        return handle;
+    }
+
+    /**
+     * A load in progress.
+     */
+    public static final class Handle {
+
+        private final Listener listener;
+        private final Executor callbacks;
+        // Released when the previous callback has run, so at most one is queued
+        private final Semaphore delivered = new Semaphore(1);
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private Future<?> future;
+
+        private Handle(Listener listener, Executor callbacks) {
+            this.listener = listener;
+            this.callbacks = callbacks;
+        }
+
+        /**
+         * Stops the load; callbacks that were not delivered yet are dropped.
+         */
+        public void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * True once the last callback has been delivered.
+         */
+        public boolean isDone() {
+            return done;
+        }
+
+        private void load(Path path, long largeFileThreshold) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() >= largeFileThreshold) {
+                    LargeFileDocument document = LargeFileDocument.open(path);
+                    if (!deliver(() -> listener.onLargeDocument(document), () -> closeQuietly(document))) {
+                        closeQuietly(document);
+                        return;
+                    }
+                } else if (!readText(channel)) {
+                    return;
+                }
+                deliverLast(listener::onLoaded);
+            } catch (ClosedByInterruptException e) {
+                // Cancelled while reading
+            } catch (IOException e) {
+                deliverLast(() -> listener.onFailed(e));
+            } catch (InterruptedException e) {
+                // Cancelled while waiting for the editor
+            }
+        }
+
+        /**
+         * Reads and decodes the whole file; returns false if the load was cancelled.
+         */
+        private boolean readText(FileChannel channel) throws IOException, InterruptedException {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            ByteBuffer bytes = ByteBuffer.allocate(CHUNK_BYTES);
+            // UTF-8 never decodes to more chars than it has bytes
+            CharBuffer chars = CharBuffer.allocate(CHUNK_BYTES);
+            boolean end = false;
+            while (!end) {
+                end = channel.read(bytes) < 0;
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, end);
+                if (end && !result.isError()) {
+                    result = decoder.flush(chars);
+                }
+                if (result.isError()) {
+                    result.throwException();
+                }
+                // A sequence split at the chunk boundary is decoded with the next chunk
+                bytes.compact();
+                if (chars.position() > 0 || end) {
+                    String chunk = chars.flip().toString();
+                    chars.clear();
+                    if (!chunk.isEmpty() && !deliver(() -> listener.onText(chunk), () -> { })) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Hands a callback over once the previous one has run; returns false if
+         * cancelled. {@code dropped} runs instead if the load is cancelled
+         * before the callback gets its turn.
+         */
+        private boolean deliver(Runnable callback, Runnable dropped) throws InterruptedException {
+            delivered.acquire();
+            if (cancelled) {
+                return false;
+            }
+            callbacks.execute(() -> {
+                try {
+                    if (!cancelled) {
+                        callback.run();
+                    } else {
+                        dropped.run();
+                    }
+                } finally {
+                    delivered.release();
+                }
+            });
+            return true;
+        }
+
+        private void deliverLast(Runnable callback) {
+            try {
+                deliver(() -> {
+                    done = true;
+                    callback.run();
+                }, () -> { });
+            } catch (InterruptedException e) {
+                // Cancelled
+            }
+        }
+
+        private static void closeQuietly(LargeFileDocument document) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                // Nothing was read from it
+            }
+        }
+    }
+}
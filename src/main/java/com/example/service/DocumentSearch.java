@@ -0,0 +1,431 @@
+package com.example.service;
+
+import com.example.util.TextSearch;
+import javafx.application.Platform;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.MultiChangeBuilder;
+import org.fxmisc.richtext.Selection;
+import org.fxmisc.richtext.SelectionImpl;
+import org.fxmisc.richtext.model.StyledDocument;
+import org.reactfx.Subscription;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Find and replace within one code area. Matching runs on a background
+ * thread against an immutable snapshot of the document and publishes its
+ * results in chunks; results from an older query or document version are
+ * dropped. Only the matches in the visible paragraphs are marked.
+ */
+public class DocumentSearch {
+
+    // Publish partial results after this many matches or characters
+    private static final int CHUNK_MATCHES = 1000;
+    private static final int CHUNK_CHARS = 1 << 20;
+    // Upper bound on marked matches, e.g. when searching for a single character
+    private static final int MAX_MARKS = 500;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "document-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CodeArea codeArea;
+    private Subscription subscriptions;
+    private TextSearch search;
+    private Runnable onUpdate;
+
+    // Bumped on every edit and every new query
+    private volatile long version;
+    private SearchJob currentJob;
+    private Future<?> pendingJob;
+
+    // Document text of the last completed search, reused while the document is unchanged
+    private String cachedText;
+    private long cachedTextVersion = -1;
+    private long documentVersion;
+
+    // Sorted matches of the current query; only valid while resultsVersion == version
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private int count;
+    private boolean complete;
+    private long resultsVersion = -1;
+
+    // Select the next match once the search triggered by a replace has finished
+    private boolean selectNextWhenComplete;
+
+    private final List<Selection<Collection<String>, String, Collection<String>>> marks = new ArrayList<>();
+    private int markedFrom = -1;
+    private int markedTo = -1;
+    private int markCounter;
+
+    /**
+     * Sets a callback run on the FX thread whenever the results or the current match change.
+     */
+    public void setOnUpdate(Runnable onUpdate) {
+        this.onUpdate = onUpdate;
+    }
+
+    /**
+     * Searches {@code codeArea} from now on; null detaches from the current one.
+     */
+    public void attach(CodeArea codeArea) {
+        if (this.codeArea == codeArea) {
+            return;
+        }
+        detach();
+        this.codeArea = codeArea;
+        if (codeArea == null) {
+            return;
+        }
+        subscriptions = codeArea.plainTextChanges()
+                .subscribe(ignore -> {
+                    version++;
+                    documentVersion++;
+                })
+                .and(codeArea.multiPlainChanges()
+                        .successionEnds(Duration.ofMillis(150))
+                        .subscribe(ignore -> restart()))
+                .and(codeArea.viewportDirtyEvents()
+                        .successionEnds(Duration.ofMillis(30))
+                        .subscribe(ignore -> updateMarks()));
+        restart();
+    }
+
+    public void detach() {
+        cancel();
+        clearMarks();
+        if (subscriptions != null) {
+            subscriptions.unsubscribe();
+            subscriptions = null;
+        }
+        codeArea = null;
+        cachedText = null;
+        cachedTextVersion = -1;
+        count = 0;
+        complete = false;
+        notifyUpdate();
+    }
+
+    /**
+     * Starts searching for {@code search}; null or an empty query clears the results.
+     */
+    public void setQuery(TextSearch search) {
+        this.search = search;
+        version++;
+        restart();
+    }
+
+    public int getMatchCount() {
+        return isCurrent() ? count : 0;
+    }
+
+    /**
+     * True once the whole document has been searched for the current query.
+     */
+    public boolean isComplete() {
+        return isCurrent() && complete;
+    }
+
+    /**
+     * Returns the index of the match that is currently selected, or -1.
+     */
+    public int getCurrentMatch() {
+        if (codeArea == null || !isCurrent()) {
+            return -1;
+        }
+        int index = lowerBound(starts, count, codeArea.getSelection().getStart());
+        if (index < count && starts[index] == codeArea.getSelection().getStart()
+                && ends[index] == codeArea.getSelection().getEnd()) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Selects the first match after the caret, wrapping around at the end.
+     */
+    public boolean next() {
+        if (codeArea == null || !isCurrent() || count == 0) {
+            return false;
+        }
+        int index = lowerBound(starts, count, codeArea.getSelection().getEnd());
+        select(index < count ? index : 0);
+        return true;
+    }
+
+    /**
+     * Selects the last match before the caret, wrapping around at the start.
+     */
+    public boolean previous() {
+        if (codeArea == null || !isCurrent() || count == 0) {
+            return false;
+        }
+        int index = lowerBound(starts, count, codeArea.getSelection().getStart()) - 1;
+        select(index >= 0 ? index : count - 1);
+        return true;
+    }
+
+    /**
+     * Replaces the selected match and moves on to the next one. If no match
+     * is selected, the next match is selected instead.
+     */
+    public void replaceCurrent(String replacement) {
+        int index = getCurrentMatch();
+        if (index < 0) {
+            next();
+            return;
+        }
+        String text = replacementFor(index, replacement);
+        codeArea.replaceText(starts[index], ends[index], text);
+        selectNextWhenComplete = true;
+    }
+
+    /**
+     * Replaces every match of the current query. Replacements are computed in
+     * the background and applied as a single multi-change, so they form one
+     * undo step and the highlighter restyles once.
+     */
+    public void replaceAll(String replacement) {
+        if (codeArea == null || search == null || search.isEmpty()) {
+            return;
+        }
+        cancel();
+        long jobVersion = version;
+        TextSearch jobSearch = search.copy();
+        StyledDocument<?, String, ?> snapshot = codeArea.getContent().snapshot();
+        String text = cachedTextVersion == documentVersion ? cachedText : null;
+        pendingJob = EXECUTOR.submit(() -> {
+            String documentText = text != null ? text : snapshot.getText();
+            List<int[]> ranges = new ArrayList<>();
+            List<String> replacements = new ArrayList<>();
+            int pos = 0;
+            while (jobSearch.find(documentText, pos)) {
+                if (Thread.currentThread().isInterrupted() || version != jobVersion) {
+                    return;
+                }
+                ranges.add(new int[]{jobSearch.start(), jobSearch.end()});
+                replacements.add(jobSearch.replacement(replacement));
+                pos = jobSearch.end();
+            }
+            Platform.runLater(() -> applyReplaceAll(jobVersion, ranges, replacements));
+        });
+    }
+
+    private void applyReplaceAll(long jobVersion, List<int[]> ranges, List<String> replacements) {
+        if (jobVersion != version || ranges.isEmpty()) {
+            return;
+        }
+        MultiChangeBuilder<Collection<String>, String, Collection<String>> change = codeArea.createMultiChange(ranges.size());
+        // Back to front, so earlier positions are not shifted by later replacements
+        for (int i = ranges.size() - 1; i >= 0; i--) {
+            change.replaceText(ranges.get(i)[0], ranges.get(i)[1], replacements.get(i));
+        }
+        change.commit();
+    }
+
+    private String replacementFor(int index, String replacement) {
+        TextSearch copy = search.copy();
+        if (copy.isRegex() && cachedText != null && copy.find(cachedText, starts[index])
+                && copy.start() == starts[index]) {
+            return copy.replacement(replacement);
+        }
+        return replacement;
+    }
+
+    private void select(int index) {
+        codeArea.selectRange(starts[index], ends[index]);
+        codeArea.requestFollowCaret();
+        notifyUpdate();
+    }
+
+    private boolean isCurrent() {
+        return resultsVersion == version;
+    }
+
+    private void cancel() {
+        if (pendingJob != null) {
+            pendingJob.cancel(true);
+            pendingJob = null;
+        }
+        currentJob = null;
+    }
+
+    private void restart() {
+        cancel();
+        count = 0;
+        complete = false;
+        resultsVersion = -1;
+        if (codeArea == null || search == null || search.isEmpty()) {
+            clearMarks();
+            notifyUpdate();
+            return;
+        }
+        String text = cachedTextVersion == documentVersion ? cachedText : null;
+        // The snapshot is immutable, so the job can read it off the FX thread
+        SearchJob job = new SearchJob(version, documentVersion, search.copy(),
+                text, text == null ? codeArea.getContent().snapshot() : null);
+        currentJob = job;
+        pendingJob = EXECUTOR.submit(job);
+        notifyUpdate();
+    }
+
+    private void appendResults(SearchJob job, int[] chunkStarts, int[] chunkEnds, int chunkCount, boolean done) {
+        if (job != currentJob || job.version != version) {
+            return;
+        }
+        if (resultsVersion != version) {
+            resultsVersion = version;
+            count = 0;
+            cachedText = job.text;
+            cachedTextVersion = job.documentVersion;
+            markedFrom = -1;
+        }
+        if (count + chunkCount > starts.length) {
+            int capacity = Math.max(count + chunkCount, starts.length * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        System.arraycopy(chunkStarts, 0, starts, count, chunkCount);
+        System.arraycopy(chunkEnds, 0, ends, count, chunkCount);
+        count += chunkCount;
+        complete = done;
+        if (done) {
+            currentJob = null;
+            pendingJob = null;
+            if (selectNextWhenComplete) {
+                selectNextWhenComplete = false;
+                next();
+            }
+        }
+        updateMarks();
+        notifyUpdate();
+    }
+
+    /**
+     * Marks the matches in the visible paragraphs; matches elsewhere are only
+     * marked once they are scrolled into view.
+     */
+    private void updateMarks() {
+        if (codeArea == null || !isCurrent() || codeArea.getVisibleParagraphs().isEmpty()) {
+            return;
+        }
+        int firstParagraph = codeArea.firstVisibleParToAllParIndex();
+        int lastParagraph = codeArea.lastVisibleParToAllParIndex();
+        int visibleStart = codeArea.getAbsolutePosition(firstParagraph, 0);
+        int visibleEnd = codeArea.getAbsolutePosition(lastParagraph, codeArea.getParagraphLength(lastParagraph));
+
+        int from = lowerBound(ends, count, visibleStart + 1);
+        int to = Math.min(lowerBound(starts, count, visibleEnd), from + MAX_MARKS);
+        if (from == markedFrom && to == markedTo) {
+            return;
+        }
+        clearMarks();
+        for (int i = from; i < to; i++) {
+            Selection<Collection<String>, String, Collection<String>> mark = new SelectionImpl<>(
+                    "search-match-" + markCounter++, codeArea, path -> path.getStyleClass().add("search-match"));
+            codeArea.addSelection(mark);
+            mark.selectRange(starts[i], ends[i]);
+            marks.add(mark);
+        }
+        markedFrom = from;
+        markedTo = to;
+    }
+
+    private void clearMarks() {
+        if (codeArea != null) {
+            for (Selection<Collection<String>, String, Collection<String>> mark : marks) {
+                codeArea.removeSelection(mark);
+                mark.dispose();
+            }
+        }
+        marks.clear();
+        markedFrom = -1;
+        markedTo = -1;
+    }
+
+    private void notifyUpdate() {
+        if (onUpdate != null) {
+            onUpdate.run();
+        }
+    }
+
+    /**
+     * Returns the first index in {@code values[0, size)} whose value is at least {@code key}.
+     */
+    private static int lowerBound(int[] values, int size, int key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Finds all matches in a document snapshot off the FX thread.
+     */
+    private class SearchJob implements Runnable {
+        private final long version;
+        private final long documentVersion;
+        private final TextSearch search;
+        private final StyledDocument<?, String, ?> snapshot;
+        private String text;
+
+        SearchJob(long version, long documentVersion, TextSearch search, String text,
+                  StyledDocument<?, String, ?> snapshot) {
+            this.version = version;
+            this.documentVersion = documentVersion;
+            this.search = search;
+            this.text = text;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void run() {
+            if (text == null) {
+                text = snapshot.getText();
+            }
+            int[] chunkStarts = new int[CHUNK_MATCHES];
+            int[] chunkEnds = new int[CHUNK_MATCHES];
+            int chunkCount = 0;
+            int chunkFrom = 0;
+            int pos = 0;
+            while (search.find(text, pos)) {
+                if (Thread.currentThread().isInterrupted() || version != DocumentSearch.this.version) {
+                    return;
+                }
+                chunkStarts[chunkCount] = search.start();
+                chunkEnds[chunkCount] = search.end();
+                chunkCount++;
+                pos = search.end();
+                if (chunkCount == CHUNK_MATCHES || pos - chunkFrom >= CHUNK_CHARS) {
+                    publish(chunkStarts, chunkEnds, chunkCount, false);
+                    chunkStarts = new int[CHUNK_MATCHES];
+                    chunkEnds = new int[CHUNK_MATCHES];
+                    chunkCount = 0;
+                    chunkFrom = pos;
+                }
+            }
+            publish(chunkStarts, chunkEnds, chunkCount, true);
+        }
+
+        private void publish(int[] chunkStarts, int[] chunkEnds, int chunkCount, boolean done) {
+            Platform.runLater(() -> appendResults(this, chunkStarts, chunkEnds, chunkCount, done));
+        }
+    }
+}
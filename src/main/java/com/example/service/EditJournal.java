@@ -0,0 +1,486 @@
+package com.example.service;
+
+import com.example.util.Hashes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of unsaved edits, one file per modified document.
+ * <p>
+ * A journal starts with the hash of the text the document was loaded or
+ * saved with, followed by the edits made since, exactly as the editor
+ * reported them. Edits are queued in memory and appended in one write per
+ * flush, once a second, so the cost follows the size of the edits, not of
+ * the document. When a journal has grown by {@value #CHECKPOINT_BYTES} bytes
+ * it is rewritten as a checkpoint holding the whole text. Saving the
+ * document deletes its journal.
+ * <p>
+ * After a crash, {@link #recover()} replays the journals. One that starts
+ * from a base is only replayed if the file on disk still has that text.
+ * Every record carries a checksum, so a torn last append is ignored.
+ */
+public class EditJournal {
+
+    private static final int MAGIC = 0x4A574A4E; // "JWJN"
+    private static final int VERSION = 1;
+    private static final byte BASE = 1;
+    private static final byte CHECKPOINT = 2;
+    private static final byte EDIT = 3;
+    private static final int HASH_BYTES = 32;
+    // Journal growth after which the whole text is written instead
+    private static final int CHECKPOINT_BYTES = 1 << 20;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "edit-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Recorders with a journal to keep up to date
+    private static final Set<Recorder> RECORDERS = ConcurrentHashMap.newKeySet();
+
+    static {
+        EXECUTOR.scheduleWithFixedDelay(EditJournal::flushAll, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The unsaved text of a document, replayed from its journal.
+     */
+    public record Recovered(Path path, String text) {
+    }
+
+    private final Path directory;
+
+    public EditJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns where journals are kept by default, in the user's home directory.
+     */
+    public static Path defaultLocation() {
+        return Path.of(System.getProperty("user.home"), ".jwrite", "journal");
+    }
+
+    /**
+     * Starts journaling edits of {@code path}, whose document currently
+     * holds {@code text} as it is on disk. No journal is written until the
+     * first edit.
+     */
+    public Recorder open(Path path, String text) {
+        Recorder recorder = new Recorder(path.toAbsolutePath(), journalFile(path.toAbsolutePath()));
+        recorder.rebase(text);
+        RECORDERS.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * Waits up to {@code timeout} for the queued edits of every document to
+     * be written, e.g. before the application exits. Returns false if they were not.
+     */
+    public static boolean awaitPending(long timeout, TimeUnit unit) {
+        try {
+            EXECUTOR.submit(EditJournal::flushAll).get(timeout, unit);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static void flushAll() {
+        for (Recorder recorder : RECORDERS) {
+            recorder.flush();
+        }
+    }
+
+    /**
+     * Replays the journals left by an earlier run. Journals of files that are
+     * gone or were changed on disk since, and unreadable ones, are deleted;
+     * the others stay until the recovered documents are saved or discarded.
+     */
+    public List<Recovered> recover() {
+        List<Recovered> recovered = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return recovered;
+        }
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(directory, "*.journal")) {
+            for (Path journal : journals) {
+                Recovered document = replay(journal);
+                if (document != null) {
+                    recovered.add(document);
+                } else {
+                    Files.deleteIfExists(journal);
+                }
+            }
+        } catch (IOException e) {
+            // Whatever was not read stays for the next start
+        }
+        return recovered;
+    }
+
+    private static Recovered replay(Path journal) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journal));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            Path path = Path.of(readString(buffer));
+            StringBuilder text = null;
+            while (buffer.hasRemaining()) {
+                ByteBuffer record = readRecord(buffer);
+                if (record == null) {
+                    // Torn or corrupt; what came before it is intact
+                    break;
+                }
+                switch (record.get()) {
+                    case BASE -> {
+                        byte[] hash = new byte[HASH_BYTES];
+                        record.get(hash);
+                        if (!Files.isRegularFile(path)) {
+                            return null;
+                        }
+                        String onDisk = Files.readString(path, StandardCharsets.UTF_8);
+                        if (!Arrays.equals(hash, Hashes.sha256(onDisk))) {
+                            // Changed elsewhere since; the edits no longer apply
+                            return null;
+                        }
+                        text = new StringBuilder(onDisk);
+                    }
+                    case CHECKPOINT -> text = new StringBuilder(StandardCharsets.UTF_8.decode(record));
+                    case EDIT -> {
+                        int position = record.getInt();
+                        int removed = record.getInt();
+                        String inserted = StandardCharsets.UTF_8.decode(record).toString();
+                        if (text == null || position < 0 || removed < 0 || position + removed > text.length()) {
+                            return null;
+                        }
+                        text.replace(position, position + removed, inserted);
+                    }
+                    default -> {
+                        return null;
+                    }
+                }
+            }
+            return text != null ? new Recovered(path, text.toString()) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads one record and checks its checksum; returns its type and payload,
+     * or null if it is incomplete or damaged.
+     */
+    private static ByteBuffer readRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < 9) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getInt(start + 1);
+        if (length < 0 || buffer.remaining() < 9 + length) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(start, 5 + length));
+        if ((int) crc.getValue() != buffer.getInt(start + 5 + length)) {
+            return null;
+        }
+        buffer.position(start + 9 + length);
+        ByteBuffer record = ByteBuffer.allocate(1 + length);
+        record.put(buffer.slice(start, 1)).put(buffer.slice(start + 5, length)).flip();
+        return record;
+    }
+
+    private Path journalFile(Path path) {
+        String name = HexFormat.of().formatHex(Hashes.sha256(path.toString()), 0, 16);
+        return directory.resolve(name + ".journal");
+    }
+
+    /**
+     * Journals the edits of one document. Its methods are called on the
+     * editor's thread; files are only touched on the journal thread, in the
+     * order of the calls.
+     */
+    public static final class Recorder {
+
+        private final Path path;
+        private final Path file;
+        // Operations not written yet; guarded by itself
+        private final List<Runnable> pending = new ArrayList<>();
+        private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        // Bytes journaled since the last base or checkpoint; only touched by the editor
+        private long journaled;
+
+        // Set when a write failed; edits are dropped until the next checkpoint or save
+        private volatile boolean broken;
+        // Set when a checkpoint failed as well; nothing is journaled until the next save
+        private volatile boolean stalled;
+        // A checkpoint was asked for and has not been written yet
+        private volatile boolean checkpointQueued;
+
+        // Journal thread only
+        private byte[] baseHash;
+        private FileChannel channel;
+
+        private Recorder(Path path, Path file) {
+            this.path = path;
+            this.file = file;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Records that {@code removedLength} characters at {@code position}
+         * were replaced by {@code inserted}.
+         */
+        public void record(int position, int removedLength, String inserted) {
+            byte[] bytes = inserted.getBytes(StandardCharsets.UTF_8);
+            journaled += bytes.length + 17;
+            enqueue(() -> {
+                if (broken) {
+                    return;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(8 + bytes.length);
+                payload.putInt(position).putInt(removedLength).put(bytes);
+                writeRecord(batch, EDIT, payload.array());
+            });
+        }
+
+        /**
+         * True once the journal has grown enough, or missed edits, so that
+         * {@link #checkpoint} should be called with the document's text.
+         * False while a checkpoint is still queued, and after one failed
+         * until the document is saved.
+         */
+        public boolean needsCheckpoint() {
+            if (checkpointQueued || stalled) {
+                return false;
+            }
+            return broken || journaled >= CHECKPOINT_BYTES;
+        }
+
+        /**
+         * Replaces the journal by one holding {@code text}, the document's
+         * current content, so replaying it no longer goes through every edit.
+         */
+        public void checkpoint(String text) {
+            journaled = 0;
+            checkpointQueued = true;
+            enqueue(() -> {
+                try {
+                    batch.reset();
+                    ByteArrayOutputStream journal = header();
+                    writeRecord(journal, CHECKPOINT, text.getBytes(StandardCharsets.UTF_8));
+                    replace(journal.toByteArray());
+                    broken = false;
+                } catch (UncheckedIOException e) {
+                    // Writing the whole text again on the next keystroke would fail the same way
+                    stalled = true;
+                    throw e;
+                } finally {
+                    checkpointQueued = false;
+                }
+            });
+        }
+
+        /**
+         * Drops the journal after the document was saved as {@code text};
+         * later edits start a new one on top of it.
+         */
+        public void rebase(String text) {
+            journaled = 0;
+            enqueue(() -> {
+                batch.reset();
+                baseHash = Hashes.sha256(text);
+                broken = false;
+                stalled = false;
+                delete();
+            });
+        }
+
+        /**
+         * Stops journaling and deletes the journal, e.g. when the document is
+         * closed without saving.
+         */
+        public void discard() {
+            RECORDERS.remove(this);
+            enqueue(() -> {
+                batch.reset();
+                delete();
+            });
+            EXECUTOR.execute(this::flush);
+        }
+
+        private void enqueue(Runnable operation) {
+            synchronized (pending) {
+                pending.add(operation);
+            }
+        }
+
+        /**
+         * Runs the queued operations and appends the edits among them in one write.
+         */
+        private void flush() {
+            List<Runnable> operations;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                operations = new ArrayList<>(pending);
+                pending.clear();
+            }
+            try {
+                for (Runnable operation : operations) {
+                    try {
+                        operation.run();
+                    } catch (UncheckedIOException e) {
+                        // A later rebase or checkpoint in the same flush may still set things right
+                        fail();
+                    }
+                }
+                if (batch.size() > 0 && !broken) {
+                    append(batch.toByteArray());
+                }
+            } catch (IOException e) {
+                fail();
+            } finally {
+                batch.reset();
+            }
+        }
+
+        private void fail() {
+            // The journal misses edits from here on; the next checkpoint rewrites it whole
+            broken = true;
+            batch.reset();
+            closeChannel();
+        }
+
+        private void append(byte[] records) throws IOException {
+            if (channel == null) {
+                // First edit since the base: start a new journal
+                ByteArrayOutputStream journal = header();
+                writeRecord(journal, BASE, baseHash);
+                journal.write(records);
+                Files.createDirectories(file.getParent());
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                records = journal.toByteArray();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // Only the appended data needs to be durable, not the file's metadata
+            channel.force(false);
+        }
+
+        private void replace(byte[] journal) {
+            try {
+                closeChannel();
+                Files.createDirectories(file.getParent());
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(journal);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    out.force(true);
+                }
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+                channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void delete() {
+            closeChannel();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Everything written was forced already
+                }
+                channel = null;
+            }
+        }
+
+        private ByteArrayOutputStream header() {
+            ByteArrayOutputStream journal = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(journal);
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                byte[] name = path.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+            } catch (IOException e) {
+                // Writes to memory do not fail
+                throw new IllegalStateException(e);
+            }
+            return journal;
+        }
+    }
+
+    /**
+     * Writes a record: type, payload length, payload and a CRC32 of all but itself.
+     */
+    private static void writeRecord(ByteArrayOutputStream out, byte type, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(9 + payload.length);
+        record.put(type).putInt(payload.length).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, 5 + payload.length);
+        record.putInt((int) crc.getValue());
+        out.write(record.array(), 0, record.capacity());
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
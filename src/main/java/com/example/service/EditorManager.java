@@ -1,24 +1,30 @@
 package com.example.service;
 
-import com.example.util.JavaKeywords;
+import com.example.util.CompressedText;
+import com.example.util.JavaFormatter;
+import com.example.util.TokenKind;
+import com.example.util.TokenStore;
+import javafx.application.Platform;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
 import org.fxmisc.flowless.VirtualizedScrollPane;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
-import org.fxmisc.richtext.model.StyleSpans;
-import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.undo.UndoManager;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.time.Duration;
-import java.util.Collection;
-import java.util.Collections;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Enhanced editor manager with VS Code-like features.
@@ -26,15 +32,99 @@ import java.util.regex.Matcher;
  */
 public class EditorManager {
 
+    /** Files of at least this many bytes are memory-mapped and paged instead of read into memory. */
+    public static final long DEFAULT_LARGE_FILE_THRESHOLD = 32L << 20;
+    /** Tabs beyond this many, least recently selected first, give up their code area. */
+    public static final int DEFAULT_HOT_TAB_LIMIT = 12;
+
     private final TabPane tabPane;
     private final Label statusLabel;
     private final Map<Tab, File> openFiles = new HashMap<>();
+    // Tabs showing files opened in large-file mode
+    private final Map<Tab, LargeFileEditor> largeFiles = new HashMap<>();
+    // Highlighter of every open code area; it also holds the document's tokens
+    private final Map<CodeArea, SyntaxHighlighter> highlighters = new HashMap<>();
+    private final FileSaver saver = new FileSaver();
+    private final EditJournal journal = new EditJournal(EditJournal.defaultLocation());
+    // Journal of each tab with a file, so unsaved edits survive a crash
+    private final Map<Tab, EditJournal.Recorder> journals = new HashMap<>();
+    // Text replayed from the journals of the last run, put back when the file is opened
+    private final Map<Path, String> recoveredText = new HashMap<>();
+    // Tabs whose file is still being read
+    private final Map<Tab, Loading> loadingTabs = new HashMap<>();
+    // Tabs in the order they were last selected, most recent last
+    private final Set<Tab> recentTabs = new LinkedHashSet<>();
+    // Tabs whose code area was dropped, with what it takes to rebuild it
+    private final Map<Tab, Hibernated> hibernatedTabs = new HashMap<>();
+    // Woken tabs that were modified before they hibernated; their new undo history cannot tell
+    private final Set<Tab> modifiedBeforeHibernation = new HashSet<>();
+    // Restored tabs whose file is read when they are first selected
+    private final Map<Tab, SessionStore.TabState> deferredTabs = new HashMap<>();
+    // Deferred tabs whose read was stopped when they lost the selection, with what was to run once loaded
+    private final Map<Tab, List<Runnable>> suspendedLoads = new HashMap<>();
+    // The session tabs were restored from; its saved tokens spare lexing restored documents
+    private SessionStore.Session session;
+    private int viewportHighlightThreshold = SyntaxHighlighter.DEFAULT_VIEWPORT_THRESHOLD;
+    private long largeFileThreshold = DEFAULT_LARGE_FILE_THRESHOLD;
+    private int hotTabLimit = DEFAULT_HOT_TAB_LIMIT;
+
+    /**
+     * A tab's read in progress and what to do once it is complete.
+     */
+    private static final class Loading {
+        private DocumentLoader.Handle handle;
+        private SessionStore.TabState state;
+        private final List<Runnable> whenLoaded = new ArrayList<>();
+    }
+
+    /**
+     * A tab without a code area: its text, selection, scroll position and
+     * whether it had unsaved changes.
+     */
+    private record Hibernated(CompressedText text, int anchor, int caret, double scrollY, boolean modified) {
+    }
 
     public EditorManager(TabPane tabPane, Label statusLabel) {
         this.tabPane = tabPane;
         this.statusLabel = statusLabel;
+        tabPane.getSelectionModel().selectedItemProperty().addListener(
+                (observable, oldTab, newTab) -> {
+                    suspendLoading(oldTab);
+                    tabSelected(newTab);
+                });
+    }
+
+    /**
+     * Sets the paragraph count above which newly opened documents are only
+     * highlighted around the visible region.
+     */
+    public void setViewportHighlightThreshold(int paragraphs) {
+        this.viewportHighlightThreshold = paragraphs;
+    }
+
+    /**
+     * Sets the file size in bytes from which files are opened in large-file mode.
+     */
+    public void setLargeFileThreshold(long bytes) {
+        this.largeFileThreshold = bytes;
+    }
+
+    /**
+     * Sets how many tabs keep their code area; the least recently selected
+     * ones beyond that are hibernated.
+     */
+    public void setHotTabLimit(int tabs) {
+        this.hotTabLimit = Math.max(1, tabs);
+        hibernateColdTabs();
     }
 
+    /**
+     * Opens {@code file} in a new tab, or selects its tab if it is already
+     * open. The tab appears at once; the file is read in the background and
+     * its text is appended as it is decoded. Highlighting starts once it is
+     * complete. Closing the tab before that cancels the read; selecting
+     * another tab stops it until this one is selected again.
+     */
     public void openFileInEditor(File file) {
         // Check if file is already open
         for (Map.Entry<Tab, File> entry : openFiles.entrySet()) {
@@ -44,25 +134,254 @@ public class EditorManager {
             }
         }
 
-        try {
-            String content = Files.readString(file.toPath());
-            CodeArea codeArea = createEnhancedCodeArea(content);
+        Tab tab = createTab(file);
+        tabPane.getTabs().add(tab);
+        // Selecting the tab starts reading the file
+        tabPane.getSelectionModel().select(tab);
+        statusLabel.setText("Opening: " + file.getName() + "…");
+    }
+
+    /**
+     * Reopens the tabs of a saved session. Only the selected tab's file is
+     * read now; the others are read when they are first selected, and each
+     * gets back its selection and scroll position.
+     */
+    public void restoreTabs(SessionStore.Session session) {
+        this.session = session;
+        List<Tab> tabs = new ArrayList<>();
+        Tab selected = null;
+        for (int i = 0; i < session.getTabs().size(); i++) {
+            SessionStore.TabState state = session.getTabs().get(i);
+            File file = state.path().toFile();
+            if (!file.isFile() || openFiles.containsValue(file)) {
+                continue;
+            }
+            Tab tab = createTab(file);
+            deferredTabs.put(tab, state);
+            tabs.add(tab);
+            if (i == session.getSelectedTab()) {
+                selected = tab;
+            }
+        }
+        if (tabs.isEmpty()) {
+            return;
+        }
+        tabPane.getTabs().addAll(tabs);
+        tabPane.getSelectionModel().select(selected != null ? selected : tabs.get(0));
+        // Adding the tabs may have selected one already, in which case select() notifies no one
+        tabSelected(tabPane.getSelectionModel().getSelectedItem());
+        statusLabel.setText("Restored " + tabs.size() + (tabs.size() == 1 ? " tab" : " tabs"));
+    }
+
+    /**
+     * Reopens the files that had unsaved changes when the last run ended
+     * without saving them. Their edited text is put back when they are read,
+     * as a modification of the file's text.
+     */
+    public void recoverUnsavedEdits() {
+        List<Tab> tabs = new ArrayList<>();
+        for (EditJournal.Recovered recovered : journal.recover()) {
+            File file = recovered.path().toFile();
+            recoveredText.put(recovered.path(), recovered.text());
+            if (!openFiles.containsValue(file)) {
+                tabs.add(createTab(file));
+            }
+        }
+        tabPane.getTabs().addAll(tabs);
+        if (!recoveredText.isEmpty()) {
+            tabSelected(tabPane.getSelectionModel().getSelectedItem());
+            statusLabel.setText("Recovered unsaved changes in " + recoveredText.size()
+                    + (recoveredText.size() == 1 ? " file" : " files"));
+        }
+    }
+
+    /**
+     * Sends the edits of {@code codeArea} to the tab's journal, if it has one.
+     */
+    private void journalEdits(Tab tab, CodeArea codeArea) {
+        codeArea.plainTextChanges().subscribe(change -> {
+            EditJournal.Recorder recorder = journals.get(tab);
+            if (recorder != null) {
+                recorder.record(change.getPosition(), change.getRemoved().length(), change.getInserted());
+                if (recorder.needsCheckpoint()) {
+                    recorder.checkpoint(codeArea.getText());
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts the tab's journal over from {@code text}, which was just saved to
+     * {@code file}. Edits made while it was being written are checkpointed.
+     */
+    private void rebaseJournal(Tab tab, File file, String text, boolean unmodified) {
+        EditJournal.Recorder recorder = journals.get(tab);
+        if (recorder == null || !recorder.getPath().equals(file.toPath().toAbsolutePath())) {
+            // New, or saved under another name
+            if (recorder != null) {
+                recorder.discard();
+            }
+            recorder = journal.open(file.toPath(), text);
+            journals.put(tab, recorder);
+        } else {
+            recorder.rebase(text);
+        }
+        if (!unmodified) {
+            Hibernated hibernated = hibernatedTabs.get(tab);
+            recorder.checkpoint(hibernated != null ? hibernated.text().toString() : getCodeArea(tab).getText());
+        }
+    }
+
+    private static CodeArea getCodeArea(Tab tab) {
+        return (CodeArea) ((VirtualizedScrollPane<?>) tab.getContent()).getContent();
+    }
 
-            Tab tab = new Tab(file.getName());
-            tab.setContent(new VirtualizedScrollPane<>(codeArea));
-            tab.setClosable(true);
-            tab.setOnCloseRequest(e -> {
+    /**
+     * Creates an empty tab for {@code file}; its content is set up by {@link #load}.
+     */
+    private Tab createTab(File file) {
+        Tab tab = new Tab(file.getName());
+        tab.setClosable(true);
+        tab.setOnCloseRequest(e -> {
+            releaseTab(tab);
+            openFiles.remove(tab);
+            statusLabel.setText("Closed: " + file.getName());
+        });
+        openFiles.put(tab, file);
+        // Read when it is selected
+        deferredTabs.put(tab, new SessionStore.TabState(file.toPath(), 0, 0, 0));
+        return tab;
+    }
+
+    /**
+     * Gives {@code tab} a read-only code area and starts reading {@code file}
+     * into it; {@code state} is the view to put back once it is read.
+     */
+    private void load(Tab tab, File file, SessionStore.TabState state) {
+        CodeArea codeArea = createCodeArea();
+        // Read-only until the whole file is in
+        codeArea.setEditable(false);
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setMaxSize(14, 14);
+        tab.setGraphic(progress);
+        tab.setContent(new VirtualizedScrollPane<>(codeArea));
+
+        Loading loading = new Loading();
+        loading.state = state;
+        loadingTabs.put(tab, loading);
+        loading.handle = DocumentLoader.start(file.toPath(), largeFileThreshold, new DocumentLoader.Listener() {
+            @Override
+            public void onText(String chunk) {
+                codeArea.appendText(chunk);
+            }
+
+            @Override
+            public void onLargeDocument(LargeFileDocument document) {
+                LargeFileEditor largeEditor = new LargeFileEditor(document, codeArea, viewportHighlightThreshold);
+                installEditing(codeArea, largeEditor.getHighlighter());
+                largeFiles.put(tab, largeEditor);
+            }
+
+            @Override
+            public void onLoaded() {
+                finishLoading(tab, codeArea, file);
+            }
+
+            @Override
+            public void onFailed(IOException error) {
+                releaseTab(tab);
+                tabPane.getTabs().remove(tab);
                 openFiles.remove(tab);
-                statusLabel.setText("Closed: " + file.getName());
-            });
+                statusLabel.setText("Error opening file: " + error.getMessage());
+            }
+        }, Platform::runLater);
+    }
 
-            tabPane.getTabs().add(tab);
-            tabPane.getSelectionModel().select(tab);
-            openFiles.put(tab, file);
-            statusLabel.setText("Opened: " + file.getName());
-        } catch (IOException e) {
-            statusLabel.setText("Error opening file: " + e.getMessage());
+    private void finishLoading(Tab tab, CodeArea codeArea, File file) {
+        Loading loading = loadingTabs.remove(tab);
+        tab.setGraphic(null);
+        boolean large = largeFiles.containsKey(tab);
+        if (!large) {
+            // The chunks are the initial content, not edits to undo
+            codeArea.getUndoManager().forgetHistory();
+            codeArea.getUndoManager().mark();
+            codeArea.moveTo(0);
+            String text = codeArea.getText();
+            SyntaxHighlighter highlighter = new SyntaxHighlighter(codeArea, viewportHighlightThreshold);
+            if (session != null) {
+                highlighter.seed(session.tokens(file.toPath().toAbsolutePath(), text));
+            }
+            highlighter.highlightAll();
+            installEditing(codeArea, highlighter);
+            saver.track(file.toPath(), text);
+            journals.put(tab, journal.open(file.toPath(), text));
+            journalEdits(tab, codeArea);
         }
+        codeArea.setEditable(true);
+        statusLabel.setText((large ? "Opened (large file mode): " : "Opened: ") + file.getName());
+        String recovered = recoveredText.remove(file.toPath().toAbsolutePath());
+        if (recovered != null && !large && !recovered.equals(codeArea.getText())) {
+            // An edit like any other: it can be undone, and it is journaled again
+            codeArea.replaceText(recovered);
+            statusLabel.setText("Recovered unsaved changes: " + file.getName());
+        }
+        loading.whenLoaded.forEach(Runnable::run);
+    }
+
+    /**
+     * Runs {@code action} once {@code tab} has finished loading, or now if it has.
+     */
+    private void whenLoaded(Tab tab, Runnable action) {
+        Loading loading = loadingTabs.get(tab);
+        if (loading != null) {
+            loading.whenLoaded.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    private boolean isLoading(Tab tab) {
+        if (loadingTabs.containsKey(tab)) {
+            statusLabel.setText("Still opening " + tab.getText() + "…");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Opens {@code file} and selects {@code length} characters at the given
+     * zero-based line and column.
+     */
+    public void openFileAt(File file, int line, int column, int length) {
+        openFileInEditor(file);
+        Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
+        if (currentTab == null || !file.equals(openFiles.get(currentTab))) {
+            return;
+        }
+        CodeArea codeArea = getCurrentCodeArea();
+        whenLoaded(currentTab, () -> {
+            LargeFileEditor largeEditor = largeFiles.get(currentTab);
+            if (largeEditor != null) {
+                largeEditor.goTo(line, column, length);
+            } else {
+                selectOnLine(codeArea, line, column, length);
+            }
+        });
+    }
+
+    /**
+     * Selects a range on one paragraph, clamped to the paragraph, and scrolls to it.
+     */
+    static void selectOnLine(CodeArea codeArea, int paragraph, int column, int length) {
+        if (paragraph < 0 || paragraph >= codeArea.getParagraphs().size()) {
+            return;
+        }
+        int paragraphLength = codeArea.getParagraphLength(paragraph);
+        int start = Math.min(column, paragraphLength);
+        int end = Math.min(column + length, paragraphLength);
+        codeArea.selectRange(paragraph, start, paragraph, end);
+        codeArea.requestFollowCaret();
+        codeArea.requestFocus();
     }
 
     public void createNewFile() {
@@ -70,9 +389,12 @@ public class EditorManager {
         
         Tab tab = new Tab("Untitled");
         tab.setContent(new VirtualizedScrollPane<>(codeArea));
+        // Journaled once it is saved under a name
+        journalEdits(tab, codeArea);
         tab.setClosable(true);
         tab.setOnCloseRequest(e -> {
             openFiles.remove(tab);
+            releaseTab(tab);
             statusLabel.setText("Closed: Untitled");
         });
 
@@ -81,33 +403,93 @@ public class EditorManager {
         statusLabel.setText("Created new file");
     }
 
-    public void saveCurrentFile() {
+    /**
+     * Saves the current tab. The text is taken now and written in the
+     * background; the returned future completes once it is on disk, or at
+     * once if there is nothing to save.
+     */
+    public CompletableFuture<?> saveCurrentFile() {
         Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
         File file = openFiles.get(currentTab);
         if (currentTab != null && file != null) {
-            CodeArea codeArea = (CodeArea) ((VirtualizedScrollPane<?>) currentTab.getContent()).getContent();
-            try {
-                Files.writeString(file.toPath(), codeArea.getText());
-                statusLabel.setText("Saved: " + file.getName());
-            } catch (IOException e) {
-                statusLabel.setText("Error saving file: " + e.getMessage());
-            }
+            return save(currentTab, file, "Saved: ");
         }
+        return CompletableFuture.completedFuture(null);
     }
 
-    public void saveCurrentFileAs(File file) {
+    public CompletableFuture<?> saveCurrentFileAs(File file) {
         Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
-        if (currentTab != null) {
-            CodeArea codeArea = (CodeArea) ((VirtualizedScrollPane<?>) currentTab.getContent()).getContent();
-            try {
-                Files.writeString(file.toPath(), codeArea.getText());
-                statusLabel.setText("Saved new file: " + file.getName());
-                currentTab.setText(file.getName());
-                openFiles.put(currentTab, file);
-            } catch (IOException e) {
-                statusLabel.setText("Error saving file: " + e.getMessage());
+        if (currentTab != null && !isLoading(currentTab)) {
+            CompletableFuture<?> saved = save(currentTab, file, "Saved new file: ");
+            currentTab.setText(file.getName());
+            openFiles.put(currentTab, file);
+            return saved;
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<?> save(Tab tab, File file, String message) {
+        if (isLoading(tab)) {
+            // Saving now would write a truncated file
+            return CompletableFuture.completedFuture(null);
+        }
+        LargeFileEditor largeEditor = largeFiles.get(tab);
+        if (largeEditor != null) {
+            // Large documents are written from their mapping; the editor waits read-only meanwhile
+            statusLabel.setText("Saving " + file.getName() + "…");
+            return largeEditor.save(file.toPath(), saver).thenAccept(result -> {
+                if (result.status() == FileSaver.Status.FAILED) {
+                    statusLabel.setText("Error saving file: " + result.error().getMessage());
+                } else {
+                    statusLabel.setText(message + file.getName());
+                }
+            });
+        }
+        CodeArea codeArea = (CodeArea) ((VirtualizedScrollPane<?>) tab.getContent()).getContent();
+        UndoManager.UndoPosition savedAt = codeArea.getUndoManager().getCurrentPosition();
+        String text = codeArea.getText();
+        statusLabel.setText("Saving " + file.getName() + "…");
+        return saver.save(file.toPath(), text).thenAccept(result -> Platform.runLater(() -> {
+            if (result.status() != FileSaver.Status.FAILED) {
+                // Unmodified from here, unless it was edited while being written
+                savedAt.mark();
+                modifiedBeforeHibernation.remove(tab);
+                if (tabPane.getTabs().contains(tab)) {
+                    boolean unmodified = !hibernatedTabs.containsKey(tab) && tab.getContent() != null
+                            && getCodeArea(tab) == codeArea && codeArea.getUndoManager().isAtMarkedPosition();
+                    rebaseJournal(tab, file, text, unmodified);
+                }
             }
+            switch (result.status()) {
+                case WRITTEN -> statusLabel.setText(message + file.getName());
+                case UNCHANGED -> statusLabel.setText("No changes to save: " + file.getName());
+                case FAILED -> statusLabel.setText("Error saving file: " + result.error().getMessage());
+            }
+        }));
+    }
+
+    /**
+     * Returns the code area of the selected tab, or null if no tab is open.
+     */
+    public CodeArea getCurrentCodeArea() {
+        Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
+        if (currentTab != null && currentTab.getContent() instanceof VirtualizedScrollPane<?> scrollPane) {
+            return (CodeArea) scrollPane.getContent();
         }
+        return null;
+    }
+
+    /**
+     * Returns the text of the selected tab as it is in the editor, or null if
+     * there is none, it is still being read or it is open in large-file mode.
+     */
+    public String getCurrentText() {
+        Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
+        if (currentTab == null || isLoading(currentTab) || largeFiles.containsKey(currentTab)) {
+            return null;
+        }
+        CodeArea codeArea = getCurrentCodeArea();
+        return codeArea != null ? codeArea.getText() : null;
     }
 
     public File getCurrentFile() {
@@ -119,12 +501,16 @@ public class EditorManager {
         Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
         if (currentTab != null) {
             tabPane.getTabs().remove(currentTab);
+            releaseTab(currentTab);
             openFiles.remove(currentTab);
             statusLabel.setText("Tab closed");
         }
     }
 
     public void closeAllTabs() {
+        for (Tab tab : tabPane.getTabs()) {
+            releaseTab(tab);
+        }
         tabPane.getTabs().clear();
         openFiles.clear();
         statusLabel.setText("All tabs closed");
@@ -132,104 +518,368 @@ public class EditorManager {
 
     public void formatCurrentDocument() {
         Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
-        if (currentTab != null) {
+        if (currentTab != null && !isLoading(currentTab)) {
+            if (largeFiles.containsKey(currentTab)) {
+                statusLabel.setText("Formatting is not available in large file mode");
+                return;
+            }
             CodeArea codeArea = (CodeArea) ((VirtualizedScrollPane<?>) currentTab.getContent()).getContent();
-            String formatted = formatJavaCode(codeArea.getText());
+            List<String> lines = new ArrayList<>(codeArea.getParagraphs().size());
+            for (var paragraph : codeArea.getParagraphs()) {
+                lines.add(paragraph.getText());
+            }
+            String formatted = JavaFormatter.format(lines, highlighters.get(codeArea).getTokens());
             codeArea.replaceText(formatted);
         }
     }
 
     /**
-     * Simple Java code formatter: fixes indentation and brace placement.
+     * Returns the name of the class to run in the current tab, preferring a
+     * public class, or null if it declares none. Uses the editor's tokens, so
+     * "class" inside comments, strings or {@code Foo.class} is not mistaken
+     * for a declaration.
+     */
+    public String findCurrentClassName() {
+        Tab currentTab = tabPane.getSelectionModel().getSelectedItem();
+        if (currentTab == null || isLoading(currentTab)) {
+            return null;
+        }
+        CodeArea codeArea = (CodeArea) ((VirtualizedScrollPane<?>) currentTab.getContent()).getContent();
+        TokenStore tokens = highlighters.get(codeArea).getTokens();
+        String firstClass = null;
+        boolean sawPublic = false;
+        boolean sawClass = false;
+        for (int line = 0; line < codeArea.getParagraphs().size(); line++) {
+            String text = codeArea.getParagraph(line).getText();
+            for (long token : tokens.get(line)) {
+                int kind = TokenStore.kind(token);
+                if (kind == TokenKind.COMMENT) {
+                    continue;
+                }
+                String word = text.substring(TokenStore.start(token), TokenStore.end(token));
+                if (sawClass && isIdentifier(kind)) {
+                    if (sawPublic) {
+                        return word;
+                    }
+                    if (firstClass == null) {
+                        firstClass = word;
+                    }
+                }
+                sawClass = kind == TokenKind.KEYWORD && word.equals("class");
+                if (kind == TokenKind.KEYWORD && word.equals("public")) {
+                    sawPublic = true;
+                } else if (kind == TokenKind.SEMICOLON || kind == TokenKind.BRACE) {
+                    // Modifiers only carry over to the declaration they precede
+                    sawPublic = false;
+                }
+            }
+        }
+        return firstClass;
+    }
+
+    private static boolean isIdentifier(int kind) {
+        return kind == TokenKind.IDENTIFIER || kind == TokenKind.VARIABLE || kind == TokenKind.CONSTANT;
+    }
+
+    /**
+     * Wakes a hibernated tab when it is selected and hibernates the tabs that
+     * have gone unselected longest if there are now too many hot ones.
+     */
+    private void tabSelected(Tab tab) {
+        if (tab == null) {
+            return;
+        }
+        SessionStore.TabState deferred = deferredTabs.remove(tab);
+        if (deferred != null) {
+            load(tab, openFiles.get(tab), deferred);
+            List<Runnable> suspended = suspendedLoads.remove(tab);
+            if (suspended != null) {
+                // Putting back the view is among them
+                suspended.forEach(action -> whenLoaded(tab, action));
+            } else {
+                whenLoaded(tab, () -> restoreView(tab, deferred));
+            }
+        }
+        wake(tab);
+        recentTabs.remove(tab);
+        recentTabs.add(tab);
+        hibernateColdTabs();
+    }
+
+    /**
+     * Stops reading the file of a tab that lost the selection, so the file of
+     * the selected tab is read next instead of after it. The tab is deferred
+     * again and read from the start when it is selected again.
+     */
+    private void suspendLoading(Tab tab) {
+        Loading loading = tab != null ? loadingTabs.remove(tab) : null;
+        if (loading == null) {
+            return;
+        }
+        loading.handle.cancel();
+        LargeFileEditor largeEditor = largeFiles.remove(tab);
+        if (largeEditor != null) {
+            try {
+                largeEditor.close();
+            } catch (IOException e) {
+                // Only read from; it is mapped again when the tab is selected
+            }
+        }
+        tab.setGraphic(null);
+        tab.setContent(null);
+        deferredTabs.put(tab, loading.state);
+        suspendedLoads.put(tab, loading.whenLoaded);
+    }
+
+    private void hibernateColdTabs() {
+        int hot = recentTabs.size() - hibernatedTabs.size();
+        // Least recently selected first
+        for (Tab tab : recentTabs) {
+            if (hot <= hotTabLimit) {
+                break;
+            }
+            if (canHibernate(tab)) {
+                hibernate(tab);
+                hot--;
+            }
+        }
+    }
+
+    private boolean canHibernate(Tab tab) {
+        // Large files are already paged from disk, and loading tabs are not complete yet
+        return tab != tabPane.getSelectionModel().getSelectedItem() && !hibernatedTabs.containsKey(tab)
+                && !loadingTabs.containsKey(tab) && !largeFiles.containsKey(tab)
+                && tab.getContent() instanceof VirtualizedScrollPane<?>;
+    }
+
+    /**
+     * Replaces the tab's code area, with its spans, paragraph graphics and
+     * undo history, by its compressed text and view state.
      */
-    private String formatJavaCode(String code) {
-        String[] lines = code.split("\\r?\\n");
-        StringBuilder sb = new StringBuilder();
-        int indent = 0;
-        boolean inBlockComment = false;
-        for (String line : lines) {
-            String trimmed = line.trim();
-            if (trimmed.isEmpty()) {
-                sb.append("\n");
+    private void hibernate(Tab tab) {
+        CodeArea codeArea = (CodeArea) ((VirtualizedScrollPane<?>) tab.getContent()).getContent();
+        boolean modified = modifiedBeforeHibernation.remove(tab) || !codeArea.getUndoManager().isAtMarkedPosition();
+        hibernatedTabs.put(tab, new Hibernated(CompressedText.of(codeArea.getText()), codeArea.getAnchor(),
+                codeArea.getCaretPosition(), codeArea.estimatedScrollYProperty().getValue(), modified));
+        highlighters.remove(codeArea);
+        tab.setContent(null);
+    }
+
+    /**
+     * Rebuilds a hibernated tab's code area as it was left.
+     */
+    private void wake(Tab tab) {
+        Hibernated hibernated = hibernatedTabs.remove(tab);
+        if (hibernated == null) {
+            return;
+        }
+        CodeArea codeArea = createEnhancedCodeArea(hibernated.text().toString());
+        codeArea.selectRange(hibernated.anchor(), hibernated.caret());
+        tab.setContent(new VirtualizedScrollPane<>(codeArea));
+        journalEdits(tab, codeArea);
+        if (hibernated.modified()) {
+            modifiedBeforeHibernation.add(tab);
+        }
+        // The scroll position only applies once the new area has been laid out
+        Platform.runLater(() -> codeArea.estimatedScrollYProperty().setValue(hibernated.scrollY()));
+    }
+
+    /**
+     * Puts back a restored tab's selection and scroll position.
+     */
+    private void restoreView(Tab tab, SessionStore.TabState state) {
+        if (largeFiles.containsKey(tab) || !(tab.getContent() instanceof VirtualizedScrollPane<?> scrollPane)) {
+            return;
+        }
+        CodeArea codeArea = (CodeArea) scrollPane.getContent();
+        int length = codeArea.getLength();
+        codeArea.selectRange(Math.min(state.anchor(), length), Math.min(state.caret(), length));
+        if (state.scrollY() > 0) {
+            Platform.runLater(() -> codeArea.estimatedScrollYProperty().setValue(state.scrollY()));
+        }
+    }
+
+    /**
+     * Captures the open files for the session: each tab's selection and
+     * scroll position, and the tokens of unmodified documents whose
+     * highlighting is complete. Tokens of the restored session for documents
+     * that have not been lexed since are carried over unchanged.
+     */
+    public SessionStore.Snapshot createSnapshot(Path root, List<Path> expanded) {
+        List<SessionStore.TabState> tabs = new ArrayList<>();
+        List<SessionStore.DocumentTokens> documents = new ArrayList<>();
+        List<SessionStore.EncodedTokens> carried = new ArrayList<>();
+        int selectedTab = -1;
+        for (Tab tab : tabPane.getTabs()) {
+            File file = openFiles.get(tab);
+            if (file == null) {
+                // Untitled tabs have nothing to reopen
                 continue;
             }
-            if (trimmed.startsWith("/*")) inBlockComment = true;
-            if (trimmed.endsWith("*/")) inBlockComment = false;
-            if (!inBlockComment && (trimmed.startsWith("}") || trimmed.startsWith("]") || trimmed.startsWith(")"))) {
-                indent = Math.max(0, indent - 1);
+            Path path = file.toPath().toAbsolutePath();
+            if (tab == tabPane.getSelectionModel().getSelectedItem()) {
+                selectedTab = tabs.size();
+            }
+            SessionStore.TabState deferred = deferredTabs.get(tab);
+            Hibernated hibernated = hibernatedTabs.get(tab);
+            SessionStore.TabState state;
+            TokenStore tokens = null;
+            String text = null;
+            if (deferred != null) {
+                state = deferred;
+            } else if (hibernated != null) {
+                state = new SessionStore.TabState(path, hibernated.anchor(), hibernated.caret(), hibernated.scrollY());
+            } else if (!loadingTabs.containsKey(tab) && !largeFiles.containsKey(tab)
+                    && tab.getContent() instanceof VirtualizedScrollPane<?> scrollPane) {
+                CodeArea codeArea = (CodeArea) scrollPane.getContent();
+                state = new SessionStore.TabState(path, codeArea.getAnchor(), codeArea.getCaretPosition(),
+                        codeArea.estimatedScrollYProperty().getValue());
+                // Tokens of modified text would not match the file when it is read again
+                if (codeArea.getUndoManager().isAtMarkedPosition() && !modifiedBeforeHibernation.contains(tab)) {
+                    tokens = highlighters.get(codeArea).snapshotTokens();
+                    text = codeArea.getText();
+                }
+            } else {
+                state = new SessionStore.TabState(path, 0, 0, 0);
+            }
+            tabs.add(state);
+            if (tokens != null) {
+                documents.add(new SessionStore.DocumentTokens(path, text, tokens));
+            } else if (session != null) {
+                SessionStore.EncodedTokens previous = session.carry(path);
+                if (previous != null) {
+                    carried.add(previous);
+                }
             }
-            for (int i = 0; i < indent; i++) sb.append("    ");
-            sb.append(trimmed).append("\n");
-            if (!inBlockComment && (trimmed.endsWith("{") || trimmed.endsWith("[") || trimmed.endsWith("("))) {
-                indent++;
+        }
+        return new SessionStore.Snapshot(root, expanded, tabs, selectedTab, documents, carried);
+    }
+
+    private void releaseTab(Tab tab) {
+        deferredTabs.remove(tab);
+        suspendedLoads.remove(tab);
+        EditJournal.Recorder recorder = journals.remove(tab);
+        if (recorder != null) {
+            // Closed without saving; the edits are given up
+            recorder.discard();
+        }
+        recentTabs.remove(tab);
+        hibernatedTabs.remove(tab);
+        modifiedBeforeHibernation.remove(tab);
+        Loading loading = loadingTabs.remove(tab);
+        if (loading != null) {
+            loading.handle.cancel();
+        }
+        File file = openFiles.get(tab);
+        if (file != null) {
+            saver.forget(file.toPath());
+        }
+        if (tab.getContent() instanceof VirtualizedScrollPane<?> scrollPane) {
+            highlighters.remove(scrollPane.getContent());
+        }
+        LargeFileEditor largeEditor = largeFiles.remove(tab);
+        if (largeEditor != null) {
+            try {
+                largeEditor.close();
+            } catch (IOException e) {
+                statusLabel.setText("Error closing file: " + e.getMessage());
             }
         }
-        return sb.toString();
     }
 
     private CodeArea createEnhancedCodeArea(String initialContent) {
+        CodeArea codeArea = createCodeArea();
+
+        // Set initial content; it is not an edit to undo
+        codeArea.replaceText(0, 0, initialContent);
+        codeArea.getUndoManager().forgetHistory();
+        codeArea.getUndoManager().mark();
+        
+        // Set up incremental syntax highlighting; edits only re-lex the damaged paragraphs
+        SyntaxHighlighter highlighter = new SyntaxHighlighter(codeArea, viewportHighlightThreshold);
+        highlighter.highlightAll();
+        installEditing(codeArea, highlighter);
+        
+        return codeArea;
+    }
+
+    private CodeArea createCodeArea() {
         CodeArea codeArea = new CodeArea();
         
         // Add line numbers
         codeArea.setParagraphGraphicFactory(LineNumberFactory.get(codeArea));
-        
-        // Set up real-time syntax highlighting with debouncing
-        codeArea.multiPlainChanges()
-                .successionEnds(Duration.ofMillis(100))
-                .subscribe(ignore -> codeArea.setStyleSpans(0, computeEnhancedHighlighting(codeArea.getText())));
+        return codeArea;
+    }
+
+    /**
+     * Adds the editing helpers that read the highlighter's tokens.
+     */
+    private void installEditing(CodeArea codeArea, SyntaxHighlighter highlighter) {
+        highlighters.put(codeArea, highlighter);
+        new BraceMatcher(codeArea, highlighter);
 
         // Add VS Code-like auto-indentation only (no auto-brackets/parentheses)
         codeArea.addEventHandler(javafx.scene.input.KeyEvent.KEY_PRESSED, event -> {
             if (event.getCode() == javafx.scene.input.KeyCode.ENTER) {
-                handleEnterKey(codeArea, event);
+                handleEnterKey(codeArea, highlighter, event);
             } else if (event.getCode() == javafx.scene.input.KeyCode.TAB) {
                 handleTabKey(codeArea, event);
             }
         });
-
-        // Set initial content
-        codeArea.replaceText(0, 0, initialContent);
-        
-        // Apply initial syntax highlighting
-        codeArea.setStyleSpans(0, computeEnhancedHighlighting(initialContent));
-        
-        return codeArea;
     }
 
-    private void handleEnterKey(CodeArea codeArea, javafx.scene.input.KeyEvent event) {
-        String currentLine = getCurrentLine(codeArea);
+    private void handleEnterKey(CodeArea codeArea, SyntaxHighlighter highlighter,
+                                javafx.scene.input.KeyEvent event) {
+        int paragraph = codeArea.getCurrentParagraph();
+        int column = codeArea.getCaretColumn();
+        String currentLine = codeArea.getParagraph(paragraph).getText();
         String indentation = getIndentation(currentLine);
-        
+
+        // Look at the code before the caret; comments and strings do not count
+        long first = -1;
+        long last = -1;
+        for (long token : highlighter.lineTokens(paragraph)) {
+            if (TokenStore.start(token) >= column) {
+                break;
+            }
+            if (TokenStore.kind(token) != TokenKind.COMMENT) {
+                if (first == -1) {
+                    first = token;
+                }
+                last = token;
+            }
+        }
+
         // Check if we need to add extra indentation
-        String trimmedLine = currentLine.trim();
-        if (trimmedLine.endsWith("{")) {
-            indentation += "    "; // Add exactly 4 spaces for opening brace
-        } else if (trimmedLine.endsWith(":")) {
-            indentation += "    "; // Add exactly 4 spaces for colon (switch cases, etc.)
-        } else if (trimmedLine.startsWith("if ") || trimmedLine.startsWith("for ") || 
-                   trimmedLine.startsWith("while ") || trimmedLine.startsWith("else ")) {
-            indentation += "    "; // Add exactly 4 spaces for control structures
+        if (last != -1) {
+            if (isToken(currentLine, last, TokenKind.BRACE, "{")) {
+                indentation += "    "; // Add exactly 4 spaces for opening brace
+            } else if (isToken(currentLine, last, TokenKind.OPERATOR, ":")) {
+                indentation += "    "; // Add exactly 4 spaces for colon (switch cases, etc.)
+            } else if (TokenStore.kind(last) != TokenKind.SEMICOLON
+                    && (isToken(currentLine, first, TokenKind.KEYWORD, "if")
+                    || isToken(currentLine, first, TokenKind.KEYWORD, "for")
+                    || isToken(currentLine, first, TokenKind.KEYWORD, "while")
+                    || isToken(currentLine, first, TokenKind.KEYWORD, "else"))) {
+                indentation += "    "; // Add exactly 4 spaces for control structures
+            }
         }
         
         codeArea.insertText(codeArea.getCaretPosition(), "\n" + indentation);
         event.consume();
     }
 
+    private static boolean isToken(String line, long token, int kind, String text) {
+        return TokenStore.kind(token) == kind && TokenStore.length(token) == text.length()
+                && line.startsWith(text, TokenStore.start(token));
+    }
+
     private void handleTabKey(CodeArea codeArea, javafx.scene.input.KeyEvent event) {
         // Insert exactly 4 spaces (not tabs)
         codeArea.insertText(codeArea.getCaretPosition(), "    ");
         event.consume();
     }
 
-    private String getCurrentLine(CodeArea codeArea) {
-        int caretPosition = codeArea.getCaretPosition();
-        String text = codeArea.getText();
-        int lineStart = text.lastIndexOf('\n', caretPosition - 1) + 1;
-        int lineEnd = text.indexOf('\n', caretPosition);
-        if (lineEnd == -1) lineEnd = text.length();
-        return text.substring(lineStart, lineEnd);
-    }
-
     private String getIndentation(String line) {
         StringBuilder indentation = new StringBuilder();
         for (char c : line.toCharArray()) {
@@ -241,56 +891,4 @@ public class EditorManager {
         }
         return indentation.toString();
     }
-
-    private static StyleSpans<Collection<String>> computeEnhancedHighlighting(String text) {
-        Matcher matcher = JavaKeywords.PATTERN.matcher(text);
-        int lastKwEnd = 0;
-        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
-        
-        while (matcher.find()) {
-            String styleClass = null;
-            
-            // Check each group in order of priority
-            if (matcher.group("ANNOTATION") != null) {
-                styleClass = "annotation";
-            } else if (matcher.group("KEYWORD") != null) {
-                styleClass = "keyword";
-            } else if (matcher.group("TYPE") != null) {
-                styleClass = "type";
-            } else if (matcher.group("FUNCTION") != null) {
-                styleClass = "function";
-            } else if (matcher.group("CONSTANT") != null) {
-                styleClass = "constant";
-            } else if (matcher.group("VARIABLE") != null) {
-                styleClass = "variable";
-            } else if (matcher.group("NUMBER") != null) {
-                styleClass = "number";
-            } else if (matcher.group("STRING") != null) {
-                styleClass = "string";
-            } else if (matcher.group("CHAR") != null) {
-                styleClass = "string"; // Use string style for chars
-            } else if (matcher.group("COMMENT") != null) {
-                styleClass = "comment";
-            } else if (matcher.group("OPERATOR") != null) {
-                styleClass = "operator";
-            } else if (matcher.group("PAREN") != null) {
-                styleClass = "paren";
-            } else if (matcher.group("BRACE") != null) {
-                styleClass = "brace";
-            } else if (matcher.group("BRACKET") != null) {
-                styleClass = "bracket";
-            } else if (matcher.group("SEMICOLON") != null) {
-                styleClass = "semicolon";
-            }
-            
-            if (styleClass != null) {
-                spansBuilder.add(Collections.emptyList(), matcher.start() - lastKwEnd);
-                spansBuilder.add(Collections.singleton(styleClass), matcher.end() - matcher.start());
-                lastKwEnd = matcher.end();
-            }
-        }
-        
-        spansBuilder.add(Collections.emptyList(), text.length() - lastKwEnd);
-        return spansBuilder.create();
-    }
 }
@@ -1,5 +1,8 @@
 package com.example.service;
 
+import com.example.util.IgnoreFilter;
+import com.example.util.PathIndex;
+import javafx.application.Platform;
 import javafx.scene.control.Label;
 import javafx.scene.control.TreeCell;
 import javafx.scene.control.TreeItem;
@@ -10,55 +13,502 @@ import javafx.scene.text.Text;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.DirectoryStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.prefs.Preferences;
 
 /**
  * Enhanced file manager with VS Code-like file operations.
  * Manages file system interactions, file tree, and file operations.
+ * Directories in the tree are listed on a background thread the first time
+ * they are expanded, so opening a large project only lists its top level.
  */
 public class FileManager {
 
+    /** Value of the placeholder child shown while a directory is being listed. */
+    public static final File LOADING = new File("Loading…");
+
+    // Children added to the tree per FX pulse
+    private static final int BATCH_SIZE = 500;
+
+    private static final Comparator<DirectoryEntry> DIRECTORIES_FIRST =
+            Comparator.comparing((DirectoryEntry entry) -> !entry.directory())
+                    .thenComparing(entry -> entry.file().getName(), String.CASE_INSENSITIVE_ORDER)
+                    .thenComparing(entry -> entry.file().getName());
+
+    private static final ExecutorService LISTING_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-tree");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Preferences PREFERENCES = Preferences.userNodeForPackage(FileManager.class);
+    private static final String EXCLUDES_KEY = "excludes";
+
+    private static final ExecutorService INDEX_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "path-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private TreeView<File> treeView;
-    private TreeItem<File> rootItem;
+    private DirectoryItem rootItem;
+    // Kind, size and mtime of listed entries, so cells are drawn without file system access
+    private final FileMetadataCache metadata = new FileMetadataCache();
+    // Watches the expanded directories; null if the platform has no watch service
+    private DirectoryWatcher watcher;
+    private List<String> excludes = loadExcludes();
+    // Filter of the opened root, shared with the listing, index and watcher threads
+    private volatile IgnoreFilter ignoreFilter;
+    // Directories to expand as soon as they show up in a listing, e.g. from a restored session
+    private final Set<Path> pendingExpansions = new HashSet<>();
+
+    // Index of the files under the root for Go to File; only touched on the FX thread
+    private PathIndex pathIndex;
+    private boolean indexing;
+    private int indexVersion;
+    private Future<?> pendingIndex;
 
     public void setTreeView(TreeView<File> treeView) {
         this.treeView = treeView;
     }
 
+    /**
+     * A file or directory found by {@link #listDirectory(Path)}.
+     */
+    public record DirectoryEntry(File file, boolean directory) {
+    }
+
     public TreeItem<File> createFileTree(File directory) {
-        rootItem = new TreeItem<>(directory);
+        if (watcher == null) {
+            try {
+                watcher = new DirectoryWatcher(this::applyChanges);
+            } catch (IOException e) {
+                // No live updates; Refresh still lists the tree again
+            }
+        } else {
+            watcher.unregisterAll();
+        }
+        ignoreFilter = new IgnoreFilter(directory.toPath(), excludes);
+        metadata.clear();
+        pendingExpansions.clear();
+        rootItem = new DirectoryItem(directory);
+        // Expanding lists the top level in the background
         rootItem.setExpanded(true);
-        populateTree(directory, rootItem);
+        rebuildIndex();
         return rootItem;
     }
 
-    private void populateTree(File dir, TreeItem<File> parent) {
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                TreeItem<File> item = new TreeItem<>(file);
-                parent.getChildren().add(item);
-                if (file.isDirectory()) {
-                    populateTree(file, item);
+    /**
+     * Returns the filter applied to the opened directory, or null if none is open.
+     */
+    public IgnoreFilter getIgnoreFilter() {
+        return ignoreFilter;
+    }
+
+    public FileMetadataCache getMetadataCache() {
+        return metadata;
+    }
+
+    /**
+     * Returns the cached metadata of a listed entry, or null if it is unknown.
+     */
+    public FileMetadataCache.Metadata getMetadata(File file) {
+        return metadata.get(file);
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Replaces the exclude patterns (gitignore syntax), remembers them for the
+     * next start and applies them to the open tree and index.
+     */
+    public void setExcludes(List<String> excludes) {
+        this.excludes = List.copyOf(excludes);
+        PREFERENCES.put(EXCLUDES_KEY, String.join("\n", excludes));
+        if (rootItem != null) {
+            ignoreFilter = new IgnoreFilter(rootItem.getValue().toPath(), this.excludes);
+            refreshTree();
+            rebuildIndex();
+        }
+    }
+
+    private static List<String> loadExcludes() {
+        String saved = PREFERENCES.get(EXCLUDES_KEY, null);
+        return saved != null ? List.of(saved.split("\n")) : IgnoreFilter.DEFAULT_EXCLUDES;
+    }
+
+    /**
+     * Lists a directory, directories first and then by name, ignoring case.
+     */
+    public static List<DirectoryEntry> listDirectory(Path directory) throws IOException {
+        return listDirectory(directory, null, null);
+    }
+
+    /**
+     * Lists a directory, leaving out the entries {@code filter} excludes, if
+     * any. The attributes read for each entry are recorded in {@code cache},
+     * if any.
+     */
+    public static List<DirectoryEntry> listDirectory(Path directory, IgnoreFilter filter, FileMetadataCache cache)
+            throws IOException {
+        List<DirectoryEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // E.g. a dangling link; show it as a file
+                    attributes = null;
+                }
+                boolean isDirectory = attributes != null && attributes.isDirectory();
+                if (filter != null && filter.isIgnored(path, isDirectory)) {
+                    continue;
+                }
+                File file = path.toFile();
+                if (cache != null && attributes != null) {
+                    cache.put(file, attributes);
                 }
+                entries.add(new DirectoryEntry(file, isDirectory));
             }
         }
+        entries.sort(DIRECTORIES_FIRST);
+        return entries;
     }
 
+    /**
+     * Returns the path index of the opened directory, or null until the first
+     * build has finished. Paths are relative to the root and use '/'.
+     */
+    public PathIndex getPathIndex() {
+        return pathIndex;
+    }
+
+    /**
+     * True while the path index is being built in the background.
+     */
+    public boolean isIndexing() {
+        return indexing;
+    }
+
+    /**
+     * Rebuilds the path index of the root directory on a background thread.
+     * The previous index is kept for queries until the new one is published.
+     */
+    public void rebuildIndex() {
+        if (pendingIndex != null) {
+            pendingIndex.cancel(true);
+        }
+        File root = getRootDirectory();
+        if (root == null) {
+            return;
+        }
+        int version = ++indexVersion;
+        indexing = true;
+        Path rootPath = root.toPath();
+        IgnoreFilter filter = ignoreFilter;
+        pendingIndex = INDEX_EXECUTOR.submit(() -> {
+            PathIndex index = new PathIndex();
+            try {
+                Files.walkFileTree(rootPath, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        // Excluded subtrees are never listed
+                        return filter.isIgnored(dir, true) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() && !filter.isIgnored(file, false)) {
+                            index.add(relativePath(rootPath, file));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                // Keep whatever was indexed before the walk failed
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (version == indexVersion) {
+                    pathIndex = index;
+                    indexing = false;
+                }
+            });
+        });
+    }
+
+    private static String relativePath(Path root, Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Applies a file operation to the index; while it is still being built the
+     * build is restarted instead, since its walk may already have passed the file.
+     */
+    private void updateIndex(Consumer<PathIndex> update) {
+        if (indexing) {
+            rebuildIndex();
+        } else if (pathIndex != null) {
+            update.accept(pathIndex);
+        }
+    }
+
+    private String indexPath(File file) {
+        return relativePath(getRootDirectory().toPath(), file.toPath());
+    }
+
+    /**
+     * Lists the root again, and with it every directory that is expanded.
+     * Items of entries that still exist are kept, so expansion and selection
+     * survive the refresh.
+     */
     public void refreshTree() {
         if (rootItem != null && rootItem.getValue() != null) {
-            rootItem.getChildren().clear();
-            populateTree(rootItem.getValue(), rootItem);
+            load(rootItem);
+        }
+    }
+
+    /**
+     * Lists {@code item}'s directory in the background and publishes the
+     * children in sorted batches. A newer load of the same item drops the
+     * batches of an older one. The directory is watched from now on, so
+     * changes made while it is listed are not missed.
+     */
+    private void load(DirectoryItem item) {
+        item.loaded = true;
+        int version = ++item.loadVersion;
+        Path directory = item.getValue().toPath();
+        IgnoreFilter filter = ignoreFilter;
+        if (watcher != null) {
+            watcher.register(directory);
+        }
+        LISTING_EXECUTOR.execute(() -> {
+            List<DirectoryEntry> entries;
+            try {
+                entries = listDirectory(directory, filter, metadata);
+            } catch (IOException e) {
+                entries = List.of();
+            }
+            int from = 0;
+            do {
+                List<DirectoryEntry> batch = entries.subList(from, Math.min(entries.size(), from + BATCH_SIZE));
+                boolean first = from == 0;
+                boolean last = from + BATCH_SIZE >= entries.size();
+                Platform.runLater(() -> {
+                    if (item.loadVersion == version) {
+                        item.addBatch(batch, first, last);
+                    }
+                });
+                from += BATCH_SIZE;
+            } while (from < entries.size());
+        });
+    }
+
+    /**
+     * Applies a batch of watcher events. Runs on the watcher thread, where the
+     * changed entries are looked up; the tree is patched on the FX thread.
+     */
+    private void applyChanges(Map<Path, DirectoryWatcher.Changes> batch) {
+        for (Map.Entry<Path, DirectoryWatcher.Changes> change : batch.entrySet()) {
+            Path directory = change.getKey();
+            IgnoreFilter filter = ignoreFilter;
+            boolean rulesChanged = change.getValue().getPaths().contains(directory.resolve(".gitignore"));
+            if (rulesChanged && filter != null) {
+                // Entries below may be shown or hidden now
+                filter.invalidate(directory);
+            }
+            if (change.getValue().isOverflow() || rulesChanged) {
+                Platform.runLater(() -> {
+                    DirectoryItem item = findDirectoryItem(directory.toFile());
+                    if (item != null && item.loaded) {
+                        load(item);
+                    }
+                    rebuildIndex();
+                });
+                continue;
+            }
+            List<DirectoryEntry> present = new ArrayList<>();
+            List<File> removed = new ArrayList<>();
+            for (Path path : change.getValue().getPaths()) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (filter == null || !filter.isIgnored(path, attributes.isDirectory())) {
+                        metadata.put(path.toFile(), attributes);
+                        present.add(new DirectoryEntry(path.toFile(), attributes.isDirectory()));
+                    }
+                } catch (IOException e) {
+                    removed.add(path.toFile());
+                }
+            }
+            Platform.runLater(() -> patchTree(directory.toFile(), present, removed));
+        }
+    }
+
+    /**
+     * Inserts and removes children of a listed directory without listing it
+     * again. Entries that are already in the tree are left alone.
+     */
+    private void patchTree(File directory, List<DirectoryEntry> present, List<File> removed) {
+        patchTree(directory, present, removed, true);
+    }
+
+    /**
+     * @param indexNewDirectories whether new directories may contain files the index has to pick up
+     */
+    private void patchTree(File directory, List<DirectoryEntry> present, List<File> removed,
+                           boolean indexNewDirectories) {
+        DirectoryItem item = findDirectoryItem(directory);
+        if (item == null || !item.loaded) {
+            return;
+        }
+        boolean directoriesAdded = false;
+        for (File file : removed) {
+            TreeItem<File> child = item.findChild(file);
+            if (child != null) {
+                item.getChildren().remove(child);
+                discard(child);
+                updateIndex(index -> index.remove(indexPath(file)));
+            }
+        }
+        for (DirectoryEntry entry : present) {
+            TreeItem<File> child = item.findChild(entry.file());
+            if (child != null && child instanceof DirectoryItem == entry.directory()) {
+                continue;
+            }
+            if (child != null) {
+                item.getChildren().remove(child);
+                unwatch(child);
+                // The entry's own metadata is already the new one
+                child.getChildren().forEach(this::discard);
+            }
+            item.insert(entry);
+            if (entry.directory()) {
+                directoriesAdded = true;
+            } else if (child == null) {
+                updateIndex(index -> index.add(indexPath(entry.file())));
+            }
+        }
+        if (directoriesAdded && indexNewDirectories) {
+            // A new directory may come with a whole subtree; the index has to walk it
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Moves a child to its new name, keeping it expanded and selected.
+     */
+    private void renameInTree(File from, File to, boolean isDirectory) {
+        DirectoryItem parent = findDirectoryItem(from.getParentFile());
+        if (parent == null || !parent.loaded) {
+            return;
+        }
+        TreeItem<File> old = parent.findChild(from);
+        boolean selected = treeView != null && old != null && treeView.getSelectionModel().getSelectedItem() == old;
+        if (old != null) {
+            parent.getChildren().remove(old);
+            discard(old);
+        }
+        TreeItem<File> item = parent.findChild(to);
+        if (item == null) {
+            item = parent.insert(new DirectoryEntry(to, isDirectory));
+        }
+        if (old != null && old.isExpanded()) {
+            item.setExpanded(true);
+        }
+        if (selected) {
+            treeView.getSelectionModel().select(item);
+        }
+    }
+
+    /**
+     * Forgets a subtree that left the tree: stops watching its directories and
+     * drops the metadata of its entries.
+     */
+    private void discard(TreeItem<File> item) {
+        unwatch(item);
+        if (item instanceof DirectoryItem) {
+            metadata.removeSubtree(item.getValue());
+        } else {
+            metadata.remove(item.getValue());
+        }
+    }
+
+    /**
+     * Stops watching the directories in a subtree that left the tree.
+     */
+    private void unwatch(TreeItem<File> item) {
+        if (watcher == null || !(item instanceof DirectoryItem)) {
+            return;
+        }
+        watcher.unregister(item.getValue().toPath());
+        for (TreeItem<File> child : item.getChildren()) {
+            unwatch(child);
         }
     }
 
+    /**
+     * Finds the item of a listed directory by walking down from the root.
+     */
+    private DirectoryItem findDirectoryItem(File directory) {
+        if (rootItem == null || directory == null) {
+            return null;
+        }
+        Path root = rootItem.getValue().toPath();
+        Path path = directory.toPath();
+        if (!path.startsWith(root)) {
+            return null;
+        }
+        DirectoryItem item = rootItem;
+        for (Path name : root.relativize(path)) {
+            if (name.toString().isEmpty()) {
+                continue;
+            }
+            TreeItem<File> child = item.findChild(new File(item.getValue(), name.toString()));
+            if (!(child instanceof DirectoryItem childDirectory)) {
+                return null;
+            }
+            item = childDirectory;
+        }
+        return item;
+    }
+
     public boolean createNewFile(File parentDirectory, String fileName) {
         try {
             File newFile = new File(parentDirectory, fileName);
             if (newFile.createNewFile()) {
-                refreshTree();
+                patchTree(parentDirectory, List.of(new DirectoryEntry(newFile, false)), List.of());
                 return true;
             }
         } catch (IOException e) {
@@ -70,7 +520,7 @@ public class FileManager {
     public boolean createNewDirectory(File parentDirectory, String dirName) {
         File newDir = new File(parentDirectory, dirName);
         if (newDir.mkdir()) {
-            refreshTree();
+            patchTree(parentDirectory, List.of(new DirectoryEntry(newDir, true)), List.of(), false);
             return true;
         }
         return false;
@@ -78,38 +528,46 @@ public class FileManager {
 
     public boolean deleteFile(File file) {
         if (file.delete()) {
-            refreshTree();
+            patchTree(file.getParentFile(), List.of(), List.of(file));
             return true;
         }
         return false;
     }
 
-    public boolean deleteDirectory(File directory) {
-        if (deleteDirectoryRecursive(directory)) {
-            refreshTree();
-            return true;
-        }
-        return false;
-    }
-
-    private boolean deleteDirectoryRecursive(File directory) {
-        File[] files = directory.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    deleteDirectoryRecursive(file);
-                } else {
-                    file.delete();
-                }
-            }
+    /**
+     * Deletes a directory tree in the background. Its directories stop being
+     * watched first, so the tree is updated once, when the delete is done:
+     * the directory is removed, or listed again if some of it is left.
+     * {@code onProgress} and {@code onDone} are called on the FX thread.
+     */
+    public DirectoryDeleter.Handle deleteDirectory(File directory, IntConsumer onProgress,
+                                                   Consumer<DirectoryDeleter.Report> onDone) {
+        DirectoryItem item = findDirectoryItem(directory);
+        if (item != null) {
+            unwatch(item);
         }
-        return directory.delete();
+        return DirectoryDeleter.start(directory.toPath(),
+                count -> Platform.runLater(() -> onProgress.accept(count)),
+                report -> Platform.runLater(() -> {
+                    if (report.isComplete()) {
+                        patchTree(directory.getParentFile(), List.of(), List.of(directory));
+                    } else {
+                        DirectoryItem remaining = findDirectoryItem(directory);
+                        if (remaining != null && remaining.loaded) {
+                            // Lists what is left and watches it again
+                            load(remaining);
+                        }
+                        rebuildIndex();
+                    }
+                    onDone.accept(report);
+                }));
     }
 
     public boolean renameFile(File file, String newName) {
         File newFile = new File(file.getParentFile(), newName);
         if (file.renameTo(newFile)) {
-            refreshTree();
+            renameInTree(file, newFile, newFile.isDirectory());
+            updateIndex(index -> index.rename(indexPath(file), indexPath(newFile)));
             return true;
         }
         return false;
@@ -117,11 +575,40 @@ public class FileManager {
 
     public File getSelectedFile() {
         if (treeView != null && treeView.getSelectionModel().getSelectedItem() != null) {
-            return treeView.getSelectionModel().getSelectedItem().getValue();
+            File file = treeView.getSelectionModel().getSelectedItem().getValue();
+            return file != LOADING ? file : null;
         }
         return null;
     }
 
+    /**
+     * Returns the expanded directories below the root, parents before their children.
+     */
+    public List<Path> getExpandedDirectories() {
+        List<Path> expanded = new ArrayList<>();
+        if (rootItem != null) {
+            collectExpanded(rootItem, expanded);
+        }
+        return expanded;
+    }
+
+    private static void collectExpanded(TreeItem<File> item, List<Path> expanded) {
+        for (TreeItem<File> child : item.getChildren()) {
+            if (child instanceof DirectoryItem && child.isExpanded()) {
+                expanded.add(child.getValue().toPath());
+                collectExpanded(child, expanded);
+            }
+        }
+    }
+
+    /**
+     * Expands {@code directories} once their parents have been listed. A
+     * directory whose parent is never expanded stays collapsed.
+     */
+    public void expandWhenListed(Collection<Path> directories) {
+        pendingExpansions.addAll(directories);
+    }
+
     public File getRootDirectory() {
         if (rootItem != null) {
             return rootItem.getValue();
@@ -129,54 +616,154 @@ public class FileManager {
         return null;
     }
 
+    /**
+     * Tree item of a directory; its children are listed when it is first
+     * expanded and watched while it stays expanded.
+     */
+    private final class DirectoryItem extends TreeItem<File> {
+
+        private boolean loaded;
+        private int loadVersion;
+        // Children of the previous listing, reused by the load in progress
+        private Map<File, TreeItem<File>> previous;
+
+        DirectoryItem(File directory) {
+            super(directory);
+            getChildren().add(new TreeItem<>(LOADING));
+            expandedProperty().addListener((observable, wasExpanded, expanded) -> {
+                if (expanded && !loaded) {
+                    load(this);
+                } else if (!expanded && loaded && this != rootItem && watcher != null) {
+                    // Changes go unseen while collapsed; list it again on the next expand
+                    watcher.unregister(getValue().toPath());
+                    loaded = false;
+                }
+            });
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return loaded && getChildren().isEmpty();
+        }
+
+        private TreeItem<File> findChild(File file) {
+            for (TreeItem<File> child : getChildren()) {
+                if (file.equals(child.getValue())) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds an item for {@code entry} at its sorted position.
+         */
+        private TreeItem<File> insert(DirectoryEntry entry) {
+            List<TreeItem<File>> children = getChildren();
+            int low = 0;
+            int high = children.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                TreeItem<File> child = children.get(mid);
+                DirectoryEntry existing = new DirectoryEntry(child.getValue(), child instanceof DirectoryItem);
+                if (DIRECTORIES_FIRST.compare(existing, entry) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            TreeItem<File> item = entry.directory() ? new DirectoryItem(entry.file()) : new TreeItem<>(entry.file());
+            children.add(low, item);
+            return item;
+        }
+
+        private void addBatch(List<DirectoryEntry> batch, boolean first, boolean last) {
+            if (first) {
+                previous = new HashMap<>();
+                for (TreeItem<File> child : getChildren()) {
+                    previous.put(child.getValue(), child);
+                }
+            }
+            List<TreeItem<File>> items = new ArrayList<>(batch.size());
+            for (DirectoryEntry entry : batch) {
+                TreeItem<File> item = previous.remove(entry.file());
+                if (item instanceof DirectoryItem directory && entry.directory()) {
+                    if (directory.isExpanded()) {
+                        load(directory);
+                    } else {
+                        // Listed again when it is next expanded
+                        directory.loaded = false;
+                    }
+                } else if (item == null || item instanceof DirectoryItem != entry.directory()) {
+                    item = entry.directory() ? new DirectoryItem(entry.file()) : new TreeItem<>(entry.file());
+                }
+                items.add(item);
+            }
+            if (first) {
+                getChildren().setAll(items);
+            } else {
+                getChildren().addAll(items);
+            }
+            if (!pendingExpansions.isEmpty()) {
+                for (TreeItem<File> item : items) {
+                    if (item instanceof DirectoryItem && pendingExpansions.remove(item.getValue().toPath())) {
+                        // Lists it in turn, which expands its own pending children
+                        item.setExpanded(true);
+                    }
+                }
+            }
+            if (last) {
+                // Whatever was not listed again is gone
+                previous.values().forEach(FileManager.this::discard);
+                previous = null;
+            }
+        }
+    }
+
+    /**
+     * Tree cell that reuses its label and icon and takes everything it shows
+     * from the metadata cache, so scrolling does no file system access.
+     */
     public static class FileTreeCell extends TreeCell<File> {
+
+        private final FileMetadataCache metadata;
+        private final Label label = new Label();
+        private final Text icon = new Text();
+
+        public FileTreeCell(FileMetadataCache metadata) {
+            this.metadata = metadata;
+            icon.setFont(Font.font("System", FontWeight.NORMAL, 16));
+        }
+
         @Override
         protected void updateItem(File file, boolean empty) {
             super.updateItem(file, empty);
+            setText(null);
             if (empty || file == null) {
-                setText(null);
                 setGraphic(null);
+                return;
+            }
+            label.setText(file.getName());
+            if (file == LOADING) {
+                label.setGraphic(null);
+                if (!label.getStyleClass().contains("tree-loading")) {
+                    label.getStyleClass().add("tree-loading");
+                }
             } else {
-                Label label = new Label(file.getName());
-                Text icon = new Text(getFileIcon(file));
-                icon.setFont(Font.font("System", FontWeight.NORMAL, 16));
+                label.getStyleClass().remove("tree-loading");
+                icon.setText(getKind(file).getIcon());
                 label.setGraphic(icon);
-                setGraphic(label);
-                setText(null);
             }
+            setGraphic(label);
         }
 
-        private String getFileIcon(File file) {
-            if (file.isDirectory()) {
-                return "📁";
-            } else {
-                String name = file.getName().toLowerCase();
-                if (name.endsWith(".java")) {
-                    return "☕";
-                } else if (name.endsWith(".xml") || name.endsWith(".fxml")) {
-                    return "📄";
-                } else if (name.endsWith(".css")) {
-                    return "🎨";
-                } else if (name.endsWith(".js")) {
-                    return "📜";
-                } else if (name.endsWith(".html") || name.endsWith(".htm")) {
-                    return "🌐";
-                } else if (name.endsWith(".json")) {
-                    return "📋";
-                } else if (name.endsWith(".md")) {
-                    return "📝";
-                } else if (name.endsWith(".txt")) {
-                    return "📄";
-                } else if (name.endsWith(".jar") || name.endsWith(".war")) {
-                    return "📦";
-                } else if (name.endsWith(".gitignore") || name.endsWith(".git")) {
-                    return "🔧";
-                } else if (name.endsWith(".properties") || name.endsWith(".yml") || name.endsWith(".yaml")) {
-                    return "⚙️";
-                } else {
-                    return "📄";
-                }
+        private FileMetadataCache.Kind getKind(File file) {
+            FileMetadataCache.Metadata cached = metadata.get(file);
+            if (cached != null) {
+                return cached.kind();
             }
+            // Not listed by us, e.g. just created; the item knows whether it is a directory
+            return FileMetadataCache.Kind.of(file.getName(), getTreeItem() instanceof DirectoryItem);
         }
     }
 }
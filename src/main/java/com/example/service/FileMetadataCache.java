@@ -0,0 +1,118 @@
+package com.example.service;
+
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the file tree shows about its entries, keyed by file. Filled from the
+ * attributes read while a directory is listed or a watcher event is looked up,
+ * and dropped when an entry leaves the tree, so drawing a cell never touches
+ * the file system. Written on the listing and watcher threads, read on the FX
+ * thread.
+ */
+public class FileMetadataCache {
+
+    /**
+     * Kind of a tree entry, decided once from its name and attributes.
+     */
+    public enum Kind {
+        DIRECTORY("📁"),
+        JAVA("☕"),
+        MARKUP("📄"),
+        STYLESHEET("🎨"),
+        SCRIPT("📜"),
+        WEB("🌐"),
+        JSON("📋"),
+        MARKDOWN("📝"),
+        TEXT("📄"),
+        ARCHIVE("📦"),
+        GIT("🔧"),
+        CONFIG("⚙️"),
+        OTHER("📄");
+
+        private final String icon;
+
+        Kind(String icon) {
+            this.icon = icon;
+        }
+
+        public String getIcon() {
+            return icon;
+        }
+
+        public static Kind of(String name, boolean directory) {
+            if (directory) {
+                return DIRECTORY;
+            }
+            int dot = name.lastIndexOf('.');
+            String extension = dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+            return switch (extension) {
+                case "java" -> JAVA;
+                case "xml", "fxml" -> MARKUP;
+                case "css" -> STYLESHEET;
+                case "js" -> SCRIPT;
+                case "html", "htm" -> WEB;
+                case "json" -> JSON;
+                case "md" -> MARKDOWN;
+                case "txt" -> TEXT;
+                case "jar", "war" -> ARCHIVE;
+                case "gitignore", "git" -> GIT;
+                case "properties", "yml", "yaml" -> CONFIG;
+                default -> OTHER;
+            };
+        }
+    }
+
+    /**
+     * Kind, size in bytes and last modification time in milliseconds of an entry.
+     */
+    public record Metadata(Kind kind, long size, long lastModified) {
+
+        public boolean isDirectory() {
+            return kind == Kind.DIRECTORY;
+        }
+    }
+
+    private final Map<File, Metadata> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Records the attributes just read for {@code file}.
+     */
+    public Metadata put(File file, BasicFileAttributes attributes) {
+        Metadata metadata = new Metadata(Kind.of(file.getName(), attributes.isDirectory()), attributes.size(),
+                attributes.lastModifiedTime().toMillis());
+        entries.put(file, metadata);
+        return metadata;
+    }
+
+    /**
+     * Returns what is known about {@code file}, or null if it has not been listed.
+     */
+    public Metadata get(File file) {
+        return entries.get(file);
+    }
+
+    public void remove(File file) {
+        entries.remove(file);
+    }
+
+    /**
+     * Drops {@code directory} and everything recorded below it.
+     */
+    public void removeSubtree(File directory) {
+        entries.remove(directory);
+        String prefix = directory.getPath() + File.separator;
+        entries.keySet().removeIf(file -> file.getPath().startsWith(prefix));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.service;
+
+import com.example.util.Hashes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes documents on a background thread. The caller hands over the text it
+ * took from the editor; encoding and writing happen here, through a temporary
+ * file that is synced and then moved over the target, so a crash leaves
+ * either the old or the new file. Saves of a file that queue up while an
+ * earlier one is written become a single write of the latest text, and text
+ * whose hash matches what is already on disk is not written at all.
+ */
+public class FileSaver {
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public enum Status {
+        WRITTEN,
+        /** The file already had this content. */
+        UNCHANGED,
+        FAILED
+    }
+
+    /**
+     * Outcome of a save; {@code error} is set if it failed.
+     */
+    public record Result(Path path, Status status, IOException error) {
+    }
+
+    /**
+     * What was last read from or written to a file: the hash of its bytes and
+     * the size and mtime it had afterwards, to notice changes made elsewhere.
+     */
+    private record Written(byte[] hash, long size, long lastModified) {
+    }
+
+    /**
+     * The latest text waiting to be written to a file, and everyone waiting for it.
+     */
+    private static final class Request {
+        private String text;
+        private final List<CompletableFuture<Result>> waiters = new ArrayList<>();
+    }
+
+    // Guarded by itself
+    private final Map<Path, Request> pending = new HashMap<>();
+    private final Map<Path, Written> written = new ConcurrentHashMap<>();
+
+    /**
+     * Remembers that {@code path} holds {@code text}, e.g. right after it was
+     * read, so saving it unchanged writes nothing.
+     */
+    public void track(Path path, String text) {
+        Path target = path.toAbsolutePath();
+        EXECUTOR.execute(() -> {
+            byte[] hash = Hashes.sha256(text);
+            try {
+                remember(target, hash);
+            } catch (IOException e) {
+                written.remove(target);
+            }
+        });
+    }
+
+    public void forget(Path path) {
+        written.remove(path.toAbsolutePath());
+    }
+
+    /**
+     * Queues {@code text} to be written to {@code path} as UTF-8. If a save of
+     * the same file is still queued, it is replaced and both complete with the
+     * result of the one write. The future completes on the save thread.
+     */
+    public CompletableFuture<Result> save(Path path, String text) {
+        Path target = path.toAbsolutePath();
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        boolean queued;
+        synchronized (pending) {
+            Request request = pending.get(target);
+            queued = request != null;
+            if (!queued) {
+                request = new Request();
+                pending.put(target, request);
+            }
+            request.text = text;
+            request.waiters.add(future);
+        }
+        if (!queued) {
+            EXECUTOR.execute(() -> write(target));
+        }
+        return future;
+    }
+
+    /**
+     * Writes a large document with its edits to {@code path} on the save
+     * thread, after the saves queued before it. The document must be left
+     * alone until the future completes, on the save thread.
+     */
+    public CompletableFuture<Result> save(Path path, LargeFileDocument document) {
+        Path target = path.toAbsolutePath();
+        return CompletableFuture.supplyAsync(() -> {
+            // Not hashed, so the next save of this file is always written
+            written.remove(target);
+            try {
+                document.save(target);
+                return new Result(target, Status.WRITTEN, null);
+            } catch (IOException e) {
+                return new Result(target, Status.FAILED, e);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Waits up to {@code timeout} for the saves queued so far to be written,
+     * e.g. before the application exits. Returns false if they were not.
+     */
+    public static boolean awaitPending(long timeout, TimeUnit unit) {
+        try {
+            EXECUTOR.submit(() -> { }).get(timeout, unit);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void write(Path target) {
+        Request request;
+        synchronized (pending) {
+            // Saves made from here on queue another write
+            request = pending.remove(target);
+        }
+        Result result;
+        try {
+            byte[] bytes = request.text.getBytes(StandardCharsets.UTF_8);
+            byte[] hash = Hashes.sha256(bytes);
+            if (isOnDisk(target, hash)) {
+                result = new Result(target, Status.UNCHANGED, null);
+            } else {
+                writeAtomically(target, bytes);
+                remember(target, hash);
+                result = new Result(target, Status.WRITTEN, null);
+            }
+        } catch (IOException e) {
+            written.remove(target);
+            result = new Result(target, Status.FAILED, e);
+        }
+        for (CompletableFuture<Result> waiter : request.waiters) {
+            waiter.complete(result);
+        }
+    }
+
+    private boolean isOnDisk(Path target, byte[] hash) {
+        Written last = written.get(target);
+        if (last == null || !Arrays.equals(last.hash(), hash)) {
+            return false;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+            return attributes.size() == last.size() && attributes.lastModifiedTime().toMillis() == last.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void remember(Path target, byte[] hash) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+        written.put(target, new Written(hash, attributes.size(), attributes.lastModifiedTime().toMillis()));
+    }
+
+    private static void writeAtomically(Path target, byte[] bytes) throws IOException {
+        if (Files.isSymbolicLink(target)) {
+            // Replace the file the link points to, not the link
+            target = target.toRealPath();
+        }
+        Path temp = target.resolveSibling("." + target.getFileName() + ".jwrite-save");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            copyPermissions(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Keeps e.g. the executable bit of a script that is replaced by the new file.
+     */
+    private static void copyPermissions(Path from, Path to) {
+        try {
+            if (Files.exists(from, LinkOption.NOFOLLOW_LINKS)) {
+                Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // Not a POSIX file system; the new file gets the default permissions
+        }
+    }
+}
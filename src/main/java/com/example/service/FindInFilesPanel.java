@@ -0,0 +1,329 @@
+package com.example.service;
+
+import com.example.util.IgnoreFilter;
+import com.example.util.TextSearch;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.Tooltip;
+import javafx.scene.control.TreeCell;
+import javafx.scene.control.TreeItem;
+import javafx.scene.control.TreeView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Find in Files results, grouped by file and kept sorted by path. Results
+ * stream in from the search workers through a queue that is drained at most
+ * once per pulse, so a search with many hits does not flood the FX thread.
+ */
+public class FindInFilesPanel extends VBox {
+
+    // Files added to the tree per drain; the rest waits for the next pulse
+    private static final int FILES_PER_DRAIN = 200;
+
+    private final TextField queryField = new TextField();
+    private final ToggleButton matchCase = toggle("Aa", "Match case");
+    private final ToggleButton wholeWord = toggle("W", "Match whole word");
+    private final ToggleButton regex = toggle(".*", "Use regular expression");
+    private final Button stop = new Button("Stop");
+    private final Label statusLabel = new Label();
+    private final TreeView<Result> resultsView = new TreeView<>(new TreeItem<>());
+
+    private Supplier<IgnoreFilter> filterSource;
+    private Run current;
+    private BiConsumer<File, ProjectSearch.Match> onOpenMatch;
+    private int fileCount;
+    private int matchCount;
+
+    /**
+     * A file node ({@code match == null}) or one of its matches.
+     */
+    private record Result(Path file, String label, ProjectSearch.Match match) {
+    }
+
+    /**
+     * One search; results are queued by the workers and drained on the FX thread.
+     */
+    private static final class Run {
+        final Path root;
+        final Queue<ProjectSearch.FileMatches> pending = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean drainScheduled = new AtomicBoolean();
+        final long started = System.nanoTime();
+        ProjectSearch.Handle handle;
+
+        Run(Path root) {
+            this.root = root;
+        }
+    }
+
+    public FindInFilesPanel() {
+        getStyleClass().add("find-in-files-panel");
+        setSpacing(4);
+        setPadding(new Insets(4, 8, 4, 8));
+
+        queryField.setPromptText("Find in files");
+        HBox.setHgrow(queryField, Priority.ALWAYS);
+        Button search = new Button("Search");
+        search.setOnAction(e -> search());
+        stop.setOnAction(e -> cancel());
+        stop.setDisable(true);
+        queryField.setOnAction(e -> search());
+        queryField.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ESCAPE) {
+                cancel();
+                event.consume();
+            }
+        });
+
+        HBox queryRow = new HBox(4, queryField, matchCase, wholeWord, regex, search, stop, statusLabel);
+        queryRow.setAlignment(Pos.CENTER_LEFT);
+
+        resultsView.setShowRoot(false);
+        resultsView.setCellFactory(tv -> new ResultCell());
+        resultsView.setOnMouseClicked(event -> {
+            if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) {
+                openSelected();
+            }
+        });
+        resultsView.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                openSelected();
+                event.consume();
+            }
+        });
+        VBox.setVgrow(resultsView, Priority.ALWAYS);
+
+        getChildren().addAll(queryRow, resultsView);
+    }
+
+    /**
+     * Sets where the filter of the opened project comes from; its root is the
+     * directory searched. It is read again for every search.
+     */
+    public void setFilterSource(Supplier<IgnoreFilter> filterSource) {
+        this.filterSource = filterSource;
+    }
+
+    /**
+     * Sets the callback run on the FX thread when a match is opened.
+     */
+    public void setOnOpenMatch(BiConsumer<File, ProjectSearch.Match> onOpenMatch) {
+        this.onOpenMatch = onOpenMatch;
+    }
+
+    /**
+     * Focuses the query field, starting with {@code query} if it is not empty.
+     */
+    public void focusQuery(String query) {
+        if (query != null && !query.isEmpty() && query.indexOf('\n') < 0) {
+            queryField.setText(query);
+        }
+        queryField.requestFocus();
+        queryField.selectAll();
+    }
+
+    public void search() {
+        cancel();
+        resultsView.getRoot().getChildren().clear();
+        fileCount = 0;
+        matchCount = 0;
+        IgnoreFilter filter = filterSource != null ? filterSource.get() : null;
+        if (filter == null) {
+            statusLabel.setText("Open a directory first");
+            return;
+        }
+        if (queryField.getText().isEmpty()) {
+            statusLabel.setText("");
+            return;
+        }
+        TextSearch query;
+        try {
+            query = new TextSearch(queryField.getText(), matchCase.isSelected(), wholeWord.isSelected(),
+                    regex.isSelected());
+        } catch (PatternSyntaxException e) {
+            statusLabel.setText("Invalid regex");
+            return;
+        }
+
+        Run run = new Run(filter.getRoot());
+        run.handle = ProjectSearch.start(filter, query,
+                fileMatches -> {
+                    run.pending.add(fileMatches);
+                    scheduleDrain(run);
+                },
+                summary -> Platform.runLater(() -> finish(run, summary)));
+        current = run;
+        stop.setDisable(false);
+        statusLabel.setText("Searching…");
+    }
+
+    public void cancel() {
+        if (current != null) {
+            current.handle.cancel();
+            current = null;
+            stop.setDisable(true);
+            statusLabel.setText("Stopped, " + describeCounts());
+        }
+    }
+
+    private void scheduleDrain(Run run) {
+        if (run.drainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> drain(run));
+        }
+    }
+
+    private void drain(Run run) {
+        run.drainScheduled.set(false);
+        if (run != current) {
+            return;
+        }
+        ProjectSearch.FileMatches fileMatches;
+        int drained = 0;
+        while (drained < FILES_PER_DRAIN && (fileMatches = run.pending.poll()) != null) {
+            addFile(run, fileMatches);
+            drained++;
+        }
+        if (!run.pending.isEmpty()) {
+            scheduleDrain(run);
+        }
+        statusLabel.setText("Searching… " + describeCounts());
+    }
+
+    private void finish(Run run, ProjectSearch.Summary summary) {
+        if (run != current) {
+            return;
+        }
+        ProjectSearch.FileMatches fileMatches;
+        while ((fileMatches = run.pending.poll()) != null) {
+            addFile(run, fileMatches);
+        }
+        current = null;
+        stop.setDisable(true);
+        String status = describeCounts() + " (" + summary.filesSearched() + " files searched in "
+                + (System.nanoTime() - run.started) / 1_000_000 + " ms)";
+        if (summary.limitReached()) {
+            status = "Stopped at " + ProjectSearch.MAX_TOTAL_MATCHES + " results, " + status;
+        }
+        statusLabel.setText(status);
+    }
+
+    private void addFile(Run run, ProjectSearch.FileMatches fileMatches) {
+        Path file = fileMatches.file();
+        String path = run.root.relativize(file).toString();
+        List<ProjectSearch.Match> matches = fileMatches.matches();
+
+        TreeItem<Result> fileItem = new TreeItem<>(new Result(file, path + "  (" + matches.size() + ")", null));
+        for (ProjectSearch.Match match : matches) {
+            fileItem.getChildren().add(new TreeItem<>(new Result(file, null, match)));
+        }
+        fileItem.setExpanded(true);
+
+        // Workers finish in any order; keep the files sorted by path
+        List<TreeItem<Result>> files = resultsView.getRoot().getChildren();
+        int low = 0;
+        int high = files.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (files.get(mid).getValue().file().compareTo(file) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        files.add(low, fileItem);
+        fileCount++;
+        matchCount += matches.size();
+    }
+
+    private String describeCounts() {
+        return matchCount + (matchCount == 1 ? " result" : " results") + " in " + fileCount
+                + (fileCount == 1 ? " file" : " files");
+    }
+
+    private void openSelected() {
+        TreeItem<Result> item = resultsView.getSelectionModel().getSelectedItem();
+        if (item == null || onOpenMatch == null) {
+            return;
+        }
+        Result result = item.getValue();
+        ProjectSearch.Match match = result.match();
+        if (match == null && !item.getChildren().isEmpty()) {
+            match = item.getChildren().get(0).getValue().match();
+        }
+        onOpenMatch.accept(result.file().toFile(), match);
+    }
+
+    private static ToggleButton toggle(String text, String tooltip) {
+        ToggleButton button = new ToggleButton(text);
+        button.setTooltip(new Tooltip(tooltip));
+        button.setFocusTraversable(false);
+        return button;
+    }
+
+    /**
+     * Shows a match as "line: preview" with the matched text highlighted.
+     */
+    private static class ResultCell extends TreeCell<Result> {
+
+        private final Text lineNumber = new Text();
+        private final Text before = new Text();
+        private final Text hit = new Text();
+        private final Text after = new Text();
+        private final TextFlow flow = new TextFlow(lineNumber, before, hit, after);
+
+        ResultCell() {
+            lineNumber.getStyleClass().add("search-result-line");
+            before.getStyleClass().add("search-result-text");
+            hit.getStyleClass().addAll("search-result-text", "search-result-hit");
+            after.getStyleClass().add("search-result-text");
+        }
+
+        @Override
+        protected void updateItem(Result result, boolean empty) {
+            super.updateItem(result, empty);
+            if (empty || result == null) {
+                setText(null);
+                setGraphic(null);
+            } else if (result.match() == null) {
+                setText(result.label());
+                setGraphic(null);
+            } else {
+                ProjectSearch.Match match = result.match();
+                String preview = match.preview();
+                int hitStart = match.previewColumn();
+                int hitEnd = Math.min(preview.length(), hitStart + match.length());
+                // Leading indentation only pushes the match out of view
+                int trimmed = 0;
+                while (trimmed < hitStart && Character.isWhitespace(preview.charAt(trimmed))) {
+                    trimmed++;
+                }
+                lineNumber.setText((match.line() + 1) + ":  ");
+                before.setText(preview.substring(trimmed, hitStart));
+                hit.setText(preview.substring(hitStart, hitEnd));
+                after.setText(preview.substring(hitEnd));
+                setText(null);
+                setGraphic(flow);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.service;
+
+import com.example.util.TextSearch;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import org.fxmisc.richtext.CodeArea;
+import org.reactfx.EventStreams;
+
+import java.time.Duration;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Find/Replace bar shown above the editor tabs (Ctrl+F / Ctrl+H).
+ * Typing in the query only restarts the background search, so the FX
+ * thread never scans the document.
+ */
+public class FindReplacePanel extends VBox {
+
+    private final DocumentSearch search = new DocumentSearch();
+
+    private final TextField findField = new TextField();
+    private final TextField replaceField = new TextField();
+    private final ToggleButton matchCase = toggle("Aa", "Match case");
+    private final ToggleButton wholeWord = toggle("W", "Match whole word");
+    private final ToggleButton regex = toggle(".*", "Use regular expression");
+    private final Label countLabel = new Label();
+    private final HBox replaceRow;
+
+    private CodeArea codeArea;
+    private boolean invalidQuery;
+
+    public FindReplacePanel() {
+        getStyleClass().add("find-replace-panel");
+        setSpacing(4);
+        setPadding(new Insets(4, 8, 4, 8));
+
+        findField.setPromptText("Find");
+        replaceField.setPromptText("Replace");
+        HBox.setHgrow(findField, Priority.ALWAYS);
+        HBox.setHgrow(replaceField, Priority.ALWAYS);
+        countLabel.setMinWidth(90);
+
+        Button previous = button("↑", "Previous match (Shift+Enter)", () -> search.previous());
+        Button next = button("↓", "Next match (Enter)", () -> search.next());
+        Button close = button("✕", "Close (Escape)", this::hide);
+        Button replace = button("Replace", "Replace (Enter)", () -> search.replaceCurrent(replaceField.getText()));
+        Button replaceAll = button("Replace All", "Replace all matches", () -> search.replaceAll(replaceField.getText()));
+
+        HBox findRow = new HBox(4, findField, matchCase, wholeWord, regex, countLabel, previous, next, close);
+        replaceRow = new HBox(4, replaceField, replace, replaceAll);
+        findRow.setAlignment(Pos.CENTER_LEFT);
+        replaceRow.setAlignment(Pos.CENTER_LEFT);
+        getChildren().addAll(findRow, replaceRow);
+
+        findField.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                if (event.isShiftDown()) {
+                    search.previous();
+                } else {
+                    search.next();
+                }
+                event.consume();
+            } else if (event.getCode() == KeyCode.ESCAPE) {
+                hide();
+                event.consume();
+            }
+        });
+        replaceField.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                search.replaceCurrent(replaceField.getText());
+                event.consume();
+            } else if (event.getCode() == KeyCode.ESCAPE) {
+                hide();
+                event.consume();
+            }
+        });
+
+        // Coalesce keystrokes; each query change cancels the running search
+        EventStreams.merge(
+                        EventStreams.changesOf(findField.textProperty()),
+                        EventStreams.changesOf(matchCase.selectedProperty()),
+                        EventStreams.changesOf(wholeWord.selectedProperty()),
+                        EventStreams.changesOf(regex.selectedProperty()))
+                .successionEnds(Duration.ofMillis(60))
+                .subscribe(ignore -> updateQuery());
+        search.setOnUpdate(this::updateCount);
+
+        setVisible(false);
+        setManaged(false);
+    }
+
+    /**
+     * Shows the bar for {@code codeArea}, with the replace row if requested.
+     * A single-line selection becomes the query.
+     */
+    public void show(CodeArea codeArea, boolean withReplace) {
+        replaceRow.setVisible(withReplace);
+        replaceRow.setManaged(withReplace);
+        setVisible(true);
+        setManaged(true);
+        if (codeArea != null) {
+            String selected = codeArea.getSelectedText();
+            if (!selected.isEmpty() && selected.indexOf('\n') < 0) {
+                findField.setText(selected);
+            }
+        }
+        setCodeArea(codeArea);
+        findField.requestFocus();
+        findField.selectAll();
+    }
+
+    public void hide() {
+        setVisible(false);
+        setManaged(false);
+        search.detach();
+        if (codeArea != null) {
+            codeArea.requestFocus();
+        }
+        codeArea = null;
+    }
+
+    /**
+     * Follows the selected editor tab while the bar is open.
+     */
+    public void setCodeArea(CodeArea codeArea) {
+        if (!isVisible()) {
+            return;
+        }
+        this.codeArea = codeArea;
+        search.attach(codeArea);
+        updateQuery();
+    }
+
+    private void updateQuery() {
+        if (!isVisible()) {
+            return;
+        }
+        try {
+            search.setQuery(new TextSearch(findField.getText(), matchCase.isSelected(),
+                    wholeWord.isSelected(), regex.isSelected()));
+            invalidQuery = false;
+        } catch (PatternSyntaxException e) {
+            search.setQuery(null);
+            invalidQuery = true;
+        }
+        updateCount();
+    }
+
+    private void updateCount() {
+        if (invalidQuery) {
+            countLabel.setText("Invalid regex");
+        } else if (findField.getText().isEmpty() || codeArea == null) {
+            countLabel.setText("");
+        } else if (!search.isComplete()) {
+            countLabel.setText(search.getMatchCount() > 0 ? search.getMatchCount() + "+ results" : "Searching…");
+        } else if (search.getMatchCount() == 0) {
+            countLabel.setText("No results");
+        } else {
+            int current = search.getCurrentMatch();
+            countLabel.setText(current >= 0
+                    ? (current + 1) + " of " + search.getMatchCount()
+                    : search.getMatchCount() + " results");
+        }
+    }
+
+    private static ToggleButton toggle(String text, String tooltip) {
+        ToggleButton button = new ToggleButton(text);
+        button.setTooltip(new Tooltip(tooltip));
+        button.setFocusTraversable(false);
+        return button;
+    }
+
+    private static Button button(String text, String tooltip, Runnable action) {
+        Button button = new Button(text);
+        button.setTooltip(new Tooltip(tooltip));
+        button.setFocusTraversable(false);
+        button.setOnAction(e -> action.run());
+        return button;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.service;
+
+import com.example.util.PathIndex;
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+import javafx.stage.Popup;
+import javafx.stage.Window;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Quick-open palette for Go to File (F12). Every keystroke queries the
+ * {@link FileManager}'s path index on the FX thread; the index answers from
+ * memory, so no file system access happens while typing.
+ */
+public class GoToFilePalette {
+
+    private static final int MAX_RESULTS = 50;
+    private static final double WIDTH = 560;
+
+    private final FileManager fileManager;
+    private final Popup popup = new Popup();
+    private final TextField queryField = new TextField();
+    private final ListView<String> resultsView = new ListView<>();
+    private final Label placeholder = new Label();
+    private Consumer<File> onOpen;
+
+    public GoToFilePalette(FileManager fileManager) {
+        this.fileManager = fileManager;
+
+        queryField.setPromptText("Go to file");
+        resultsView.setPlaceholder(placeholder);
+        resultsView.setPrefHeight(320);
+        resultsView.setCellFactory(list -> new PathCell());
+        resultsView.setOnMouseClicked(event -> {
+            if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) {
+                openSelected();
+            }
+        });
+
+        queryField.textProperty().addListener((observable, oldValue, newValue) -> updateResults());
+        queryField.setOnKeyPressed(event -> {
+            switch (event.getCode()) {
+                case ENTER -> openSelected();
+                case DOWN -> moveSelection(1);
+                case UP -> moveSelection(-1);
+                default -> {
+                    return;
+                }
+            }
+            event.consume();
+        });
+        resultsView.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                openSelected();
+                event.consume();
+            }
+        });
+
+        VBox content = new VBox(4, queryField, resultsView);
+        content.getStyleClass().add("go-to-file-palette");
+        content.setPadding(new Insets(6));
+        content.setPrefWidth(WIDTH);
+        popup.getContent().add(content);
+        popup.setAutoHide(true);
+        popup.setHideOnEscape(true);
+    }
+
+    /**
+     * Sets the callback run with the chosen file.
+     */
+    public void setOnOpen(Consumer<File> onOpen) {
+        this.onOpen = onOpen;
+    }
+
+    /**
+     * Shows the palette at the top of {@code owner}.
+     */
+    public void show(Window owner) {
+        if (!popup.isShowing()) {
+            popup.show(owner, owner.getX() + (owner.getWidth() - WIDTH) / 2, owner.getY() + 60);
+        }
+        queryField.selectAll();
+        queryField.requestFocus();
+        updateResults();
+    }
+
+    private void updateResults() {
+        PathIndex index = fileManager.getPathIndex();
+        if (fileManager.getRootDirectory() == null) {
+            placeholder.setText("Open a directory first");
+            resultsView.getItems().clear();
+            return;
+        }
+        if (index == null) {
+            placeholder.setText("Indexing…");
+            resultsView.getItems().clear();
+            return;
+        }
+        List<String> results = index.search(queryField.getText(), MAX_RESULTS);
+        placeholder.setText(queryField.getText().isBlank() ? "Type to search " + index.size() + " files"
+                : fileManager.isIndexing() ? "No matching files (still indexing…)" : "No matching files");
+        resultsView.getItems().setAll(results);
+        if (!results.isEmpty()) {
+            resultsView.getSelectionModel().select(0);
+            resultsView.scrollTo(0);
+        }
+    }
+
+    private void moveSelection(int delta) {
+        int size = resultsView.getItems().size();
+        if (size == 0) {
+            return;
+        }
+        int index = Math.floorMod(resultsView.getSelectionModel().getSelectedIndex() + delta, size);
+        resultsView.getSelectionModel().select(index);
+        resultsView.scrollTo(index);
+    }
+
+    private void openSelected() {
+        String path = resultsView.getSelectionModel().getSelectedItem();
+        File root = fileManager.getRootDirectory();
+        if (path == null || root == null) {
+            return;
+        }
+        popup.hide();
+        if (onOpen != null) {
+            onOpen.accept(new File(root, path));
+        }
+    }
+
+    /**
+     * Shows the file name followed by its directory.
+     */
+    private static class PathCell extends ListCell<String> {
+
+        private final Text name = new Text();
+        private final Text directory = new Text();
+        private final TextFlow flow = new TextFlow(name, directory);
+
+        PathCell() {
+            name.getStyleClass().add("go-to-file-name");
+            directory.getStyleClass().add("go-to-file-directory");
+        }
+
+        @Override
+        protected void updateItem(String path, boolean empty) {
+            super.updateItem(path, empty);
+            if (empty || path == null) {
+                setGraphic(null);
+            } else {
+                int slash = path.lastIndexOf('/');
+                name.setText(path.substring(slash + 1));
+                directory.setText(slash >= 0 ? "   " + path.substring(0, slash) : "");
+                setGraphic(flow);
+            }
+            setText(null);
+        }
+    }
+}
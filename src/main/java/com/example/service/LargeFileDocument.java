@@ -0,0 +1,439 @@
+package com.example.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A large file backed by memory-mapped regions instead of heap strings.
+ * A compact line-offset index is built in one pass; lines are decoded only
+ * when they are paged into the editor, and edits are kept as an overlay of
+ * replaced line ranges until the document is saved.
+ */
+public class LargeFileDocument implements Closeable {
+
+    private static final long REGION_SIZE = 1L << 30;
+
+    private Path path;
+    private FileChannel channel;
+    private MappedByteBuffer[] regions;
+    private long size;
+
+    // Start offset of every line; int[] while offsets fit, long[] beyond 2 GB
+    private int[] intOffsets;
+    private long[] longOffsets;
+    private int lineCount;
+
+    // Replaced ranges of original lines, keyed by their first line
+    private final TreeMap<Integer, Patch> patches = new TreeMap<>();
+
+    private LargeFileDocument(Path path) {
+        this.path = path;
+    }
+
+    public static LargeFileDocument open(Path path) throws IOException {
+        LargeFileDocument document = new LargeFileDocument(path);
+        document.map();
+        return document;
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        int regionCount = (int) Math.max(1, (size + REGION_SIZE - 1) / REGION_SIZE);
+        regions = new MappedByteBuffer[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            long start = i * REGION_SIZE;
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+        }
+        buildIndex();
+    }
+
+    private void buildIndex() {
+        boolean wide = size > Integer.MAX_VALUE;
+        int capacity = (int) Math.min(Math.max(16, size / 40), Integer.MAX_VALUE - 8);
+        intOffsets = wide ? null : new int[capacity];
+        longOffsets = wide ? new long[capacity] : null;
+        lineCount = 0;
+        addLineOffset(0);
+
+        for (int r = 0; r < regions.length; r++) {
+            MappedByteBuffer region = regions[r];
+            long base = r * REGION_SIZE;
+            int limit = region.limit();
+            for (int i = 0; i < limit; i++) {
+                if (region.get(i) == '\n') {
+                    addLineOffset(base + i + 1);
+                }
+            }
+        }
+    }
+
+    private void addLineOffset(long offset) {
+        if (intOffsets != null) {
+            if (lineCount == intOffsets.length) {
+                intOffsets = Arrays.copyOf(intOffsets, lineCount * 2);
+            }
+            intOffsets[lineCount++] = (int) offset;
+        } else {
+            if (lineCount == longOffsets.length) {
+                longOffsets = Arrays.copyOf(longOffsets, lineCount * 2);
+            }
+            longOffsets[lineCount++] = offset;
+        }
+    }
+
+    private long lineOffset(int line) {
+        if (line >= lineCount) {
+            return size;
+        }
+        return intOffsets != null ? intOffsets[line] : longOffsets[line];
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Number of lines in the file on disk, ignoring unsaved edits.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Number of lines including unsaved edits.
+     */
+    public int getVirtualLineCount() {
+        return virtualLineOf(lineCount);
+    }
+
+    public boolean isModified() {
+        return !patches.isEmpty();
+    }
+
+    /**
+     * Returns the first line of the window containing {@code line}; windows never split a patch.
+     */
+    public int alignStart(int line) {
+        Map.Entry<Integer, Patch> entry = patches.floorEntry(line);
+        if (entry != null && entry.getValue().end > line) {
+            return entry.getKey();
+        }
+        return line;
+    }
+
+    /**
+     * Returns the exclusive end of a window ending at {@code line}; windows never split a patch.
+     */
+    public int alignEnd(int line) {
+        Map.Entry<Integer, Patch> entry = patches.lowerEntry(line);
+        if (entry != null && entry.getValue().end > line) {
+            return entry.getValue().end;
+        }
+        return line;
+    }
+
+    /**
+     * Returns the end of a window starting at {@code start} holding at most
+     * {@code maxLines} original lines and roughly {@code maxBytes} bytes.
+     */
+    public int windowEnd(int start, int maxLines, long maxBytes) {
+        int end = (int) Math.min(lineCount, (long) start + maxLines);
+        long limit = lineOffset(start) + maxBytes;
+        if (lineOffset(end) > limit) {
+            // Binary search the last line that still fits the byte budget
+            int lo = start + 1;
+            int hi = end;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (lineOffset(mid) > limit) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            end = Math.max(start + 1, lo - 1);
+        }
+        return alignEnd(end);
+    }
+
+    /**
+     * Returns the line number including unsaved edits of original line {@code line}.
+     */
+    public int virtualLineOf(int line) {
+        int shift = 0;
+        for (Patch patch : patches.headMap(line, false).values()) {
+            if (patch.end <= line) {
+                shift += patch.virtualLines() - (patch.end - patch.start);
+            }
+        }
+        return line + shift;
+    }
+
+    /**
+     * Returns the original line at the given line number including unsaved edits.
+     * Lines inside an edited range map to the start of that range.
+     */
+    public int originalLineAt(int virtualLine) {
+        int shift = 0;
+        for (Patch patch : patches.values()) {
+            int virtualStart = patch.start + shift;
+            if (virtualLine < virtualStart) {
+                break;
+            }
+            if (virtualLine < virtualStart + patch.virtualLines()) {
+                return patch.start;
+            }
+            shift += patch.virtualLines() - (patch.end - patch.start);
+        }
+        return Math.max(0, Math.min(lineCount - 1, virtualLine - shift));
+    }
+
+    /**
+     * Decodes original lines {@code [start, end)} with unsaved edits applied.
+     * The range must be aligned with {@link #alignStart} and {@link #alignEnd}.
+     */
+    public String readLines(int start, int end) {
+        StringBuilder sb = new StringBuilder();
+        for (Segment segment : segments(start, end)) {
+            sb.append(segment.text);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Records the edited text of the aligned window {@code [start, end)}.
+     * Only the lines that actually differ become a patch, so later windows
+     * are not forced to include the whole edited window.
+     */
+    public void updateLines(int start, int end, String text) {
+        // Units are single original lines or whole patches; a patch is never split
+        List<Segment> units = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (Segment segment : segments(start, end)) {
+            if (segment.patch) {
+                units.add(segment);
+            } else {
+                int line = segment.start;
+                int from = 0;
+                while (line < segment.end) {
+                    int newline = segment.text.indexOf('\n', from);
+                    int to = newline < 0 ? segment.text.length() : newline + 1;
+                    units.add(new Segment(line, line + 1, segment.text.substring(from, to), false));
+                    from = to;
+                    line++;
+                }
+            }
+            sb.append(segment.text);
+        }
+        String old = sb.toString();
+        if (old.equals(text)) {
+            return;
+        }
+
+        int max = Math.min(old.length(), text.length());
+        int prefix = 0;
+        while (prefix < max && old.charAt(prefix) == text.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && old.charAt(old.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+            suffix++;
+        }
+
+        // First unit holding a changed character, and the last one
+        int first = units.size() - 1;
+        int last = 0;
+        int offset = 0;
+        for (int i = 0; i < units.size(); i++) {
+            int unitEnd = offset + units.get(i).text.length();
+            if (unitEnd > prefix && i < first) {
+                first = i;
+            }
+            if (offset < old.length() - suffix) {
+                last = i;
+            }
+            offset = unitEnd;
+        }
+        // A pure insertion replaces the unit it is inserted into
+        last = Math.max(first, last);
+
+        int loChar = 0;
+        for (int i = 0; i < first; i++) {
+            loChar += units.get(i).text.length();
+        }
+        int hiChar = loChar;
+        for (int i = first; i <= last; i++) {
+            hiChar += units.get(i).text.length();
+        }
+
+        int from = units.get(first).start;
+        int to = units.get(last).end;
+        String replacement = text.substring(loChar, text.length() - (old.length() - hiChar));
+        patches.subMap(from, true, to, false).clear();
+        patches.put(from, new Patch(from, to, replacement, to >= lineCount));
+    }
+
+    /**
+     * Splits {@code [start, end)} into runs of original lines and patches.
+     */
+    private List<Segment> segments(int start, int end) {
+        List<Segment> segments = new ArrayList<>();
+        int line = start;
+        for (Patch patch : patches.subMap(start, true, end, false).values()) {
+            if (patch.start > line) {
+                segments.add(new Segment(line, patch.start, decode(line, patch.start), false));
+            }
+            segments.add(new Segment(patch.start, patch.end, patch.text, true));
+            line = patch.end;
+        }
+        if (line < end || segments.isEmpty()) {
+            segments.add(new Segment(line, end, decode(line, end), false));
+        }
+        return segments;
+    }
+
+    private String decode(int startLine, int endLine) {
+        long from = lineOffset(startLine);
+        long to = lineOffset(endLine);
+        byte[] bytes = new byte[(int) (to - from)];
+        int written = 0;
+        for (ByteBuffer slice : slices(from, to)) {
+            int length = slice.remaining();
+            slice.get(bytes, written, length);
+            written += length;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns read-only views of the mapped bytes {@code [from, to)}.
+     */
+    private List<ByteBuffer> slices(long from, long to) {
+        List<ByteBuffer> slices = new ArrayList<>();
+        while (from < to) {
+            int region = (int) (from / REGION_SIZE);
+            long regionStart = region * REGION_SIZE;
+            int position = (int) (from - regionStart);
+            int limit = (int) (Math.min(to, regionStart + regions[region].limit()) - regionStart);
+            ByteBuffer slice = regions[region].duplicate();
+            slice.limit(limit).position(position);
+            slices.add(slice);
+            from = regionStart + limit;
+        }
+        return slices;
+    }
+
+    /**
+     * Streams the document with all edits applied to {@code out}.
+     */
+    public void writeTo(WritableByteChannel out) throws IOException {
+        int line = 0;
+        for (Patch patch : patches.values()) {
+            writeOriginal(out, line, patch.start);
+            ByteBuffer encoded = ByteBuffer.wrap(patch.text.getBytes(StandardCharsets.UTF_8));
+            while (encoded.hasRemaining()) {
+                out.write(encoded);
+            }
+            line = patch.end;
+        }
+        writeOriginal(out, line, lineCount);
+    }
+
+    private void writeOriginal(WritableByteChannel out, int startLine, int endLine) throws IOException {
+        for (ByteBuffer slice : slices(lineOffset(startLine), lineOffset(endLine))) {
+            while (slice.hasRemaining()) {
+                out.write(slice);
+            }
+        }
+    }
+
+    /**
+     * Writes the document to {@code target} through a temporary file and
+     * remaps it from there, so the overlay is folded into the new index.
+     */
+    public void save(Path target) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling("." + absolute.getFileName() + ".jwrite-save");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeTo(out);
+                out.force(true);
+            }
+
+            close();
+            try {
+                try {
+                    Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                // The original file is untouched; map it again so the edits can still be saved
+                try {
+                    map();
+                } catch (IOException remap) {
+                    e.addSuppressed(remap);
+                }
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        path = absolute;
+        patches.clear();
+        map();
+    }
+
+    @Override
+    public void close() throws IOException {
+        regions = new MappedByteBuffer[0];
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private static int countLines(String text, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private record Segment(int start, int end, String text, boolean patch) {
+    }
+
+    private record Patch(int start, int end, String text, boolean lastLine) {
+        /**
+         * Lines this patch occupies once applied.
+         */
+        int virtualLines() {
+            return countLines(text, 0, text.length()) + (lastLine ? 1 : 0);
+        }
+    }
+}
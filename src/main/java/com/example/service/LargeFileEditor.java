@@ -0,0 +1,228 @@
+package com.example.service;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import org.fxmisc.richtext.CodeArea;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Editor for a {@link LargeFileDocument}. Only a window of lines around the
+ * viewport is held in the code area; scrolling near either edge of the window
+ * commits its edits to the document and pages in the neighbouring lines.
+ */
+public class LargeFileEditor {
+
+    private static final int WINDOW_LINES = 5000;
+    private static final long MAX_WINDOW_BYTES = 4L << 20;
+    // Paging is triggered once the viewport comes this close to a window edge
+    private static final int PAGE_MARGIN = 200;
+
+    private final LargeFileDocument document;
+    private final CodeArea codeArea;
+    private final SyntaxHighlighter highlighter;
+
+    // Original lines [windowStart, windowEnd) are currently in the code area
+    private int windowStart;
+    private int windowEnd;
+    private int windowVirtualStart;
+    // The window text had its final line separator stripped when it was loaded
+    private boolean strippedNewline;
+    private boolean windowModified;
+    private boolean loading;
+    // A save in progress; the document belongs to the save thread until it completes
+    private CompletableFuture<FileSaver.Result> saving;
+    private Runnable afterSave;
+    private boolean closed;
+
+    public LargeFileEditor(LargeFileDocument document, CodeArea codeArea, int viewportHighlightThreshold) {
+        this.document = document;
+        this.codeArea = codeArea;
+        codeArea.setParagraphGraphicFactory(this::createLineNumber);
+        codeArea.plainTextChanges()
+                .filter(ignore -> !loading)
+                .subscribe(ignore -> windowModified = true);
+        codeArea.viewportDirtyEvents()
+                .successionEnds(Duration.ofMillis(50))
+                .subscribe(ignore -> pageIfNeeded());
+        highlighter = new SyntaxHighlighter(codeArea, viewportHighlightThreshold);
+        loadWindow(0);
+    }
+
+    public CodeArea getCodeArea() {
+        return codeArea;
+    }
+
+    public SyntaxHighlighter getHighlighter() {
+        return highlighter;
+    }
+
+    public LargeFileDocument getDocument() {
+        return document;
+    }
+
+    public boolean isModified() {
+        return saving != null || windowModified || document.isModified();
+    }
+
+    /**
+     * Commits the window and has {@code saver} write the document with all
+     * edits to {@code target} on its thread. The code area is read-only until
+     * then; afterwards the current window is reloaded from the saved file on
+     * the FX thread, where the returned future completes. Saving again while
+     * a save is in progress returns that save.
+     */
+    public CompletableFuture<FileSaver.Result> save(Path target, FileSaver saver) {
+        if (saving != null) {
+            return saving;
+        }
+        int anchor = windowVirtualStart + firstVisibleParagraph();
+        commitWindow();
+        boolean editable = codeArea.isEditable();
+        codeArea.setEditable(false);
+        saving = saver.save(target, document).thenApplyAsync(result -> {
+            saving = null;
+            if (closed) {
+                closeQuietly();
+                return result;
+            }
+            codeArea.setEditable(editable);
+            // The saved file is indexed afresh, so the old bounds say nothing about what the code area holds
+            windowStart = -1;
+            windowEnd = -1;
+            loadWindow(anchor);
+            if (afterSave != null) {
+                Runnable next = afterSave;
+                afterSave = null;
+                next.run();
+            }
+            return result;
+        }, Platform::runLater);
+        return saving;
+    }
+
+    /**
+     * Pages in the window around the given line of the document and selects
+     * {@code length} characters at {@code column} on it; during a save, once
+     * it is done.
+     */
+    public void goTo(int virtualLine, int column, int length) {
+        if (saving != null) {
+            afterSave = () -> goTo(virtualLine, column, length);
+            return;
+        }
+        loadWindow(virtualLine);
+        EditorManager.selectOnLine(codeArea, virtualLine - windowVirtualStart, column, length);
+    }
+
+    /**
+     * Closes the document, or has it closed when a save in progress is done.
+     */
+    public void close() throws IOException {
+        closed = true;
+        if (saving == null) {
+            document.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            document.close();
+        } catch (IOException e) {
+            // The save has completed; there is nothing left to lose
+        }
+    }
+
+    private void pageIfNeeded() {
+        if (loading || saving != null || codeArea.getVisibleParagraphs().isEmpty()) {
+            return;
+        }
+        int first = codeArea.firstVisibleParToAllParIndex();
+        int last = codeArea.lastVisibleParToAllParIndex();
+        boolean nearTop = first < PAGE_MARGIN && windowStart > 0;
+        boolean nearBottom = last >= codeArea.getParagraphs().size() - PAGE_MARGIN
+                && windowEnd < document.getLineCount();
+        if (nearTop || nearBottom) {
+            loadWindow(windowVirtualStart + first);
+        }
+    }
+
+    /**
+     * Commits the current window and loads the window centred on the given
+     * line number, keeping that line at the top of the viewport.
+     */
+    private void loadWindow(int anchorVirtualLine) {
+        int caretVirtualLine = windowVirtualStart + codeArea.getCurrentParagraph();
+        int caretColumn = codeArea.getCaretColumn();
+        commitWindow();
+
+        int anchor = document.originalLineAt(anchorVirtualLine);
+        int start = document.alignStart(Math.max(0, anchor - WINDOW_LINES / 2));
+        int end = document.windowEnd(start, WINDOW_LINES, MAX_WINDOW_BYTES);
+        if (end <= anchor) {
+            // The byte budget ran out before the anchor; start the window at it instead
+            start = document.alignStart(anchor);
+            end = document.windowEnd(start, WINDOW_LINES, MAX_WINDOW_BYTES);
+        }
+        if (start == windowStart && end == windowEnd) {
+            return;
+        }
+
+        String text = document.readLines(start, end);
+        strippedNewline = end < document.getLineCount() && text.endsWith("\n");
+        if (strippedNewline) {
+            text = text.substring(0, text.length() - 1);
+        }
+
+        loading = true;
+        try {
+            windowStart = start;
+            windowEnd = end;
+            windowVirtualStart = document.virtualLineOf(start);
+            codeArea.replaceText(text);
+            codeArea.getUndoManager().forgetHistory();
+        } finally {
+            loading = false;
+        }
+        windowModified = false;
+        highlighter.highlightAll();
+
+        int paragraphs = codeArea.getParagraphs().size();
+        int top = Math.max(0, Math.min(paragraphs - 1, anchorVirtualLine - windowVirtualStart));
+        int caret = caretVirtualLine - windowVirtualStart;
+        if (caret >= 0 && caret < paragraphs) {
+            codeArea.moveTo(caret, Math.min(caretColumn, codeArea.getParagraphLength(caret)));
+        } else {
+            codeArea.moveTo(top, 0);
+        }
+        codeArea.showParagraphAtTop(top);
+    }
+
+    private void commitWindow() {
+        if (!windowModified) {
+            return;
+        }
+        String text = codeArea.getText();
+        document.updateLines(windowStart, windowEnd, strippedNewline ? text + "\n" : text);
+        windowModified = false;
+    }
+
+    private int firstVisibleParagraph() {
+        return codeArea.getVisibleParagraphs().isEmpty() ? 0 : codeArea.firstVisibleParToAllParIndex();
+    }
+
+    /**
+     * Line numbers count lines of the whole document, not of the window.
+     */
+    private Node createLineNumber(int paragraph) {
+        Label label = new Label(String.valueOf(windowVirtualStart + paragraph + 1));
+        label.getStyleClass().add("lineno");
+        label.setPadding(new Insets(0, 5, 0, 5));
+        return label;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.service;
+
+import com.example.util.ConsoleBuffer;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.TextField;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * The Output tab. Text from any thread goes into a {@link ConsoleBuffer} and
+ * the view catches up with it at most once per pulse, however often text is
+ * appended; a program printing as fast as it can costs one list update per
+ * frame and no more memory than the buffer holds. Lines are shown in a list
+ * view, so only the visible ones have cells.
+ * <p>
+ * A writer that gets a whole buffer ahead of the view waits for it to catch
+ * up, so no output is dropped unseen; for a running program this holds the
+ * program back. Below the lines is an input line for the program's stdin.
+ */
+public class OutputConsole extends VBox {
+
+    private final ConsoleBuffer buffer;
+    private final ObservableList<ConsoleBuffer.Line> items = FXCollections.observableArrayList();
+    private final ListView<ConsoleBuffer.Line> linesView = new ListView<>(items);
+    private final TextField inputField = new TextField();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    // Lines [viewFirst, viewEnd) of the buffer are in items; written on the FX thread only
+    private long viewFirst;
+    private volatile long viewEnd;
+    private Consumer<String> onInput;
+    private Runnable onInputEnd;
+
+    public OutputConsole() {
+        this(new ConsoleBuffer());
+    }
+
+    public OutputConsole(ConsoleBuffer buffer) {
+        this.buffer = buffer;
+        getStyleClass().add("output-console");
+        linesView.getStyleClass().add("console");
+        linesView.setCellFactory(lv -> new LineCell());
+        linesView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        linesView.setOnKeyPressed(event -> {
+            if (event.isShortcutDown() && event.getCode() == KeyCode.C) {
+                copySelection();
+                event.consume();
+            }
+        });
+        MenuItem copy = new MenuItem("Copy");
+        copy.setOnAction(e -> copySelection());
+        MenuItem clear = new MenuItem("Clear");
+        clear.setOnAction(e -> clear());
+        linesView.setContextMenu(new ContextMenu(copy, clear));
+        VBox.setVgrow(linesView, Priority.ALWAYS);
+
+        inputField.getStyleClass().add("console-input");
+        inputField.setPromptText("Input to the program (Enter sends a line, Ctrl+D ends the input)");
+        inputField.setDisable(true);
+        inputField.setOnAction(e -> {
+            String line = inputField.getText();
+            inputField.clear();
+            // Echoed like a terminal would, after the prompt it answers
+            append(line + "\n");
+            if (onInput != null) {
+                onInput.accept(line + "\n");
+            }
+        });
+        inputField.setOnKeyPressed(event -> {
+            if (event.isControlDown() && event.getCode() == KeyCode.D) {
+                if (onInputEnd != null) {
+                    onInputEnd.run();
+                }
+                event.consume();
+            }
+        });
+        getChildren().addAll(linesView, inputField);
+    }
+
+    /**
+     * Sets the callbacks run on the FX thread when a line is entered, with
+     * its line separator, and when the input is ended.
+     */
+    public void setOnInput(Consumer<String> onInput, Runnable onInputEnd) {
+        this.onInput = onInput;
+        this.onInputEnd = onInputEnd;
+    }
+
+    /**
+     * Enables the input line while a program runs; FX thread only.
+     */
+    public void setInputEnabled(boolean enabled) {
+        inputField.setDisable(!enabled);
+        if (enabled) {
+            inputField.requestFocus();
+        } else {
+            inputField.clear();
+        }
+    }
+
+    /**
+     * Appends text; may be called from any thread. Off the FX thread, this
+     * waits while the view is a whole buffer behind.
+     */
+    public void append(String text, boolean error) {
+        buffer.append(text, error);
+        if (drainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::drain);
+        }
+        if (!Platform.isFxApplicationThread()) {
+            awaitView();
+        }
+    }
+
+    public void append(String text) {
+        append(text, false);
+    }
+
+    private void awaitView() {
+        synchronized (drainScheduled) {
+            while (buffer.endLine() - viewEnd > buffer.capacity()) {
+                try {
+                    // Timed, in case the FX thread is gone at exit
+                    drainScheduled.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all output; may be called from any thread.
+     */
+    public void clear() {
+        buffer.clear();
+        if (drainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::drain);
+        }
+    }
+
+    /**
+     * Brings the view up to date with everything appended so far.
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        long first;
+        List<ConsoleBuffer.Line> added;
+        synchronized (buffer) {
+            first = buffer.firstLine();
+            // The last line shown may have grown since
+            added = buffer.linesFrom(Math.max(viewFirst, viewEnd - 1));
+            viewEnd = buffer.endLine();
+        }
+        boolean following = isShowingLastLine();
+
+        int dropped = (int) Math.min(items.size(), Math.max(0, first - viewFirst));
+        if (dropped > 0) {
+            items.remove(0, dropped);
+        }
+        viewFirst = Math.max(viewFirst, first);
+        if (!items.isEmpty() && !added.isEmpty()) {
+            // Replaced rather than compared, so the cell shows the grown text
+            items.set(items.size() - 1, added.remove(0));
+        }
+        items.addAll(added);
+
+        if (following && !items.isEmpty()) {
+            linesView.scrollTo(items.size() - 1);
+        }
+        synchronized (drainScheduled) {
+            drainScheduled.notifyAll();
+        }
+    }
+
+    /**
+     * True if the view is scrolled to the end, so new output keeps it there.
+     */
+    private boolean isShowingLastLine() {
+        if (items.isEmpty() || !(linesView.lookup(".virtual-flow") instanceof VirtualFlow<?> flow)) {
+            return true;
+        }
+        var last = flow.getLastVisibleCell();
+        return last == null || last.getIndex() >= items.size() - 1;
+    }
+
+    private void copySelection() {
+        String text = linesView.getSelectionModel().getSelectedItems().stream()
+                .map(ConsoleBuffer.Line::text)
+                .collect(Collectors.joining("\n"));
+        if (!text.isEmpty()) {
+            ClipboardContent content = new ClipboardContent();
+            content.putString(text);
+            Clipboard.getSystemClipboard().setContent(content);
+        }
+    }
+
+    private static final class LineCell extends ListCell<ConsoleBuffer.Line> {
+
+        @Override
+        protected void updateItem(ConsoleBuffer.Line line, boolean empty) {
+            super.updateItem(line, empty);
+            setText(empty || line == null ? null : line.text());
+            getStyleClass().remove("console-error");
+            if (!empty && line != null && line.error()) {
+                getStyleClass().add("console-error");
+            }
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.example.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs compiled programs in a runner JVM that stays up between runs, so a
+ * run pays neither for starting a JVM nor for warming up its JIT. Each run
+ * gets a fresh class loader in the worker (see {@link RunnerWorker}) and its
+ * own stdout and stderr. The worker is replaced after a run that called
+ * {@code System.exit}, left threads behind or used too much memory, and
+ * when a run needs another working directory. The next worker is started
+ * right away, so it is ready by the next run.
+ * <p>
+ * Workers' frames are read by a shared pool of daemon threads, into pooled
+ * frame-sized buffers. A listener that cannot keep up with the output may
+ * block; the reader then stops reading, the worker's pipe fills up and the
+ * program waits on its next write, so nothing piles up in between.
+ */
+public class ProgramRunner implements AutoCloseable {
+
+    /** Maximum heap of the runner JVM. */
+    public static final String DEFAULT_MAX_HEAP = "512m";
+
+    // Reads the frames of all workers; a worker being replaced and its successor each hold one thread
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "program-runner-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Frame buffers given back by readers of workers that have ended
+    private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(4);
+
+    /**
+     * Receives a run's output and its end, on the runner's reader thread.
+     * {@code onOutput} may block to hold the program back until the output
+     * can be taken.
+     */
+    public interface Listener {
+
+        void onOutput(String text, boolean error);
+
+        void onExit(Exit exit);
+    }
+
+    /**
+     * How a run ended: {@code status} is 0 if main returned, 1 if it threw,
+     * the code passed to {@code System.exit}, or -1 if the run was stopped.
+     * {@code recycleReason} tells why the worker was replaced afterwards, or
+     * is null if it was kept.
+     */
+    public record Exit(int status, String recycleReason) {
+    }
+
+    private final String maxHeap;
+    // Guarded by this
+    private Worker worker;
+    private int nextRunId;
+
+    public ProgramRunner() {
+        this(DEFAULT_MAX_HEAP);
+    }
+
+    public ProgramRunner(String maxHeap) {
+        this.maxHeap = maxHeap;
+    }
+
+    /**
+     * Starts a worker in {@code directory} ahead of the first run. A worker
+     * with a program still running is left alone; the next {@link #run}
+     * stops that program and replaces it.
+     */
+    public synchronized void prestart(Path directory) {
+        if (worker == null || worker.run == null && !worker.directory.equals(directory)) {
+            replaceWorker(directory);
+        }
+    }
+
+    /**
+     * Runs {@code mainClass} from {@code classes}, binary names to class
+     * files, with {@code directory} as the working directory. A run that is
+     * still going is stopped first.
+     */
+    public synchronized Run run(Path directory, String mainClass, Map<String, byte[]> classes, Listener listener)
+            throws IOException {
+        if (worker != null && worker.run != null) {
+            worker.run.stop();
+        }
+        if (worker == null || !worker.process.isAlive() || !worker.directory.equals(directory)) {
+            replaceWorker(directory);
+            if (worker == null) {
+                throw new IOException("Could not start the runner JVM");
+            }
+        }
+        Run run = new Run(this, nextRunId++, listener);
+        worker.run = run;
+        run.worker = worker;
+        DataOutputStream out = worker.commands;
+        out.writeByte(RunnerWorker.RUN);
+        out.writeInt(run.id);
+        out.writeUTF(mainClass);
+        out.writeInt(classes.size());
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+        out.flush();
+        return run;
+    }
+
+    /**
+     * Stops the worker and any run in it.
+     */
+    @Override
+    public synchronized void close() {
+        if (worker != null) {
+            if (worker.run != null) {
+                worker.run.stop();
+            }
+            worker.process.destroyForcibly();
+            worker = null;
+        }
+    }
+
+    /**
+     * Process id of the current worker, or -1 if there is none.
+     */
+    synchronized long workerPid() {
+        return worker != null && worker.process.isAlive() ? worker.process.pid() : -1;
+    }
+
+    private void replaceWorker(Path directory) {
+        if (worker != null) {
+            worker.process.destroyForcibly();
+            worker = null;
+        }
+        try {
+            worker = new Worker(directory, startProcess(directory));
+        } catch (IOException e) {
+            // Reported by the run that needs it
+            worker = null;
+        }
+    }
+
+    private Process startProcess(Path directory) throws IOException {
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        ProcessBuilder builder = new ProcessBuilder(List.of(java.toString(), "-Xmx" + maxHeap,
+                "-Dfile.encoding=UTF-8", "-cp", workerClassPath(), RunnerWorker.class.getName()));
+        builder.directory(directory.toFile());
+        // The worker's own failures, not the program's output
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    /**
+     * Returns where {@link RunnerWorker} was loaded from; the worker needs
+     * nothing else from the editor's class path.
+     */
+    private static String workerClassPath() throws IOException {
+        try {
+            return Path.of(RunnerWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (URISyntaxException | SecurityException | NullPointerException e) {
+            throw new IOException("Cannot locate the runner classes", e);
+        }
+    }
+
+    /**
+     * Called on a worker's reader thread when a run has ended.
+     */
+    private void finished(Worker from, Run run, Exit exit) {
+        synchronized (this) {
+            if (from.run == run) {
+                from.run = null;
+            }
+            if (exit.recycleReason() != null && worker == from) {
+                // Have the next worker ready by the next run
+                replaceWorker(from.directory);
+            }
+        }
+        run.end(exit);
+    }
+
+    /**
+     * A runner JVM and the thread reading its frames.
+     */
+    private final class Worker {
+
+        private final Path directory;
+        private final Process process;
+        private final DataOutputStream commands;
+        // Guarded by the runner
+        private Run run;
+
+        Worker(Path directory, Process process) {
+            this.directory = directory;
+            this.process = process;
+            this.commands = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            READERS.execute(this::read);
+        }
+
+        private void read() {
+            byte[] buffer = BUFFERS.poll();
+            if (buffer == null) {
+                buffer = new byte[RunnerWorker.MAX_FRAME];
+            }
+            try {
+                readFrames(buffer);
+            } finally {
+                BUFFERS.offer(buffer);
+            }
+        }
+
+        private void readFrames(byte[] buffer) {
+            DataInputStream frames = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            try {
+                while (true) {
+                    byte type = frames.readByte();
+                    if (type == RunnerWorker.READY) {
+                        continue;
+                    }
+                    int runId = frames.readInt();
+                    Run current = currentRun(runId);
+                    if (type == RunnerWorker.OUTPUT) {
+                        byte stream = frames.readByte();
+                        int length = frames.readInt();
+                        if (length < 0 || length > buffer.length) {
+                            throw new IOException("Output frame of " + length + " bytes");
+                        }
+                        frames.readFully(buffer, 0, length);
+                        if (current != null) {
+                            current.output(buffer, length, stream == RunnerWorker.STDERR);
+                        }
+                    } else if (type == RunnerWorker.EXIT) {
+                        int status = frames.readInt();
+                        String reason = frames.readUTF();
+                        if (current != null) {
+                            finished(this, current, new Exit(status, reason.isEmpty() ? null : reason));
+                        }
+                    } else {
+                        throw new IOException("Unknown frame " + type);
+                    }
+                }
+            } catch (EOFException e) {
+                // The worker exited
+            } catch (IOException e) {
+                process.destroyForcibly();
+            }
+            Run current;
+            synchronized (ProgramRunner.this) {
+                current = run;
+            }
+            if (current != null) {
+                // Ended in the middle of a run, normally by System.exit
+                int status = waitForExit();
+                finished(this, current, new Exit(status, "The program ended the JVM with exit code " + status));
+            }
+        }
+
+        private Run currentRun(int runId) {
+            synchronized (ProgramRunner.this) {
+                return run != null && run.id == runId ? run : null;
+            }
+        }
+
+        private int waitForExit() {
+            try {
+                return process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * A program started by {@link #run}.
+     */
+    public static final class Run {
+
+        private final ProgramRunner runner;
+        private final int id;
+        private final Listener listener;
+        private final CharsetDecoder stdout = newDecoder();
+        private final CharsetDecoder stderr = newDecoder();
+        // Reader thread only: the start of a character whose other bytes are in the next frame
+        private byte[] splitOut = new byte[0];
+        private byte[] splitErr = new byte[0];
+        private CharBuffer chars;
+        private Worker worker;
+        private volatile boolean ended;
+
+        private Run(ProgramRunner runner, int id, Listener listener) {
+            this.runner = runner;
+            this.id = id;
+            this.listener = listener;
+        }
+
+        /**
+         * Stops the run by ending its worker; the listener is told at once.
+         */
+        public void stop() {
+            synchronized (runner) {
+                if (ended || worker.run != this) {
+                    return;
+                }
+                worker.run = null;
+                if (runner.worker == worker) {
+                    runner.replaceWorker(worker.directory);
+                } else {
+                    worker.process.destroyForcibly();
+                }
+            }
+            end(new Exit(-1, "The program was stopped"));
+        }
+
+        public boolean isEnded() {
+            return ended;
+        }
+
+        /**
+         * Sends text to the program's stdin. Returns false if the run has
+         * ended.
+         */
+        public boolean input(String text) throws IOException {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            synchronized (runner) {
+                if (ended || worker.run != this) {
+                    return false;
+                }
+                DataOutputStream out = worker.commands;
+                out.writeByte(RunnerWorker.INPUT);
+                out.writeInt(id);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.flush();
+                return true;
+            }
+        }
+
+        /**
+         * Ends the program's stdin; reads past what was sent return end of
+         * file.
+         */
+        public void closeInput() throws IOException {
+            synchronized (runner) {
+                if (ended || worker.run != this) {
+                    return;
+                }
+                DataOutputStream out = worker.commands;
+                out.writeByte(RunnerWorker.INPUT_END);
+                out.writeInt(id);
+                out.flush();
+            }
+        }
+
+        private void output(byte[] bytes, int length, boolean error) {
+            CharsetDecoder decoder = error ? stderr : stdout;
+            byte[] split = error ? splitErr : splitOut;
+            ByteBuffer input;
+            if (split.length == 0) {
+                input = ByteBuffer.wrap(bytes, 0, length);
+            } else {
+                input = ByteBuffer.allocate(split.length + length);
+                input.put(split).put(bytes, 0, length).flip();
+            }
+            // UTF-8 never decodes to more chars than it has bytes
+            if (chars == null || chars.capacity() < input.remaining()) {
+                chars = CharBuffer.allocate(Math.max(input.remaining(), RunnerWorker.MAX_FRAME));
+            }
+            chars.clear();
+            decoder.decode(input, chars, false);
+            // A character split across frames is completed by the next one
+            byte[] rest = new byte[input.remaining()];
+            input.get(rest);
+            if (error) {
+                splitErr = rest;
+            } else {
+                splitOut = rest;
+            }
+            chars.flip();
+            if (chars.hasRemaining()) {
+                listener.onOutput(chars.toString(), error);
+            }
+        }
+
+        private synchronized void end(Exit exit) {
+            if (!ended) {
+                ended = true;
+                listener.onExit(exit);
+            }
+        }
+
+        private static CharsetDecoder newDecoder() {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    }
+}
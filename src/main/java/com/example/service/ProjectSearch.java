@@ -0,0 +1,345 @@
+package com.example.service;
+
+import com.example.util.IgnoreFilter;
+import com.example.util.TextSearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Find in Files. Directories are listed and files searched as fork/join tasks,
+ * so the walk spreads over all cores. Small files are read into a pooled direct
+ * buffer per worker thread, larger ones are memory-mapped. Files with a NUL
+ * byte near the start are treated as binary and skipped, as are symbolic
+ * links and whatever the project's {@link IgnoreFilter} excludes; excluded
+ * directories are never listed. Results are handed to the listener from the
+ * worker threads as soon as a file has been searched.
+ */
+public final class ProjectSearch {
+
+    public static final long MAX_FILE_BYTES = 64L << 20;
+    public static final int MAX_MATCHES_PER_FILE = 1000;
+    public static final int MAX_TOTAL_MATCHES = 20_000;
+
+    // Files up to this size are read into the worker's pooled buffer instead of mapped
+    private static final int POOLED_BUFFER_BYTES = 64 << 10;
+    // Same heuristic as git: a NUL byte in the first 8000 bytes means binary
+    private static final int BINARY_CHECK_BYTES = 8000;
+    private static final int FILES_PER_TASK = 16;
+    private static final int PREVIEW_CHARS = 200;
+    private static final int PREVIEW_CONTEXT = 60;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("project-search-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private static final ThreadLocal<FileReader> READERS = ThreadLocal.withInitial(FileReader::new);
+
+    /**
+     * A match on one line; {@code line} and {@code column} are zero-based.
+     * {@code preview} is the part of the line around the match, which starts at
+     * {@code previewColumn} in it.
+     */
+    public record Match(int line, int column, int length, String preview, int previewColumn) {
+    }
+
+    public record FileMatches(Path file, List<Match> matches) {
+    }
+
+    public record Summary(int filesSearched, int filesSkipped, int matches, boolean limitReached, boolean cancelled) {
+    }
+
+    private ProjectSearch() {
+    }
+
+    /**
+     * Starts searching the files below the filter's root. {@code onResult} is
+     * called on a worker thread for every file with at least one match and
+     * {@code onDone} once the search has finished or was cancelled.
+     */
+    public static Handle start(IgnoreFilter filter, TextSearch search, Consumer<FileMatches> onResult,
+                               Consumer<Summary> onDone) {
+        Handle handle = new Handle(filter, search, onResult, onDone);
+        POOL.execute(handle.task);
+        return handle;
+    }
+
+    /**
+     * A running search.
+     */
+    public static final class Handle {
+
+        private final IgnoreFilter filter;
+        private final Consumer<FileMatches> onResult;
+        private final Consumer<Summary> onDone;
+        // TextSearch keeps its last match, so every worker searches with its own copy
+        private final ThreadLocal<TextSearch> searches;
+        private final RecursiveAction task;
+
+        private final AtomicInteger filesSearched = new AtomicInteger();
+        private final AtomicInteger filesSkipped = new AtomicInteger();
+        private final AtomicInteger matches = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean limitReached;
+
+        private Handle(IgnoreFilter filter, TextSearch search, Consumer<FileMatches> onResult,
+                       Consumer<Summary> onDone) {
+            this.filter = filter;
+            this.onResult = onResult;
+            this.onDone = onDone;
+            this.searches = ThreadLocal.withInitial(search::copy);
+            this.task = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    try {
+                        new DirectoryTask(Handle.this, filter.getRoot()).invoke();
+                    } finally {
+                        Handle.this.onDone.accept(summary());
+                    }
+                }
+            };
+        }
+
+        /**
+         * Stops the search; files that are being searched still finish.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        /**
+         * Waits for the search to finish and returns its summary.
+         */
+        public Summary join() {
+            task.join();
+            return summary();
+        }
+
+        private boolean isStopped() {
+            return cancelled || limitReached;
+        }
+
+        private Summary summary() {
+            return new Summary(filesSearched.get(), filesSkipped.get(), matches.get(), limitReached, cancelled);
+        }
+
+        private void searchFile(Path file, long size) {
+            if (isStopped()) {
+                return;
+            }
+            String text;
+            try {
+                text = size > MAX_FILE_BYTES ? null : READERS.get().read(file);
+            } catch (IOException e) {
+                text = null;
+            }
+            if (text == null) {
+                filesSkipped.incrementAndGet();
+                return;
+            }
+            filesSearched.incrementAndGet();
+            List<Match> found = findMatches(text, searches.get());
+            if (found.isEmpty()) {
+                return;
+            }
+            if (matches.addAndGet(found.size()) >= MAX_TOTAL_MATCHES) {
+                limitReached = true;
+            }
+            onResult.accept(new FileMatches(file, found));
+        }
+
+        private List<Match> findMatches(String text, TextSearch search) {
+            List<Match> found = new ArrayList<>();
+            int line = 0;
+            int lineStart = 0;
+            int scanned = 0;
+            int pos = 0;
+            while (found.size() < MAX_MATCHES_PER_FILE && !cancelled && search.find(text, pos)) {
+                int start = search.start();
+                for (; scanned < start; scanned++) {
+                    if (text.charAt(scanned) == '\n') {
+                        line++;
+                        lineStart = scanned + 1;
+                    }
+                }
+                int lineEnd = text.indexOf('\n', start);
+                if (lineEnd < 0) {
+                    lineEnd = text.length();
+                }
+                if (lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                // Matches spanning lines are shown up to the end of their first line
+                int end = Math.max(start, Math.min(search.end(), lineEnd));
+                int previewStart = Math.max(lineStart, start - PREVIEW_CONTEXT);
+                int previewEnd = Math.min(lineEnd, Math.max(end, previewStart + PREVIEW_CHARS));
+                found.add(new Match(line, start - lineStart, end - start,
+                        text.substring(previewStart, previewEnd), start - previewStart));
+                pos = search.end();
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Lists one directory, forking a task per subdirectory and per batch of files.
+     */
+    private static final class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Handle handle;
+        private final Path directory;
+
+        DirectoryTask(Handle handle, Path directory) {
+            this.handle = handle;
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            List<ForkJoinTask<?>> forked = new ArrayList<>();
+            List<Path> files = new ArrayList<>(FILES_PER_TASK);
+            List<Long> sizes = new ArrayList<>(FILES_PER_TASK);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    if (handle.isStopped()) {
+                        break;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        handle.filesSkipped.incrementAndGet();
+                        continue;
+                    }
+                    if (handle.filter.isIgnored(path, attributes.isDirectory())) {
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        forked.add(new DirectoryTask(handle, path).fork());
+                    } else if (attributes.isRegularFile()) {
+                        files.add(path);
+                        sizes.add(attributes.size());
+                        if (files.size() == FILES_PER_TASK) {
+                            forked.add(new FileBatchTask(handle, files, sizes).fork());
+                            files = new ArrayList<>(FILES_PER_TASK);
+                            sizes = new ArrayList<>(FILES_PER_TASK);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                handle.filesSkipped.incrementAndGet();
+            }
+            new FileBatchTask(handle, files, sizes).compute();
+            for (int i = forked.size() - 1; i >= 0; i--) {
+                forked.get(i).join();
+            }
+        }
+    }
+
+    private static final class FileBatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Handle handle;
+        private final List<Path> files;
+        private final List<Long> sizes;
+
+        FileBatchTask(Handle handle, List<Path> files, List<Long> sizes) {
+            this.handle = handle;
+            this.files = files;
+            this.sizes = sizes;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = 0; i < files.size(); i++) {
+                handle.searchFile(files.get(i), sizes.get(i));
+            }
+        }
+    }
+
+    /**
+     * Per-thread buffers for reading and decoding files.
+     */
+    private static final class FileReader {
+
+        private final ByteBuffer pooled = ByteBuffer.allocateDirect(POOLED_BUFFER_BYTES);
+        private final CharBuffer chars = CharBuffer.allocate(POOLED_BUFFER_BYTES);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        /**
+         * Returns the file's text, or null if it is binary.
+         */
+        String read(Path file) throws IOException {
+            ByteBuffer bytes;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > MAX_FILE_BYTES) {
+                    return null;
+                }
+                if (size <= pooled.capacity()) {
+                    pooled.clear();
+                    while (pooled.hasRemaining() && channel.read(pooled) >= 0) {
+                        // Keep reading until the file or the buffer ends
+                    }
+                    bytes = pooled.flip();
+                } else {
+                    bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+            }
+            if (isBinary(bytes)) {
+                return null;
+            }
+            // UTF-8 never decodes to more chars than it has bytes
+            CharBuffer out = bytes.remaining() <= chars.capacity() ? chars.clear() : CharBuffer.allocate(bytes.remaining());
+            decoder.reset();
+            decoder.decode(bytes, out, true);
+            decoder.flush(out);
+            return out.flip().toString();
+        }
+
+        private static boolean isBinary(ByteBuffer bytes) {
+            int end = Math.min(bytes.limit(), bytes.position() + BINARY_CHECK_BYTES);
+            for (int i = bytes.position(); i < end; i++) {
+                if (bytes.get(i) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.example.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Main class of the runner JVM started by {@link ProgramRunner}. It reads
+ * programs from stdin, runs each in a class loader of its own and sends its
+ * output and outcome back on stdout, tagged with the run. Input typed for a
+ * run comes in on stdin too, between the commands.
+ * <p>
+ * A run's stdout is buffered and sent in frames of up to {@link #MAX_FRAME}
+ * bytes, when the buffer fills, every {@code FLUSH_MILLIS}, before the
+ * program waits for input, and when the run ends. stderr is sent as it is
+ * written, after whatever stdout holds, so the two keep their order. When
+ * the editor falls behind, sending blocks and so does the program.
+ * <p>
+ * A run ends like a {@code java} process would: once main and the program's
+ * other non-daemon threads are done. The worker then exits instead of taking
+ * the next run if the program left threads behind, ran out of memory or
+ * still holds most of the heap. {@code System.exit} ends the worker
+ * directly; the editor notices and starts another.
+ */
+final class RunnerWorker {
+
+    // Editor to worker
+    static final byte RUN = 1;
+    static final byte INPUT = 2;
+    static final byte INPUT_END = 3;
+    // Worker to editor
+    static final byte READY = 1;
+    static final byte OUTPUT = 2;
+    static final byte EXIT = 3;
+
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+
+    /** Largest output frame, so the editor can read frames into buffers of this size. */
+    static final int MAX_FRAME = 64 * 1024;
+    // How long stdout may sit in its buffer before it is sent
+    private static final long FLUSH_MILLIS = 20;
+
+    // Heap still in use after a run, as a share of the maximum, from which the worker is replaced
+    private static final double MAX_RETAINED_HEAP = 0.5;
+
+    private static DataOutputStream protocol;
+    // Streams of the current run
+    private static volatile FrameStream runOut;
+    private static volatile FrameStream runErr;
+    private static volatile InputPipe runIn;
+
+    private RunnerWorker() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Only frames go to the real stdout; programs print through their run's streams
+        protocol = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        DataInputStream commands = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "output-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(RunnerWorker::flushOutput, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        // System.exit ends the worker in the middle of a run; what it printed still goes out
+        Runtime.getRuntime().addShutdownHook(new Thread(RunnerWorker::flushOutput));
+
+        // Commands are read while a run is going, for its input; runs are taken one at a time
+        BlockingQueue<Runnable> runs = new LinkedBlockingQueue<>();
+        Thread runLoop = new Thread(() -> {
+            try {
+                while (true) {
+                    runs.take().run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "run-loop");
+        runLoop.start();
+
+        send(out -> out.writeByte(READY));
+        while (true) {
+            byte command;
+            try {
+                command = commands.readByte();
+            } catch (EOFException e) {
+                // The editor is gone
+                System.exit(0);
+                return;
+            }
+            int runId = commands.readInt();
+            if (command == INPUT) {
+                byte[] bytes = new byte[commands.readInt()];
+                commands.readFully(bytes);
+                InputPipe in = runIn;
+                if (in != null && in.runId == runId) {
+                    in.write(bytes);
+                }
+            } else if (command == INPUT_END) {
+                InputPipe in = runIn;
+                if (in != null && in.runId == runId) {
+                    in.close();
+                }
+            } else if (command == RUN) {
+                String mainClass = commands.readUTF();
+                int classCount = commands.readInt();
+                Map<String, byte[]> classes = new HashMap<>();
+                for (int i = 0; i < classCount; i++) {
+                    String name = commands.readUTF();
+                    byte[] bytes = new byte[commands.readInt()];
+                    commands.readFully(bytes);
+                    classes.put(name, bytes);
+                }
+                // The run's input is there before the first INPUT command is read
+                runIn = new InputPipe(runId);
+                runs.put(() -> {
+                    try {
+                        if (run(runId, mainClass, classes) != null) {
+                            System.exit(0);
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace(new PrintStream(new FileOutputStream(FileDescriptor.err), true));
+                        System.exit(1);
+                    }
+                });
+            } else {
+                throw new IOException("Unknown command " + command);
+            }
+        }
+    }
+
+    private static void flushOutput() {
+        FrameStream out = runOut;
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                // The editor is gone; the next command read ends the worker
+            }
+        }
+    }
+
+    /**
+     * Runs one program and reports how it ended; returns why the worker has
+     * to be replaced, or null if it can take the next run.
+     */
+    private static String run(int runId, String mainClass, Map<String, byte[]> classes) throws Exception {
+        runOut = new FrameStream(runId, STDOUT, null);
+        runErr = new FrameStream(runId, STDERR, runOut);
+        PrintStream stdout = new PrintStream(runOut, false, StandardCharsets.UTF_8);
+        PrintStream stderr = new PrintStream(runErr, true, StandardCharsets.UTF_8);
+        System.setOut(stdout);
+        System.setErr(stderr);
+        System.setIn(runIn);
+
+        ThreadGroup group = new ThreadGroup("run-" + runId);
+        RunClassLoader loader = new RunClassLoader(classes);
+        int[] status = {0};
+        boolean[] outOfMemory = {false};
+        Thread main = new Thread(group, () -> {
+            try {
+                Method method = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+                if (!Modifier.isStatic(method.getModifiers())) {
+                    throw new NoSuchMethodException(mainClass + ".main is not static");
+                }
+                method.setAccessible(true);
+                method.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                status[0] = 1;
+                outOfMemory[0] = e.getCause() instanceof OutOfMemoryError;
+                System.err.print("Exception in thread \"main\" ");
+                e.getCause().printStackTrace();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                status[0] = 1;
+                System.err.println("Error: could not run " + mainClass + ": " + e);
+            }
+        }, "main");
+        main.setContextClassLoader(loader);
+        main.start();
+        main.join();
+        // Like the java launcher, wait for the program's other non-daemon threads
+        Thread leaked;
+        while ((leaked = liveThread(group, false)) != null) {
+            leaked.join();
+        }
+        stdout.flush();
+        stderr.flush();
+        runIn.close();
+
+        String recycleReason = null;
+        if (liveThread(group, true) != null) {
+            recycleReason = "The program left threads running";
+        } else if (outOfMemory[0]) {
+            recycleReason = "The program ran out of memory";
+        } else {
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            if (runtime.totalMemory() - runtime.freeMemory() > runtime.maxMemory() * MAX_RETAINED_HEAP) {
+                recycleReason = "The program left too much memory in use";
+            }
+        }
+        String reason = recycleReason;
+        send(out -> {
+            out.writeByte(EXIT);
+            out.writeInt(runId);
+            out.writeInt(status[0]);
+            out.writeUTF(reason != null ? reason : "");
+        });
+        return recycleReason;
+    }
+
+    /**
+     * Returns a live thread of {@code group} that is, or is not, a daemon; null if none.
+     */
+    private static Thread liveThread(ThreadGroup group, boolean daemon) {
+        Thread[] threads = new Thread[group.activeCount() + 8];
+        int count = group.enumerate(threads, true);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive() && threads[i].isDaemon() == daemon) {
+                return threads[i];
+            }
+        }
+        return null;
+    }
+
+    private interface Frame {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void send(Frame frame) throws IOException {
+        synchronized (protocol) {
+            frame.write(protocol);
+            protocol.flush();
+        }
+    }
+
+    /**
+     * A run's stdout or stderr, sent in output frames. stdout collects writes
+     * until it is flushed or full; stderr flushes stdout, its {@code before},
+     * and sends every write right away.
+     */
+    private static final class FrameStream extends OutputStream {
+
+        private final int runId;
+        private final byte stream;
+        private final FrameStream before;
+        private final byte[] buffer;
+        private int count;
+
+        FrameStream(int runId, byte stream, FrameStream before) {
+            this.runId = runId;
+            this.stream = stream;
+            this.before = before;
+            this.buffer = before == null ? new byte[MAX_FRAME] : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+            if (before != null) {
+                before.flush();
+                for (int sent = 0; sent < length; sent += MAX_FRAME) {
+                    send(bytes, offset + sent, Math.min(MAX_FRAME, length - sent));
+                }
+                return;
+            }
+            while (length > 0) {
+                int take = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, take);
+                count += take;
+                offset += take;
+                length -= take;
+                if (count == buffer.length) {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (count > 0) {
+                send(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        private void send(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            RunnerWorker.send(out -> {
+                out.writeByte(OUTPUT);
+                out.writeInt(runId);
+                out.writeByte(stream);
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+            });
+        }
+    }
+
+    /**
+     * A run's stdin: what the editor sends for the run, until it ends the
+     * input or the run ends. A read that has to wait flushes stdout first,
+     * so a prompt is shown before the program waits for the answer.
+     */
+    private static final class InputPipe extends InputStream {
+
+        private final int runId;
+        private byte[] bytes = new byte[256];
+        private int start;
+        private int end;
+        private boolean closed;
+
+        InputPipe(int runId) {
+            this.runId = runId;
+        }
+
+        synchronized void write(byte[] input) {
+            if (closed) {
+                return;
+            }
+            if (end + input.length > bytes.length) {
+                int length = end - start;
+                byte[] target = length + input.length > bytes.length
+                        ? new byte[Math.max(bytes.length * 2, length + input.length)] : bytes;
+                System.arraycopy(bytes, start, target, 0, length);
+                bytes = target;
+                start = 0;
+                end = length;
+            }
+            System.arraycopy(input, 0, bytes, end, input.length);
+            end += input.length;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (available() == 0) {
+                flushOutput();
+            }
+            synchronized (this) {
+                try {
+                    while (start == end && !closed) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                if (start == end) {
+                    return -1;
+                }
+                int count = Math.min(length, end - start);
+                System.arraycopy(bytes, start, target, offset, count);
+                start += count;
+                if (start == end) {
+                    start = 0;
+                    end = 0;
+                }
+                return count;
+            }
+        }
+
+        @Override
+        public synchronized int available() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Defines a run's classes; everything else comes from the platform, not
+     * from the worker, so runs see neither the worker nor each other.
+     */
+    private static final class RunClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        RunClassLoader(Map<String, byte[]> classes) {
+            super("run", ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
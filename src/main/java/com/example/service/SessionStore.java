@@ -0,0 +1,386 @@
+package com.example.service;
+
+import com.example.util.Hashes;
+import com.example.util.TokenStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Remembers the workspace between runs: the opened directory, its expanded
+ * directories, the open tabs with their selection and scroll position, and
+ * the tokens of documents whose highlighting was complete.
+ * <p>
+ * The session is one binary file. A small header lists everything but the
+ * tokens and, per document, where its tokens start; the tokens follow as
+ * varint-encoded blobs. Loading reads the file in one go but parses only the
+ * header; a document's tokens are decoded when it is opened, and only if the
+ * file still has the size, mtime and text hash they were saved with. Nothing
+ * keeps the file open or mapped, so the next save can always replace it.
+ */
+public class SessionStore {
+
+    private static final int MAGIC = 0x4A575353; // "JWSS"
+    private static final int VERSION = 1;
+    private static final int HASH_BYTES = 32;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "session-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * An open tab: its file, selection and estimated scroll position.
+     */
+    public record TabState(Path path, int anchor, int caret, double scrollY) {
+    }
+
+    /**
+     * The tokens of a document's text as it is in the editor.
+     */
+    public record DocumentTokens(Path path, String text, TokenStore tokens) {
+    }
+
+    /**
+     * Everything that goes into a session. {@code carried} are token blobs of
+     * the previous session for documents that have not been opened since.
+     */
+    public record Snapshot(Path root, List<Path> expanded, List<TabState> tabs, int selectedTab,
+                           List<DocumentTokens> documents, List<EncodedTokens> carried) {
+    }
+
+    /**
+     * Tokens as stored: the file's size and mtime and the text's hash when
+     * they were saved, and the encoded blob.
+     */
+    public record EncodedTokens(Path path, long size, long lastModified, byte[] hash, ByteBuffer blob) {
+    }
+
+    private final Path file;
+
+    public SessionStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns where the session is kept by default, in the user's home directory.
+     */
+    public static Path defaultLocation() {
+        return Path.of(System.getProperty("user.home"), ".jwrite", "session.bin");
+    }
+
+    /**
+     * Reads the session file and parses its header; returns null if there is
+     * no session or it cannot be read.
+     */
+    public Session load() {
+        try {
+            return Session.read(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // Truncated, corrupt or from another version; start afresh
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code snapshot} on a background thread. Writes are queued, so
+     * the file always ends up with the last snapshot.
+     */
+    public Future<?> save(Snapshot snapshot) {
+        return EXECUTOR.submit(() -> {
+            write(snapshot);
+            return null;
+        });
+    }
+
+    /**
+     * Writes {@code snapshot} on the calling thread, through a temporary file.
+     */
+    public void write(Snapshot snapshot) throws IOException {
+        List<EncodedTokens> entries = new ArrayList<>(snapshot.carried());
+        for (DocumentTokens document : snapshot.documents()) {
+            EncodedTokens encoded = encode(document);
+            if (encoded != null) {
+                entries.add(encoded);
+            }
+        }
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        writeString(header, snapshot.root() != null ? snapshot.root().toString() : "");
+        header.writeInt(snapshot.expanded().size());
+        for (Path directory : snapshot.expanded()) {
+            writeString(header, directory.toString());
+        }
+        header.writeInt(snapshot.selectedTab());
+        header.writeInt(snapshot.tabs().size());
+        for (TabState tab : snapshot.tabs()) {
+            writeString(header, tab.path().toString());
+            header.writeInt(tab.anchor());
+            header.writeInt(tab.caret());
+            header.writeDouble(tab.scrollY());
+        }
+        header.writeInt(entries.size());
+        // Blob offsets count from the end of the header
+        long offset = 0;
+        for (EncodedTokens entry : entries) {
+            writeString(header, entry.path().toString());
+            header.writeLong(entry.size());
+            header.writeLong(entry.lastModified());
+            header.write(entry.hash());
+            header.writeLong(offset);
+            header.writeInt(entry.blob().remaining());
+            offset += entry.blob().remaining();
+        }
+        header.flush();
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.wrap(headerBytes.toByteArray()));
+            for (EncodedTokens entry : entries) {
+                writeFully(out, entry.blob().duplicate());
+            }
+            out.force(true);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Encodes a document's tokens, keyed by its file's current size and mtime
+     * and the hash of the text they describe; null if the file is gone.
+     */
+    private static EncodedTokens encode(DocumentTokens document) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(document.path(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        TokenStore tokens = document.tokens();
+        ByteArrayOutputStream blob = new ByteArrayOutputStream(tokens.lineCount() * 8);
+        writeVarint(blob, tokens.lineCount());
+        for (int line = 0; line < tokens.lineCount(); line++) {
+            long[] lineTokens = tokens.get(line);
+            blob.write(tokens.entryState(line));
+            writeVarint(blob, lineTokens.length);
+            int previousEnd = 0;
+            for (long token : lineTokens) {
+                // Tokens are ordered and do not overlap, so starts are stored as gaps
+                writeVarint(blob, TokenStore.start(token) - previousEnd);
+                writeVarint(blob, TokenStore.length(token));
+                blob.write(TokenStore.kind(token));
+                previousEnd = TokenStore.end(token);
+            }
+        }
+        return new EncodedTokens(document.path(), attributes.size(), attributes.lastModifiedTime().toMillis(),
+                Hashes.sha256(document.text()), ByteBuffer.wrap(blob.toByteArray()));
+    }
+
+    /**
+     * A loaded session. Token blobs stay encoded until asked for.
+     */
+    public static final class Session {
+
+        private final Path root;
+        private final List<Path> expanded;
+        private final List<TabState> tabs;
+        private final int selectedTab;
+        private final Map<Path, EncodedTokens> tokens;
+
+        private Session(Path root, List<Path> expanded, List<TabState> tabs, int selectedTab,
+                        Map<Path, EncodedTokens> tokens) {
+            this.root = root;
+            this.expanded = expanded;
+            this.tabs = tabs;
+            this.selectedTab = selectedTab;
+            this.tokens = tokens;
+        }
+
+        private static Session read(ByteBuffer buffer) throws IOException {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a session file");
+            }
+            String rootName = readString(buffer);
+            Path root = rootName.isEmpty() ? null : Path.of(rootName);
+            int expandedCount = buffer.getInt();
+            List<Path> expanded = new ArrayList<>(expandedCount);
+            for (int i = 0; i < expandedCount; i++) {
+                expanded.add(Path.of(readString(buffer)));
+            }
+            int selectedTab = buffer.getInt();
+            int tabCount = buffer.getInt();
+            List<TabState> tabs = new ArrayList<>(tabCount);
+            for (int i = 0; i < tabCount; i++) {
+                tabs.add(new TabState(Path.of(readString(buffer)), buffer.getInt(), buffer.getInt(),
+                        buffer.getDouble()));
+            }
+            int entryCount = buffer.getInt();
+            List<Path> paths = new ArrayList<>(entryCount);
+            long[] sizes = new long[entryCount];
+            long[] mtimes = new long[entryCount];
+            byte[][] hashes = new byte[entryCount][HASH_BYTES];
+            long[] offsets = new long[entryCount];
+            int[] lengths = new int[entryCount];
+            for (int i = 0; i < entryCount; i++) {
+                paths.add(Path.of(readString(buffer)));
+                sizes[i] = buffer.getLong();
+                mtimes[i] = buffer.getLong();
+                buffer.get(hashes[i]);
+                offsets[i] = buffer.getLong();
+                lengths[i] = buffer.getInt();
+            }
+            int blobs = buffer.position();
+            Map<Path, EncodedTokens> tokens = new HashMap<>();
+            for (int i = 0; i < entryCount; i++) {
+                // Slices of the bytes read; nothing is decoded yet
+                ByteBuffer blob = buffer.slice(Math.toIntExact(blobs + offsets[i]), lengths[i]);
+                tokens.put(paths.get(i), new EncodedTokens(paths.get(i), sizes[i], mtimes[i], hashes[i], blob));
+            }
+            return new Session(root, expanded, tabs, selectedTab, tokens);
+        }
+
+        /**
+         * The directory that was open, or null.
+         */
+        public Path getRoot() {
+            return root;
+        }
+
+        public List<Path> getExpanded() {
+            return expanded;
+        }
+
+        public List<TabState> getTabs() {
+            return tabs;
+        }
+
+        /**
+         * Index of the selected tab in {@link #getTabs()}, or -1.
+         */
+        public int getSelectedTab() {
+            return selectedTab;
+        }
+
+        /**
+         * Returns the saved tokens of {@code path} if the file has not changed
+         * since and {@code text} is the text they were saved for, else null.
+         */
+        public TokenStore tokens(Path path, String text) {
+            EncodedTokens entry = tokens.get(path);
+            if (entry == null) {
+                return null;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.size() != entry.size()
+                        || attributes.lastModifiedTime().toMillis() != entry.lastModified()
+                        || !Arrays.equals(Hashes.sha256(text), entry.hash())) {
+                    return null;
+                }
+                return decode(entry.blob().duplicate());
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Returns the stored tokens of {@code path} as they are, to carry them
+         * into the next session, or null.
+         */
+        public EncodedTokens carry(Path path) {
+            return tokens.get(path);
+        }
+
+        private static TokenStore decode(ByteBuffer blob) {
+            int lineCount = readVarint(blob);
+            TokenStore store = new TokenStore();
+            store.reset(lineCount);
+            for (int line = 0; line < lineCount; line++) {
+                int entryState = blob.get();
+                long[] lineTokens = new long[readVarint(blob)];
+                int previousEnd = 0;
+                for (int i = 0; i < lineTokens.length; i++) {
+                    int start = previousEnd + readVarint(blob);
+                    int length = readVarint(blob);
+                    lineTokens[i] = TokenStore.pack(start, length, blob.get() & 0xFF);
+                    previousEnd = start + length;
+                }
+                store.set(line, entryState, lineTokens);
+            }
+            return store;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package com.example.service;
+
+import com.example.util.JavaLexer;
+import com.example.util.TokenBuffer;
+import com.example.util.TokenKind;
+import com.example.util.TokenStore;
+import javafx.application.Platform;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.StyledDocument;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Incremental syntax highlighter for a single code area.
+ * Remembers the lexer state at the start of every paragraph, so an edit only
+ * re-lexes the damaged paragraphs, extended until the state is stable again.
+ * Lexing runs on a background thread; results are versioned against the
+ * document and dropped if an edit arrived in the meantime.
+ * <p>
+ * Documents above a size threshold are only styled around the viewport.
+ * Paragraphs are lexed as they scroll into view, resuming from the nearest
+ * paragraph whose entry state is already known instead of offset 0.
+ * <p>
+ * The tokens of every lexed paragraph are kept in a {@link TokenStore}, so
+ * editor features can read them instead of scanning the text again.
+ * <p>
+ * A document opened with tokens saved by an earlier session can be
+ * {@linkplain #seed seeded} with them; jobs then build spans from the saved
+ * tokens for as long as the lexer states line up, and lex nothing.
+ */
+public class SyntaxHighlighter {
+
+    /** Documents with more paragraphs than this are only styled around the viewport. */
+    public static final int DEFAULT_VIEWPORT_THRESHOLD = 20_000;
+
+    private static final byte UNKNOWN_STATE = -1;
+
+    // Lines per background job, so huge documents are styled progressively
+    private static final int MAX_LINES_PER_JOB = 2000;
+    private static final int CONVERGE_LOOKAHEAD = 200;
+    private static final int MAX_STYLED_LINE_LENGTH = 10_000;
+    // Paragraphs styled above and below the visible ones in viewport mode
+    private static final int VIEWPORT_MARGIN = 100;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "syntax-highlighter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CodeArea codeArea;
+    private final int viewportThreshold;
+    private boolean viewportMode;
+
+    // Lexer state at the start of each paragraph, UNKNOWN_STATE if not lexed yet.
+    // Every lexed paragraph acts as a checkpoint that later jobs can resume from.
+    private byte[] lineStates = new byte[64];
+    private int lineCount;
+
+    private final TokenStore tokens = new TokenStore();
+    private final TokenBuffer scratch = new TokenBuffer();
+    private Runnable onHighlighted;
+
+    // Saved tokens of the unedited document, dropped on the first edit
+    private TokenStore seed;
+
+    // Viewport mode: paragraphs whose spans are current
+    private final BitSet styled = new BitSet();
+
+    // Inclusive range of paragraphs that need re-lexing, -1 when clean
+    private int dirtyFrom = -1;
+    private int dirtyTo = -1;
+
+    // Bumped on every edit; results from older versions are discarded
+    private volatile long version;
+    private HighlightJob currentJob;
+    private Future<?> pendingJob;
+
+    public SyntaxHighlighter(CodeArea codeArea) {
+        this(codeArea, DEFAULT_VIEWPORT_THRESHOLD);
+    }
+
+    public SyntaxHighlighter(CodeArea codeArea, int viewportThreshold) {
+        this.codeArea = codeArea;
+        this.viewportThreshold = viewportThreshold;
+        resetLines();
+
+        codeArea.plainTextChanges().subscribe(this::trackChange);
+        codeArea.multiPlainChanges()
+                .successionEnds(Duration.ofMillis(100))
+                .subscribe(ignore -> scheduleHighlight());
+        codeArea.viewportDirtyEvents()
+                .filter(ignore -> viewportMode)
+                .successionEnds(Duration.ofMillis(30))
+                .subscribe(ignore -> scheduleHighlight());
+    }
+
+    /**
+     * Highlights the document in the background; used once after the initial content is set.
+     */
+    public void highlightAll() {
+        resetLines();
+        scheduleHighlight();
+    }
+
+    /**
+     * Supplies tokens lexed earlier for exactly the current text, e.g. from
+     * a saved session, to be used instead of lexing. Ignored if they do not
+     * cover the document's paragraphs.
+     */
+    public void seed(TokenStore saved) {
+        seed = saved != null && saved.lineCount() == lineCount ? saved : null;
+    }
+
+    /**
+     * Returns a copy of the tokens if every paragraph has been lexed, e.g. to
+     * save them with the session, or null if highlighting is not complete.
+     */
+    public TokenStore snapshotTokens() {
+        return tokens.isComplete() ? tokens.copy() : null;
+    }
+
+    /**
+     * Sets a callback run on the FX thread whenever new spans were applied.
+     */
+    public void setOnHighlighted(Runnable onHighlighted) {
+        this.onHighlighted = onHighlighted;
+    }
+
+    /**
+     * Returns the packed tokens of a paragraph (see {@link TokenStore}),
+     * lexing it now if it was edited or has not been highlighted yet.
+     */
+    public long[] lineTokens(int paragraph) {
+        ensureTokens(paragraph, paragraph);
+        return tokens.get(paragraph);
+    }
+
+    /**
+     * Returns the token store with every paragraph lexed.
+     */
+    public TokenStore getTokens() {
+        ensureTokens(0, lineCount - 1);
+        return tokens;
+    }
+
+    /**
+     * Lexes forward from the closest known state through {@code to}, filling
+     * in paragraphs without tokens. Lexer states are left to the background
+     * jobs, so this never hides damage from them.
+     */
+    private void ensureTokens(int from, int to) {
+        int missing = from;
+        while (missing <= to && tokens.get(missing) != null) {
+            missing++;
+        }
+        if (missing > to) {
+            return;
+        }
+        int line = knownStateLine(missing);
+        int state = lineStates[line];
+        for (; line <= to; line++) {
+            String text = codeArea.getParagraph(line).getText();
+            scratch.clear();
+            int exitState = JavaLexer.lex(text, 0, Math.min(text.length(), MAX_STYLED_LINE_LENGTH), state, scratch);
+            if (tokens.get(line) == null) {
+                tokens.set(line, state, TokenStore.pack(scratch));
+            }
+            state = exitState;
+        }
+    }
+
+    private void resetLines() {
+        lineCount = codeArea.getParagraphs().size();
+        viewportMode = lineCount > viewportThreshold;
+        ensureCapacity(lineCount);
+        Arrays.fill(lineStates, 0, lineCount, UNKNOWN_STATE);
+        lineStates[0] = JavaLexer.STATE_CODE;
+        tokens.reset(lineCount);
+        styled.clear();
+        markDirty(0, lineCount - 1);
+    }
+
+    private void trackChange(PlainTextChange change) {
+        version++;
+        seed = null;
+        int removedLines = countLines(change.getRemoved());
+        int insertedLines = countLines(change.getInserted());
+        int line = codeArea.offsetToPosition(change.getPosition(), Bias.Forward).getMajor();
+        int delta = insertedLines - removedLines;
+        int oldLineCount = lineCount;
+
+        if (delta != 0) {
+            ensureCapacity(lineCount + delta);
+            int tail = lineCount - (line + 1 + removedLines);
+            System.arraycopy(lineStates, line + 1 + removedLines, lineStates, line + 1 + insertedLines, tail);
+            Arrays.fill(lineStates, line + 1, line + 1 + insertedLines, UNKNOWN_STATE);
+            lineCount += delta;
+        }
+        tokens.replaceLines(line, removedLines, insertedLines);
+        if (lineCount != codeArea.getParagraphs().size()) {
+            // Bookkeeping drifted (e.g. mixed line separators); start over
+            resetLines();
+            return;
+        }
+        shiftStyled(line, removedLines, insertedLines, oldLineCount);
+
+        if (dirtyFrom >= 0) {
+            int from = shiftLine(dirtyFrom, line, removedLines, insertedLines);
+            int to = shiftLine(dirtyTo, line, removedLines, insertedLines);
+            markDirty(Math.min(from, line), Math.max(to, line + insertedLines));
+        } else {
+            markDirty(line, line + insertedLines);
+        }
+    }
+
+    /**
+     * Damaged paragraphs lose their spans; styled paragraphs below the edit move with it.
+     */
+    private void shiftStyled(int line, int removedLines, int insertedLines, int oldLineCount) {
+        BitSet tail = styled.get(line + 1 + removedLines, oldLineCount);
+        styled.clear(line, oldLineCount);
+        int base = line + 1 + insertedLines;
+        for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+            styled.set(base + i);
+        }
+    }
+
+    private static int shiftLine(int target, int line, int removedLines, int insertedLines) {
+        if (target <= line) {
+            return target;
+        }
+        if (target <= line + removedLines) {
+            return line + insertedLines;
+        }
+        return target + insertedLines - removedLines;
+    }
+
+    private void markDirty(int from, int to) {
+        dirtyFrom = dirtyFrom < 0 ? from : Math.min(dirtyFrom, from);
+        dirtyTo = Math.max(dirtyTo, to);
+    }
+
+    private void scheduleHighlight() {
+        if (pendingJob != null) {
+            pendingJob.cancel(true);
+            pendingJob = null;
+            currentJob = null;
+        }
+        if (viewportMode) {
+            scheduleViewport();
+        } else {
+            scheduleDirty();
+        }
+    }
+
+    private void scheduleDirty() {
+        if (dirtyFrom < 0) {
+            return;
+        }
+        int from = Math.min(dirtyFrom, lineCount - 1);
+        int to = Math.min(dirtyTo, lineCount - 1);
+        // Look a little past the damaged region so most edits converge in one job
+        int end = Math.min(lineCount, Math.min(to + 1 + CONVERGE_LOOKAHEAD, from + MAX_LINES_PER_JOB));
+        submit(knownStateLine(from), from, to, end);
+    }
+
+    /**
+     * Styles the unstyled paragraphs in and around the viewport. Anything
+     * outside stays unstyled until it is scrolled into view.
+     */
+    private void scheduleViewport() {
+        int first = 0;
+        int last = 0;
+        if (!codeArea.getVisibleParagraphs().isEmpty()) {
+            first = codeArea.firstVisibleParToAllParIndex();
+            last = codeArea.lastVisibleParToAllParIndex();
+        }
+        int windowStart = Math.max(0, first - VIEWPORT_MARGIN);
+        int windowEnd = Math.min(lineCount, last + 1 + VIEWPORT_MARGIN);
+
+        int from = styled.nextClearBit(windowStart);
+        if (from >= windowEnd) {
+            return;
+        }
+        int to = styled.previousClearBit(windowEnd - 1);
+        submit(knownStateLine(from), from, to, windowEnd);
+    }
+
+    /**
+     * Returns the closest paragraph at or before {@code line} whose entry state is known.
+     */
+    private int knownStateLine(int line) {
+        while (lineStates[line] == UNKNOWN_STATE) {
+            line--;
+        }
+        return line;
+    }
+
+    private void submit(int scanFrom, int from, int to, int end) {
+        // The document snapshot is immutable, so the job can read it off the FX thread
+        HighlightJob job = new HighlightJob(version, codeArea.getContent().snapshot(),
+                scanFrom, from, to, end, Arrays.copyOfRange(lineStates, scanFrom, end), seed);
+        currentJob = job;
+        pendingJob = EXECUTOR.submit(job);
+    }
+
+    private void applyResult(HighlightJob job) {
+        if (job != currentJob || job.version != version) {
+            // Superseded, or the document changed while lexing
+            return;
+        }
+        currentJob = null;
+        pendingJob = null;
+        codeArea.setStyleSpans(codeArea.getAbsolutePosition(job.from, 0), job.spans);
+        System.arraycopy(job.states, 1, lineStates, job.scanFrom + 1, job.linesEnd - job.scanFrom - 1);
+        for (int line = job.from; line < job.linesEnd; line++) {
+            tokens.set(line, job.states[line - job.scanFrom], job.lineTokens[line - job.from]);
+        }
+        // Spans and tokens are both up to date for the lines of this job
+        if (onHighlighted != null) {
+            onHighlighted.run();
+        }
+
+        int next = job.linesEnd;
+        boolean stable = job.converged || next >= lineCount
+                || (next > job.to && lineStates[next] == job.exitState);
+        if (viewportMode) {
+            styled.set(job.from, next);
+            if (!stable) {
+                // The state change runs past the window; what lies below is stale
+                Arrays.fill(lineStates, next, lineCount, UNKNOWN_STATE);
+                lineStates[next] = (byte) job.exitState;
+                styled.clear(next, lineCount);
+                tokens.invalidate(next, lineCount);
+            }
+            dirtyFrom = -1;
+            dirtyTo = -1;
+            // The viewport may have moved while lexing
+            scheduleViewport();
+        } else if (stable) {
+            dirtyFrom = -1;
+            dirtyTo = -1;
+        } else {
+            // Either the job hit its size limit or the state is still changing
+            lineStates[next] = (byte) job.exitState;
+            dirtyFrom = next;
+            dirtyTo = Math.max(dirtyTo, next);
+            scheduleDirty();
+        }
+    }
+
+    /**
+     * Lexes consecutive paragraphs of a document snapshot off the FX thread.
+     * Paragraphs before {@code from} are only scanned to recover the lexer
+     * state; spans are built from {@code from} on. The result is only applied
+     * if the document version is unchanged when it gets back.
+     */
+    private class HighlightJob implements Runnable {
+        private final long version;
+        private final StyledDocument<?, String, ?> document;
+        private final int scanFrom;
+        private final int from;
+        private final int to;
+        private final int end;
+        // Entry states of [scanFrom, end), updated in place as lines are lexed
+        private final byte[] states;
+        // Packed tokens of [from, linesEnd)
+        private final long[][] lineTokens;
+        private final TokenStore seed;
+
+        private StyleSpans<Collection<String>> spans;
+        private int linesEnd;
+        private int exitState;
+        private boolean converged;
+
+        HighlightJob(long version, StyledDocument<?, String, ?> document,
+                     int scanFrom, int from, int to, int end, byte[] states, TokenStore seed) {
+            this.version = version;
+            this.document = document;
+            this.scanFrom = scanFrom;
+            this.from = from;
+            this.to = to;
+            this.end = end;
+            this.states = states;
+            this.lineTokens = new long[end - from][];
+            this.seed = seed;
+        }
+
+        @Override
+        public void run() {
+            StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+            TokenBuffer tokens = new TokenBuffer();
+            int state = states[0];
+            int line = scanFrom;
+            while (true) {
+                if (Thread.currentThread().isInterrupted() || version != SyntaxHighlighter.this.version) {
+                    return;
+                }
+                String text = document.getParagraph(line).getText();
+                long[] saved = seed != null && seed.entryState(line) == state ? seed.get(line) : null;
+                if (saved != null) {
+                    if (line >= from) {
+                        addSpans(text, saved, spansBuilder);
+                        lineTokens[line - from] = saved;
+                    }
+                    state = line + 1 < seed.lineCount() ? seed.entryState(line + 1) : state;
+                } else if (line < from) {
+                    tokens.clear();
+                    state = JavaLexer.lex(text, 0, Math.min(text.length(), MAX_STYLED_LINE_LENGTH), state, tokens);
+                } else {
+                    state = highlightLine(text, state, tokens, spansBuilder);
+                    lineTokens[line - from] = TokenStore.pack(tokens);
+                }
+                line++;
+                if (line == end) {
+                    break;
+                }
+                if (line > from) {
+                    // Paragraph separator
+                    spansBuilder.add(TokenKind.styles(TokenKind.IDENTIFIER), 1);
+                }
+                // Past the damaged region the rest of the document is still valid
+                // as soon as the state entering a paragraph is unchanged
+                if (line > to && states[line - scanFrom] == state) {
+                    converged = true;
+                    break;
+                }
+                states[line - scanFrom] = (byte) state;
+            }
+            linesEnd = line;
+            exitState = state;
+            spans = spansBuilder.create();
+            Platform.runLater(() -> applyResult(this));
+        }
+    }
+
+    /**
+     * Highlights a whole text in one pass on the calling thread, e.g. for
+     * benchmarks; editors go through the incremental, background path.
+     */
+    public static StyleSpans<Collection<String>> computeHighlighting(String text) {
+        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+        TokenBuffer tokens = new TokenBuffer();
+        int state = JavaLexer.STATE_CODE;
+        int lineStart = 0;
+        while (true) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            String line = text.substring(lineStart, lineEnd < 0 ? text.length() : lineEnd);
+            state = highlightLine(line, state, tokens, spansBuilder);
+            if (lineEnd < 0) {
+                break;
+            }
+            spansBuilder.add(TokenKind.styles(TokenKind.IDENTIFIER), 1);
+            lineStart = lineEnd + 1;
+        }
+        return spansBuilder.create();
+    }
+
+    /**
+     * Lexes a single paragraph starting in the given state and returns the
+     * state at its end.
+     */
+    private static int highlightLine(String text, int state, TokenBuffer tokens,
+                                     StyleSpansBuilder<Collection<String>> spansBuilder) {
+        // Pathological lines (minified JSON, generated code) are only styled up to a limit
+        int styledLength = Math.min(text.length(), MAX_STYLED_LINE_LENGTH);
+        tokens.clear();
+        int endState = JavaLexer.lex(text, 0, styledLength, state, tokens);
+
+        Collection<String> noStyle = TokenKind.styles(TokenKind.IDENTIFIER);
+        int lastKwEnd = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Collection<String> styles = TokenKind.styles(tokens.kind(i));
+            if (styles != noStyle) {
+                spansBuilder.add(noStyle, tokens.start(i) - lastKwEnd);
+                spansBuilder.add(styles, tokens.length(i));
+                lastKwEnd = tokens.end(i);
+            }
+        }
+
+        spansBuilder.add(noStyle, text.length() - lastKwEnd);
+        return endState;
+    }
+
+    /**
+     * Adds the spans of a paragraph whose tokens are already known.
+     */
+    private static void addSpans(String text, long[] tokens, StyleSpansBuilder<Collection<String>> spansBuilder) {
+        Collection<String> noStyle = TokenKind.styles(TokenKind.IDENTIFIER);
+        int lastKwEnd = 0;
+        for (long token : tokens) {
+            Collection<String> styles = TokenKind.styles(TokenStore.kind(token));
+            if (styles != noStyle) {
+                spansBuilder.add(noStyle, TokenStore.start(token) - lastKwEnd);
+                spansBuilder.add(styles, TokenStore.length(token));
+                lastKwEnd = TokenStore.end(token);
+            }
+        }
+        spansBuilder.add(noStyle, text.length() - lastKwEnd);
+    }
+
+    private static int countLines(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > lineStates.length) {
+            lineStates = Arrays.copyOf(lineStates, Math.max(size, lineStates.length * 2));
+        }
+    }
+}
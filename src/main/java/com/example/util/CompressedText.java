@@ -0,0 +1,67 @@
+package com.example.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Text kept as deflated UTF-8, for documents that are not being shown.
+ * Source code usually shrinks to a fifth of its UTF-8 size, which is itself
+ * about half of the {@code String}'s.
+ */
+public final class CompressedText {
+
+    private final byte[] compressed;
+    // Length of the UTF-8 bytes, so inflating needs a single allocation
+    private final int utf8Length;
+
+    private CompressedText(byte[] compressed, int utf8Length) {
+        this.compressed = compressed;
+        this.utf8Length = utf8Length;
+    }
+
+    public static CompressedText of(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, utf8.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return new CompressedText(out.toByteArray(), utf8.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Size of the compressed bytes.
+     */
+    public int size() {
+        return compressed.length;
+    }
+
+    @Override
+    public String toString() {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] utf8 = new byte[utf8Length];
+            int length = 0;
+            while (length < utf8Length && !inflater.finished()) {
+                length += inflater.inflate(utf8, length, utf8Length - length);
+            }
+            return new String(utf8, 0, length, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            // Only ever inflates what of() deflated
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-capacity ring of console lines. Text can be appended from any thread
+ * in chunks of any size; once the ring is full every new line drops the
+ * oldest one, and over-long lines are wrapped, so memory stays bounded no
+ * matter how much a program prints.
+ * <p>
+ * Lines are numbered from the first line ever appended, so a reader can ask
+ * for whatever was added or dropped since it last looked. The last line is
+ * open while its newline has not arrived and may still grow.
+ */
+public final class ConsoleBuffer {
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int DEFAULT_MAX_LINE_LENGTH = 1_000;
+
+    /**
+     * A line of output, without its line separator; {@code error} if it came
+     * from stderr.
+     */
+    public record Line(String text, boolean error) {
+    }
+
+    private final Line[] lines;
+    private final int maxLineLength;
+    // Guarded by this; lines [first, end) are held, the last one at end - 1
+    private long first;
+    private long end;
+    private boolean open;
+    // The last text appended ended in '\r', so a '\n' starting the next is part of the same line end
+    private boolean endedInCr;
+
+    public ConsoleBuffer() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    public ConsoleBuffer(int capacity, int maxLineLength) {
+        if (capacity < 1 || maxLineLength < 1) {
+            throw new IllegalArgumentException("Capacity and line length must be positive");
+        }
+        this.lines = new Line[capacity];
+        this.maxLineLength = maxLineLength;
+    }
+
+    public int capacity() {
+        return lines.length;
+    }
+
+    /**
+     * Appends text, which may hold any number of lines or only part of one.
+     * "\r\n" and "\r" end lines like "\n", also when "\r\n" is split
+     * between two calls.
+     */
+    public synchronized void append(CharSequence text, boolean error) {
+        int length = text.length();
+        if (length == 0) {
+            return;
+        }
+        int start = endedInCr && text.charAt(0) == '\n' ? 1 : 0;
+        endedInCr = text.charAt(length - 1) == '\r';
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                appendPart(text, start, i, error);
+                open = false;
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            appendPart(text, start, length, error);
+        }
+    }
+
+    /**
+     * Adds text without line separators to the open line, or as a new line.
+     * Output of the other stream starts a line of its own.
+     */
+    private void appendPart(CharSequence text, int from, int to, boolean error) {
+        if (open && end > first) {
+            Line last = lines[index(end - 1)];
+            if (last.error() == error && last.text().length() < maxLineLength) {
+                int take = Math.min(to - from, maxLineLength - last.text().length());
+                lines[index(end - 1)] = new Line(last.text() + text.subSequence(from, from + take), error);
+                from += take;
+                if (from == to) {
+                    return;
+                }
+            }
+        }
+        // An empty part still makes a line: it is an empty line being ended
+        do {
+            int take = Math.min(to - from, maxLineLength);
+            add(new Line(text.subSequence(from, from + take).toString(), error));
+            from += take;
+        } while (from < to);
+        open = true;
+    }
+
+    private void add(Line line) {
+        lines[index(end)] = line;
+        end++;
+        if (end - first > lines.length) {
+            first++;
+        }
+    }
+
+    private int index(long line) {
+        return (int) (line % lines.length);
+    }
+
+    /**
+     * Number of the oldest line still held.
+     */
+    public synchronized long firstLine() {
+        return first;
+    }
+
+    /**
+     * One past the number of the newest line.
+     */
+    public synchronized long endLine() {
+        return end;
+    }
+
+    /**
+     * Returns the lines numbered from {@code from}, or from the oldest one
+     * still held if that is later, to the newest.
+     */
+    public synchronized List<Line> linesFrom(long from) {
+        List<Line> copy = new ArrayList<>((int) Math.max(0, end - Math.max(from, first)));
+        for (long line = Math.max(from, first); line < end; line++) {
+            copy.add(lines[index(line)]);
+        }
+        return copy;
+    }
+
+    /**
+     * Drops all lines; numbering goes on from where it was.
+     */
+    public synchronized void clear() {
+        for (long line = first; line < end; line++) {
+            lines[index(line)] = null;
+        }
+        first = end;
+        open = false;
+        endedInCr = false;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which entries below a project root are left out of the file tree,
+ * the path index and Find in Files. Applies a configurable exclude list and
+ * the {@code .gitignore} file of every directory on the way down, with the
+ * usual rules: a pattern without a slash matches a name at any depth, a
+ * trailing slash matches directories only, and a leading {@code !}
+ * re-includes. Callers prune excluded directories instead of descending
+ * into them. Patterns are compiled once per {@code .gitignore}; the filter
+ * is safe to use from several threads.
+ */
+public final class IgnoreFilter {
+
+    public static final List<String> DEFAULT_EXCLUDES = List.of(
+            ".git/", ".svn/", ".hg/", ".idea/", ".gradle/", "node_modules/", "target/", "build/", "out/",
+            "__pycache__/", ".DS_Store");
+
+    private static final String GITIGNORE = ".gitignore";
+    private static final List<Rule> NO_RULES = List.of();
+
+    private final Path root;
+    private final List<Rule> excludes;
+    // Compiled .gitignore of each directory asked about so far
+    private final Map<Path, List<Rule>> gitignores = new ConcurrentHashMap<>();
+
+    /**
+     * A compiled pattern; {@code regex} matches the name, or the path relative
+     * to the directory of the .gitignore if the pattern contains a slash.
+     */
+    private record Rule(Pattern regex, boolean matchPath, boolean directoryOnly, boolean negated) {
+    }
+
+    public IgnoreFilter(Path root, List<String> excludes) {
+        this.root = root;
+        this.excludes = compile(excludes);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns whether {@code path}, below the root, is excluded. The parent
+     * directories are assumed not to be excluded.
+     */
+    public boolean isIgnored(Path path, boolean directory) {
+        Path relative = root.relativize(path);
+        int depth = relative.getNameCount();
+        if (depth == 0 || relative.toString().isEmpty()) {
+            return false;
+        }
+        String name = relative.getFileName().toString();
+        String relativePath = relative.toString().replace('\\', '/');
+        boolean ignored = apply(excludes, relativePath, name, directory, false);
+
+        // Deeper .gitignore files override shallower ones
+        Path base = root;
+        int baseLength = 0;
+        for (int i = 0; i < depth; i++) {
+            ignored = apply(rulesFor(base), relativePath.substring(baseLength), name, directory, ignored);
+            if (i < depth - 1) {
+                String segment = relative.getName(i).toString();
+                base = base.resolve(segment);
+                baseLength += segment.length() + 1;
+            }
+        }
+        return ignored;
+    }
+
+    /**
+     * Drops the compiled .gitignore of {@code directory}, e.g. after it changed.
+     */
+    public void invalidate(Path directory) {
+        gitignores.remove(directory);
+    }
+
+    private List<Rule> rulesFor(Path directory) {
+        return gitignores.computeIfAbsent(directory, dir -> {
+            Path file = dir.resolve(GITIGNORE);
+            if (!Files.isRegularFile(file)) {
+                return NO_RULES;
+            }
+            try {
+                return compile(Files.readAllLines(file));
+            } catch (IOException | RuntimeException e) {
+                // Unreadable or not UTF-8; ignore the file rather than the directory
+                return NO_RULES;
+            }
+        });
+    }
+
+    private static boolean apply(List<Rule> rules, String path, String name, boolean directory, boolean ignored) {
+        // The last matching rule decides
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            if (rule.directoryOnly() && !directory) {
+                continue;
+            }
+            if (rule.regex().matcher(rule.matchPath() ? path : name).matches()) {
+                return !rule.negated();
+            }
+        }
+        return ignored;
+    }
+
+    private static List<Rule> compile(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (String line : lines) {
+            Rule rule = compile(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules.isEmpty() ? NO_RULES : List.copyOf(rules);
+    }
+
+    private static Rule compile(String line) {
+        String pattern = stripTrailingSpaces(line);
+        if (pattern.isEmpty() || pattern.startsWith("#")) {
+            return null;
+        }
+        boolean negated = pattern.startsWith("!");
+        if (negated || pattern.startsWith("\\!") || pattern.startsWith("\\#")) {
+            pattern = pattern.substring(1);
+        }
+        boolean directoryOnly = pattern.endsWith("/");
+        if (directoryOnly) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        boolean matchPath = pattern.contains("/");
+        if (pattern.startsWith("/")) {
+            pattern = pattern.substring(1);
+        }
+        if (pattern.isEmpty()) {
+            return null;
+        }
+        return new Rule(Pattern.compile(globToRegex(pattern)), matchPath, directoryOnly, negated);
+    }
+
+    /**
+     * Converts a gitignore glob: {@code *} and {@code ?} stay within a path
+     * segment, {@code **} spans segments.
+     */
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (c == '*' && glob.startsWith("**", i)) {
+                boolean segmentStart = i == 0 || glob.charAt(i - 1) == '/';
+                if (segmentStart && glob.startsWith("**/", i)) {
+                    // Zero or more leading directories
+                    regex.append("(?:.*/)?");
+                    i += 3;
+                } else {
+                    regex.append(".*");
+                    i += 2;
+                }
+            } else if (c == '*') {
+                regex.append("[^/]*");
+                i++;
+            } else if (c == '?') {
+                regex.append("[^/]");
+                i++;
+            } else if (c == '[') {
+                int close = glob.indexOf(']', i + 2);
+                if (close < 0) {
+                    regex.append("\\[");
+                    i++;
+                } else {
+                    String set = glob.substring(i + 1, close);
+                    if (set.startsWith("!")) {
+                        set = "^" + set.substring(1);
+                    }
+                    regex.append('[').append(set.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                    i = close + 1;
+                }
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(i + 1))));
+                i += 2;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+                i++;
+            }
+        }
+        return regex.toString();
+    }
+
+    private static String stripTrailingSpaces(String line) {
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+}
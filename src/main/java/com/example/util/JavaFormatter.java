@@ -0,0 +1,70 @@
+package com.example.util;
+
+import java.util.List;
+
+/**
+ * Simple Java code formatter: fixes indentation from the brace, bracket and
+ * parenthesis tokens, so brackets in strings and comments are ignored.
+ * Lines inside text blocks are kept as they are.
+ */
+public final class JavaFormatter {
+
+    private JavaFormatter() {
+    }
+
+    /**
+     * Formats {@code lines} using their tokens; every line must have been lexed.
+     */
+    public static String format(List<String> lines, TokenStore tokens) {
+        int lastLine = lines.size() - 1;
+        while (lastLine >= 0 && lines.get(lastLine).isBlank()) {
+            lastLine--;
+        }
+        StringBuilder sb = new StringBuilder();
+        int indent = 0;
+        for (int line = 0; line <= lastLine; line++) {
+            String text = lines.get(line);
+            String trimmed = text.trim();
+            int entryState = tokens.entryState(line);
+            long[] lineTokens = tokens.get(line);
+            if (entryState == JavaLexer.STATE_TEXT_BLOCK) {
+                sb.append(text).append("\n");
+            } else if (trimmed.isEmpty()) {
+                sb.append("\n");
+            } else {
+                // Leading closers belong to the enclosing level
+                int level = Math.max(0, indent - leadingClosers(text, lineTokens));
+                for (int i = 0; i < level; i++) sb.append("    ");
+                if (entryState == JavaLexer.STATE_BLOCK_COMMENT && trimmed.startsWith("*")) {
+                    sb.append(' ');
+                }
+                sb.append(trimmed).append("\n");
+            }
+            for (long token : lineTokens) {
+                if (isBracket(token)) {
+                    indent += isOpening(text.charAt(TokenStore.start(token))) ? 1 : -1;
+                }
+            }
+            indent = Math.max(0, indent);
+        }
+        return sb.toString();
+    }
+
+    private static int leadingClosers(String text, long[] tokens) {
+        int count = 0;
+        while (count < tokens.length && isBracket(tokens[count])
+                && !isOpening(text.charAt(TokenStore.start(tokens[count])))) {
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean isBracket(long token) {
+        int kind = TokenStore.kind(token);
+        return kind == TokenKind.BRACE || kind == TokenKind.BRACKET || kind == TokenKind.PAREN;
+    }
+
+    private static boolean isOpening(char c) {
+        return c == '{' || c == '[' || c == '(';
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.util;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Enhanced utility class holding patterns for Java syntax highlighting.
- * Supports more precise VS Code-like syntax highlighting.
+ * Enhanced utility class holding the word lists for Java syntax highlighting.
+ * Words are kept in a precomputed perfect hash table for allocation-free lookup.
  */
-public class JavaKeywords {
+public final class JavaKeywords {
 
     // Java keywords
     private static final String[] KEYWORDS = new String[]{
@@ -45,42 +49,113 @@ public class JavaKeywords {
             "@Bean", "@Configuration", "@Import", "@ComponentScan", "@EnableAutoConfiguration"
     };
 
-    // Build patterns
-    private static final String KEYWORD_PATTERN = "\\b(" + String.join("|", KEYWORDS) + ")\\b";
-    private static final String TYPE_PATTERN = "\\b(" + String.join("|", TYPES) + ")\\b";
-    private static final String ANNOTATION_PATTERN = "(" + String.join("|", ANNOTATIONS) + ")";
-    
-    // Basic syntax patterns
-    private static final String PAREN_PATTERN = "\\(|\\)";
-    private static final String BRACE_PATTERN = "\\{|\\}";
-    private static final String BRACKET_PATTERN = "\\[|\\]";
-    private static final String SEMICOLON_PATTERN = "\\;";
-    private static final String STRING_PATTERN = "\"([^\"\\\\]|\\\\.)*\"";
-    private static final String CHAR_PATTERN = "'([^'\\\\]|\\\\.)'";
-    private static final String COMMENT_PATTERN = "//[^\n]*" + "|" + "/\\*(.|\\R)*?\\*/";
-    private static final String NUMBER_PATTERN = "\\b\\d+(\\.\\d+)?([eE][+-]?\\d+)?[fFlL]?\\b";
-    private static final String FUNCTION_PATTERN = "\\b\\w+(?=\\s*\\()";
-    private static final String VARIABLE_PATTERN = "\\b[a-z][a-zA-Z0-9_]*\\b";
-    private static final String CONSTANT_PATTERN = "\\b[A-Z][A-Z0-9_]*\\b";
-    private static final String OPERATOR_PATTERN = "[+\\-*/%=<>!&|^~?:]|\\+\\+|\\-\\-|<=|>=|==|!=|&&|\\|\\||\\+=|\\-=|\\*=|/=|%=|&=|\\|=|\\^=|<<=|>>=|>>>=|->";
+    // Flags returned by lookup()
+    public static final int KEYWORD = 1;
+    public static final int TYPE = 2;
+    public static final int ANNOTATION = 4;
 
-    // Main pattern for syntax highlighting
-    public static final Pattern PATTERN = Pattern.compile(
-            "(?<ANNOTATION>" + ANNOTATION_PATTERN + ")" +
-            "|(?<KEYWORD>" + KEYWORD_PATTERN + ")" +
-            "|(?<TYPE>" + TYPE_PATTERN + ")" +
-            "|(?<FUNCTION>" + FUNCTION_PATTERN + ")" +
-            "|(?<CONSTANT>" + CONSTANT_PATTERN + ")" +
-            "|(?<VARIABLE>" + VARIABLE_PATTERN + ")" +
-            "|(?<NUMBER>" + NUMBER_PATTERN + ")" +
-            "|(?<STRING>" + STRING_PATTERN + ")" +
-            "|(?<CHAR>" + CHAR_PATTERN + ")" +
-            "|(?<COMMENT>" + COMMENT_PATTERN + ")" +
-            "|(?<OPERATOR>" + OPERATOR_PATTERN + ")" +
-            "|(?<PAREN>" + PAREN_PATTERN + ")" +
-            "|(?<BRACE>" + BRACE_PATTERN + ")" +
-            "|(?<BRACKET>" + BRACKET_PATTERN + ")" +
-            "|(?<SEMICOLON>" + SEMICOLON_PATTERN + ")",
-            Pattern.CASE_INSENSITIVE
-    );
+    // Perfect hash table: a word hashes to a bucket, and the bucket's seed
+    // places it in a slot that no other word occupies
+    private static final int BUCKET_MASK = 63;
+    private static final int SLOT_MASK = 255;
+    private static final int[] BUCKET_SEEDS = new int[BUCKET_MASK + 1];
+    private static final char[][] SLOT_WORDS = new char[SLOT_MASK + 1][];
+    private static final byte[] SLOT_FLAGS = new byte[SLOT_MASK + 1];
+
+    static {
+        Map<String, Integer> flags = new LinkedHashMap<>();
+        for (String word : KEYWORDS) {
+            flags.merge(word, KEYWORD, (a, b) -> a | b);
+        }
+        for (String word : TYPES) {
+            flags.merge(word, TYPE, (a, b) -> a | b);
+        }
+        for (String word : ANNOTATIONS) {
+            flags.merge(word.substring(1), ANNOTATION, (a, b) -> a | b);
+        }
+        buildTable(flags);
+    }
+
+    private JavaKeywords() {
+    }
+
+    /**
+     * Looks up the identifier at {@code text[start, start + length)} and returns
+     * its {@link #KEYWORD}, {@link #TYPE} and {@link #ANNOTATION} flags, or 0 if
+     * it is not a known word. Matching is case-sensitive and does not allocate.
+     */
+    public static int lookup(CharSequence text, int start, int length) {
+        int bucket = hash(text, start, length, 0) & BUCKET_MASK;
+        int slot = hash(text, start, length, BUCKET_SEEDS[bucket]) & SLOT_MASK;
+        char[] word = SLOT_WORDS[slot];
+        if (word == null || word.length != length) {
+            return 0;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word[i] != text.charAt(start + i)) {
+                return 0;
+            }
+        }
+        return SLOT_FLAGS[slot];
+    }
+
+    private static int hash(CharSequence text, int start, int length, int seed) {
+        int h = (seed * 0x9E3779B9) ^ length;
+        for (int i = start, end = start + length; i < end; i++) {
+            h = (h ^ text.charAt(i)) * 0x01000193;
+        }
+        return h ^ (h >>> 15);
+    }
+
+    private static void buildTable(Map<String, Integer> flags) {
+        List<List<String>> buckets = new ArrayList<>();
+        for (int i = 0; i <= BUCKET_MASK; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (String word : flags.keySet()) {
+            buckets.get(hash(word, 0, word.length(), 0) & BUCKET_MASK).add(word);
+        }
+
+        // Place the fullest buckets first while the table is still empty
+        Integer[] order = new Integer[buckets.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+        int[] slots = new int[buckets.get(order[0]).size()];
+        for (int bucket : order) {
+            List<String> words = buckets.get(bucket);
+            if (words.isEmpty()) {
+                continue;
+            }
+            for (int seed = 1; ; seed++) {
+                if (tryPlace(words, seed, slots)) {
+                    BUCKET_SEEDS[bucket] = seed;
+                    for (int i = 0; i < words.size(); i++) {
+                        SLOT_WORDS[slots[i]] = words.get(i).toCharArray();
+                        SLOT_FLAGS[slots[i]] = (byte) (int) flags.get(words.get(i));
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean tryPlace(List<String> words, int seed, int[] slots) {
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            int slot = hash(word, 0, word.length(), seed) & SLOT_MASK;
+            if (SLOT_WORDS[slot] != null) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (slots[j] == slot) {
+                    return false;
+                }
+            }
+            slots[i] = slot;
+        }
+        return true;
+    }
 }
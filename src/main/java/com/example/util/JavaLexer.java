@@ -0,0 +1,330 @@
+package com.example.util;
+
+/**
+ * Single-pass, character-level Java lexer used for syntax highlighting.
+ * Tokens are appended to a reusable {@link TokenBuffer}; the scanning loop
+ * itself does not allocate. Multi-line constructs are carried between calls
+ * through the returned lexer state.
+ */
+public final class JavaLexer {
+
+    public static final int STATE_CODE = 0;
+    public static final int STATE_BLOCK_COMMENT = 1;
+    public static final int STATE_TEXT_BLOCK = 2;
+
+    // Longest char literal we accept: a quoted unicode escape
+    private static final int MAX_CHAR_LITERAL = 8;
+
+    private JavaLexer() {
+    }
+
+    /**
+     * Lexes {@code text[start, end)} beginning in the given state, appending
+     * tokens with absolute offsets to {@code out}.
+     *
+     * @return the lexer state at {@code end}
+     */
+    public static int lex(CharSequence text, int start, int end, int state, TokenBuffer out) {
+        int pos = start;
+        if (state == STATE_BLOCK_COMMENT) {
+            int close = indexOfCommentEnd(text, pos, end);
+            if (close < 0) {
+                out.add(pos, end - pos, TokenKind.COMMENT);
+                return STATE_BLOCK_COMMENT;
+            }
+            out.add(pos, close - pos, TokenKind.COMMENT);
+            pos = close;
+        } else if (state == STATE_TEXT_BLOCK) {
+            int close = indexOfTextBlockEnd(text, pos, end);
+            if (close < 0) {
+                out.add(pos, end - pos, TokenKind.STRING);
+                return STATE_TEXT_BLOCK;
+            }
+            out.add(pos, close - pos, TokenKind.STRING);
+            pos = close;
+        }
+
+        while (pos < end) {
+            char c = text.charAt(pos);
+            switch (c) {
+                case ' ', '\t', '\n', '\r', '\f' -> pos++;
+                case '(', ')' -> out.add(pos++, 1, TokenKind.PAREN);
+                case '{', '}' -> out.add(pos++, 1, TokenKind.BRACE);
+                case '[', ']' -> out.add(pos++, 1, TokenKind.BRACKET);
+                case ';' -> out.add(pos++, 1, TokenKind.SEMICOLON);
+                case '"' -> {
+                    if (pos + 2 < end && text.charAt(pos + 1) == '"' && text.charAt(pos + 2) == '"') {
+                        int close = indexOfTextBlockEnd(text, pos + 3, end);
+                        if (close < 0) {
+                            out.add(pos, end - pos, TokenKind.STRING);
+                            return STATE_TEXT_BLOCK;
+                        }
+                        out.add(pos, close - pos, TokenKind.STRING);
+                        pos = close;
+                    } else {
+                        // Unterminated strings run to the end of the line
+                        int close = indexOfQuote(text, pos + 1, end, '"', Integer.MAX_VALUE);
+                        int tokenEnd = close < 0 ? lineEnd(text, pos, end) : close;
+                        out.add(pos, tokenEnd - pos, TokenKind.STRING);
+                        pos = tokenEnd;
+                    }
+                }
+                case '\'' -> {
+                    int close = indexOfQuote(text, pos + 1, end, '\'', MAX_CHAR_LITERAL);
+                    if (close < 0) {
+                        pos++;
+                    } else {
+                        out.add(pos, close - pos, TokenKind.STRING);
+                        pos = close;
+                    }
+                }
+                case '/' -> {
+                    char next = pos + 1 < end ? text.charAt(pos + 1) : 0;
+                    if (next == '/') {
+                        int tokenEnd = lineEnd(text, pos, end);
+                        out.add(pos, tokenEnd - pos, TokenKind.COMMENT);
+                        pos = tokenEnd;
+                    } else if (next == '*') {
+                        int close = indexOfCommentEnd(text, pos + 2, end);
+                        if (close < 0) {
+                            out.add(pos, end - pos, TokenKind.COMMENT);
+                            return STATE_BLOCK_COMMENT;
+                        }
+                        out.add(pos, close - pos, TokenKind.COMMENT);
+                        pos = close;
+                    } else {
+                        pos = lexOperator(text, pos, end, out);
+                    }
+                }
+                case '+', '-', '*', '%', '=', '<', '>', '!', '&', '|', '^', '~', '?', ':' ->
+                        pos = lexOperator(text, pos, end, out);
+                case '@' -> pos = lexAnnotation(text, pos, end, out);
+                default -> {
+                    if (c >= '0' && c <= '9') {
+                        pos = lexNumber(text, pos, end, out);
+                    } else if (isIdentifierStart(c)) {
+                        pos = lexIdentifier(text, pos, end, out);
+                    } else {
+                        pos++;
+                    }
+                }
+            }
+        }
+        return STATE_CODE;
+    }
+
+    private static int lexOperator(CharSequence text, int pos, int end, TokenBuffer out) {
+        int start = pos++;
+        while (pos < end && isOperator(text.charAt(pos))) {
+            // Do not swallow the start of a comment, e.g. "x =/* ... */"
+            if (text.charAt(pos) == '/' && pos + 1 < end
+                    && (text.charAt(pos + 1) == '/' || text.charAt(pos + 1) == '*')) {
+                break;
+            }
+            pos++;
+        }
+        out.add(start, pos - start, TokenKind.OPERATOR);
+        return pos;
+    }
+
+    private static int lexAnnotation(CharSequence text, int pos, int end, TokenBuffer out) {
+        int nameStart = pos + 1;
+        if (nameStart >= end || !isIdentifierStart(text.charAt(nameStart))) {
+            return pos + 1;
+        }
+        int nameEnd = identifierEnd(text, nameStart, end);
+        if ((JavaKeywords.lookup(text, nameStart, nameEnd - nameStart) & JavaKeywords.ANNOTATION) != 0) {
+            out.add(pos, nameEnd - pos, TokenKind.ANNOTATION);
+            return nameEnd;
+        }
+        // Unknown annotations are highlighted like any other identifier
+        return nameStart;
+    }
+
+    private static int lexIdentifier(CharSequence text, int pos, int end, TokenBuffer out) {
+        int identEnd = identifierEnd(text, pos, end);
+        int length = identEnd - pos;
+        int flags = JavaKeywords.lookup(text, pos, length);
+
+        int kind;
+        if ((flags & JavaKeywords.KEYWORD) != 0) {
+            kind = TokenKind.KEYWORD;
+        } else if ((flags & JavaKeywords.TYPE) != 0) {
+            kind = TokenKind.TYPE;
+        } else if (isFollowedByParen(text, identEnd, end)) {
+            kind = TokenKind.FUNCTION;
+        } else {
+            kind = classifyByCase(text, pos, identEnd);
+        }
+        out.add(pos, length, kind);
+        return identEnd;
+    }
+
+    /**
+     * ALL_CAPS names are constants, lowerCamel names are variables and anything
+     * else (class names, names with '$') is a plain identifier.
+     */
+    private static int classifyByCase(CharSequence text, int start, int end) {
+        char first = text.charAt(start);
+        boolean constant = first >= 'A' && first <= 'Z';
+        boolean variable = first >= 'a' && first <= 'z';
+        for (int i = start + 1; i < end && (constant || variable); i++) {
+            char c = text.charAt(i);
+            boolean digitOrUnderscore = (c >= '0' && c <= '9') || c == '_';
+            boolean upper = c >= 'A' && c <= 'Z';
+            boolean lower = c >= 'a' && c <= 'z';
+            constant &= upper || digitOrUnderscore;
+            variable &= upper || lower || digitOrUnderscore;
+        }
+        if (constant) {
+            return TokenKind.CONSTANT;
+        }
+        return variable ? TokenKind.VARIABLE : TokenKind.IDENTIFIER;
+    }
+
+    private static int lexNumber(CharSequence text, int pos, int end, TokenBuffer out) {
+        int start = pos;
+        if (text.charAt(pos) == '0' && pos + 1 < end && (text.charAt(pos + 1) == 'x' || text.charAt(pos + 1) == 'X')) {
+            pos += 2;
+            while (pos < end && (isHexDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                pos++;
+            }
+        } else {
+            pos = digitsEnd(text, pos, end);
+            if (pos + 1 < end && text.charAt(pos) == '.' && isDigit(text.charAt(pos + 1))) {
+                pos = digitsEnd(text, pos + 1, end);
+            }
+            if (pos < end && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+                int exp = pos + 1;
+                if (exp < end && (text.charAt(exp) == '+' || text.charAt(exp) == '-')) {
+                    exp++;
+                }
+                if (exp < end && isDigit(text.charAt(exp))) {
+                    pos = digitsEnd(text, exp, end);
+                }
+            }
+        }
+        if (pos < end) {
+            char suffix = text.charAt(pos);
+            if (suffix == 'f' || suffix == 'F' || suffix == 'l' || suffix == 'L' || suffix == 'd' || suffix == 'D') {
+                pos++;
+            }
+        }
+        out.add(start, pos - start, TokenKind.NUMBER);
+        return pos;
+    }
+
+    private static int digitsEnd(CharSequence text, int pos, int end) {
+        while (pos < end && (isDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isFollowedByParen(CharSequence text, int pos, int end) {
+        while (pos < end) {
+            char c = text.charAt(pos++);
+            if (c == '(') {
+                return true;
+            }
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the offset just past the closing quote, or -1 if the literal is
+     * not closed on this line within {@code maxLength} characters.
+     */
+    private static int indexOfQuote(CharSequence text, int pos, int end, char quote, int maxLength) {
+        int limit = (int) Math.min(end, (long) pos + maxLength);
+        while (pos < limit) {
+            char c = text.charAt(pos);
+            if (c == '\\') {
+                pos += 2;
+            } else if (c == quote) {
+                return pos + 1;
+            } else if (c == '\n') {
+                return -1;
+            } else {
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset just past the closing {@code *}{@code /}, or -1.
+     */
+    private static int indexOfCommentEnd(CharSequence text, int pos, int end) {
+        for (int i = pos; i + 1 < end; i++) {
+            if (text.charAt(i) == '*' && text.charAt(i + 1) == '/') {
+                return i + 2;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset just past the closing triple quote, or -1.
+     */
+    private static int indexOfTextBlockEnd(CharSequence text, int pos, int end) {
+        while (pos + 2 < end) {
+            char c = text.charAt(pos);
+            if (c == '\\') {
+                pos += 2;
+            } else if (c == '"' && text.charAt(pos + 1) == '"' && text.charAt(pos + 2) == '"') {
+                return pos + 3;
+            } else {
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    private static int lineEnd(CharSequence text, int pos, int end) {
+        while (pos < end && text.charAt(pos) != '\n' && text.charAt(pos) != '\r') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int identifierEnd(CharSequence text, int pos, int end) {
+        pos++;
+        while (pos < end && isIdentifierPart(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        if (c < 128) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+        }
+        return Character.isJavaIdentifierStart(c);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        if (c < 128) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$';
+        }
+        return Character.isJavaIdentifierPart(c);
+    }
+
+    private static boolean isOperator(char c) {
+        return switch (c) {
+            case '+', '-', '*', '/', '%', '=', '<', '>', '!', '&', '|', '^', '~', '?', ':' -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory index of relative file paths for fuzzy "Go to File". All paths
+ * share one {@code char[]}; each entry also keeps a 64-bit mask of the
+ * characters it contains, so most paths are rejected by a single AND before
+ * the subsequence match runs. Removed entries are left as holes until the
+ * store is compacted. Paths use '/' as separator. Not thread-safe.
+ */
+public final class PathIndex {
+
+    // Query characters must appear in this order, not necessarily adjacent
+    private static final int SCORE_MATCH = 16;
+    private static final int BONUS_CONSECUTIVE = 24;
+    private static final int BONUS_BOUNDARY = 20;
+    private static final int BONUS_FILE_NAME = 40;
+    private static final int BONUS_NAME_PREFIX = 30;
+    private static final int PENALTY_GAP = 2;
+    // Start positions tried when matching within the file name
+    private static final int MAX_STARTS = 8;
+
+    private char[] chars = new char[4096];
+    // Lower-case copy of chars, matched against the lower-cased query
+    private char[] lower = new char[4096];
+    private int charCount;
+    private int[] offsets = new int[256];
+    // Length of each path, or -1 once it has been removed
+    private int[] lengths = new int[256];
+    private int[] nameStarts = new int[256];
+    private long[] masks = new long[256];
+    private int entryCount;
+    private int removedCount;
+    private int removedChars;
+
+    // Entries that matched the previous query; a query extending it only needs to look at these
+    private String lastNeedle = "";
+    private int[] candidates = new int[0];
+    private int candidateCount = -1;
+
+    public int size() {
+        return entryCount - removedCount;
+    }
+
+    public void add(String path) {
+        ensureCapacity(entryCount + 1, charCount + path.length());
+        path.getChars(0, path.length(), chars, charCount);
+        for (int i = charCount; i < charCount + path.length(); i++) {
+            lower[i] = Character.toLowerCase(chars[i]);
+        }
+        offsets[entryCount] = charCount;
+        lengths[entryCount] = path.length();
+        nameStarts[entryCount] = path.lastIndexOf('/') + 1;
+        masks[entryCount] = mask(path);
+        charCount += path.length();
+        entryCount++;
+        candidateCount = -1;
+    }
+
+    /**
+     * Removes {@code path} and, if it is a directory, every path below it.
+     *
+     * @return the number of paths removed
+     */
+    public int remove(String path) {
+        int removed = 0;
+        for (int i = 0; i < entryCount; i++) {
+            if (lengths[i] >= 0 && isAtOrBelow(i, path)) {
+                removedChars += lengths[i];
+                lengths[i] = -1;
+                removed++;
+            }
+        }
+        removedCount += removed;
+        if (removed > 0) {
+            candidateCount = -1;
+        }
+        if (removedChars > charCount / 2 && removedChars > 4096) {
+            compact();
+        }
+        return removed;
+    }
+
+    /**
+     * Moves {@code from} and, if it is a directory, every path below it to {@code to}.
+     */
+    public void rename(String from, String to) {
+        List<String> moved = new ArrayList<>();
+        for (int i = 0; i < entryCount; i++) {
+            if (lengths[i] >= 0 && isAtOrBelow(i, from)) {
+                moved.add(to + new String(chars, offsets[i] + from.length(), lengths[i] - from.length()));
+            }
+        }
+        remove(from);
+        for (String path : moved) {
+            add(path);
+        }
+    }
+
+    public boolean contains(String path) {
+        for (int i = 0; i < entryCount; i++) {
+            if (lengths[i] == path.length() && isAtOrBelow(i, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns up to {@code limit} paths matching {@code query}, best first.
+     * Spaces in the query are ignored; matching is case-insensitive.
+     */
+    public List<String> search(String query, int limit) {
+        char[] needle = normalize(query);
+        if (needle.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        String needleText = new String(needle);
+        long needleMask = mask(needleText);
+        boolean narrowing = candidateCount >= 0 && needleText.startsWith(lastNeedle);
+        int scanCount = narrowing ? candidateCount : entryCount;
+        int[] matched = narrowing ? candidates : new int[Math.max(16, entryCount / 16)];
+        int matchedCount = 0;
+
+        // Bounded min-heap of the best entries so far, worst at the root
+        int[] heapEntries = new int[limit];
+        int[] heapScores = new int[limit];
+        int heapSize = 0;
+        for (int n = 0; n < scanCount; n++) {
+            int i = narrowing ? candidates[n] : n;
+            if (lengths[i] < 0 || (masks[i] & needleMask) != needleMask) {
+                continue;
+            }
+            int score = score(i, needle);
+            if (score == Integer.MIN_VALUE) {
+                continue;
+            }
+            // Written behind the read position when narrowing, so the array can be reused
+            if (matchedCount == matched.length) {
+                matched = Arrays.copyOf(matched, matchedCount * 2);
+            }
+            matched[matchedCount++] = i;
+            if (heapSize < limit) {
+                heapEntries[heapSize] = i;
+                heapScores[heapSize] = score;
+                siftUp(heapEntries, heapScores, heapSize++);
+            } else if (isBetter(score, i, heapScores[0], heapEntries[0])) {
+                heapEntries[0] = i;
+                heapScores[0] = score;
+                siftDown(heapEntries, heapScores, heapSize);
+            }
+        }
+
+        lastNeedle = needleText;
+        candidates = matched;
+        candidateCount = matchedCount;
+
+        String[] results = new String[heapSize];
+        while (heapSize > 0) {
+            int entry = heapEntries[0];
+            results[--heapSize] = new String(chars, offsets[entry], lengths[entry]);
+            heapEntries[0] = heapEntries[heapSize];
+            heapScores[0] = heapScores[heapSize];
+            siftDown(heapEntries, heapScores, heapSize);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Scores entry {@code i}, or returns {@link Integer#MIN_VALUE} if the
+     * query is not a subsequence of the path. A match within the file name
+     * beats one that spreads over the directories.
+     */
+    private int score(int i, char[] needle) {
+        int offset = offsets[i];
+        int end = offset + lengths[i];
+        int nameStart = offset + nameStarts[i];
+        int best = Integer.MIN_VALUE;
+        int starts = 0;
+        for (int start = nameStart; start < end && starts < MAX_STARTS; start++) {
+            if (lower[start] == needle[0]) {
+                int score = matchFrom(offset, start, end, needle);
+                if (score == Integer.MIN_VALUE) {
+                    break;
+                }
+                score += BONUS_FILE_NAME + (start == nameStart ? BONUS_NAME_PREFIX : 0);
+                best = Math.max(best, score);
+                starts++;
+            }
+        }
+        if (best == Integer.MIN_VALUE) {
+            best = matchFrom(offset, offset, end, needle);
+        }
+        // Shorter paths win ties
+        return best == Integer.MIN_VALUE ? best : best - lengths[i] / 8;
+    }
+
+    /**
+     * Greedily matches the query from {@code start}, preferring to continue a
+     * run of consecutive characters.
+     */
+    private int matchFrom(int pathStart, int start, int end, char[] needle) {
+        int score = 0;
+        int pos = start;
+        int previous = -2;
+        for (char c : needle) {
+            while (pos < end && lower[pos] != c) {
+                pos++;
+            }
+            if (pos == end) {
+                return Integer.MIN_VALUE;
+            }
+            score += SCORE_MATCH;
+            if (pos == previous + 1) {
+                score += BONUS_CONSECUTIVE;
+            } else if (previous >= 0) {
+                score -= Math.min(PENALTY_GAP * (pos - previous - 1), BONUS_CONSECUTIVE);
+            }
+            if (pos == pathStart || isBoundary(pos)) {
+                score += BONUS_BOUNDARY;
+            }
+            previous = pos++;
+        }
+        return score;
+    }
+
+    private boolean isBoundary(int pos) {
+        char previous = chars[pos - 1];
+        char c = chars[pos];
+        return previous == '/' || previous == '_' || previous == '-' || previous == '.' || previous == ' '
+                || (Character.isUpperCase(c) && Character.isLowerCase(previous));
+    }
+
+    private boolean isAtOrBelow(int i, String path) {
+        int length = lengths[i];
+        if (length < path.length() || (length > path.length() && chars[offsets[i] + path.length()] != '/')) {
+            return false;
+        }
+        int offset = offsets[i];
+        for (int j = 0; j < path.length(); j++) {
+            if (chars[offset + j] != path.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBetter(int score, int entry, int otherScore, int otherEntry) {
+        return score > otherScore || (score == otherScore && entry < otherEntry);
+    }
+
+    private static void siftUp(int[] entries, int[] scores, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBetter(scores[parent], entries[parent], scores[index], entries[index])) {
+                break;
+            }
+            swap(entries, scores, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] entries, int[] scores, int size) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                if (isBetter(scores[worst], entries[worst], scores[child], entries[child])) {
+                    worst = child;
+                }
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(entries, scores, worst, index);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] entries, int[] scores, int a, int b) {
+        int entry = entries[a];
+        entries[a] = entries[b];
+        entries[b] = entry;
+        int score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    private static char[] normalize(String query) {
+        StringBuilder sb = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(Character.toLowerCase(c == '\\' ? '/' : c));
+            }
+        }
+        return sb.toString().toCharArray();
+    }
+
+    /**
+     * One bit per letter and digit, case-insensitive, and one shared by all other characters.
+     */
+    private static long mask(String text) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (c >= 'a' && c <= 'z') {
+                mask |= 1L << (c - 'a');
+            } else if (c >= '0' && c <= '9') {
+                mask |= 1L << (26 + c - '0');
+            } else {
+                mask |= 1L << 63;
+            }
+        }
+        return mask;
+    }
+
+    private void compact() {
+        int entry = 0;
+        int charPos = 0;
+        for (int i = 0; i < entryCount; i++) {
+            if (lengths[i] < 0) {
+                continue;
+            }
+            System.arraycopy(chars, offsets[i], chars, charPos, lengths[i]);
+            System.arraycopy(lower, offsets[i], lower, charPos, lengths[i]);
+            offsets[entry] = charPos;
+            lengths[entry] = lengths[i];
+            nameStarts[entry] = nameStarts[i];
+            masks[entry] = masks[i];
+            charPos += lengths[i];
+            entry++;
+        }
+        entryCount = entry;
+        charCount = charPos;
+        candidateCount = -1;
+        removedCount = 0;
+        removedChars = 0;
+    }
+
+    private void ensureCapacity(int entries, int totalChars) {
+        if (entries > offsets.length) {
+            int capacity = Math.max(entries, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            nameStarts = Arrays.copyOf(nameStarts, capacity);
+            masks = Arrays.copyOf(masks, capacity);
+        }
+        if (totalChars > chars.length) {
+            int capacity = Math.max(totalChars, chars.length * 2);
+            chars = Arrays.copyOf(chars, capacity);
+            lower = Arrays.copyOf(lower, capacity);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled find query: literal, case-insensitive, whole-word or regex.
+ * Literal queries are matched without going through {@link Pattern}.
+ * Instances keep the last match, so each search thread needs its own.
+ */
+public final class TextSearch {
+
+    private final String query;
+    private final boolean matchCase;
+    private final boolean wholeWord;
+    private final Pattern pattern;
+
+    private Matcher matcher;
+    private String text;
+    private int start = -1;
+    private int end = -1;
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException if {@code regex} is set and the query is invalid
+     */
+    public TextSearch(String query, boolean matchCase, boolean wholeWord, boolean regex) {
+        this.query = query;
+        this.matchCase = matchCase;
+        this.wholeWord = wholeWord;
+        if (regex) {
+            int flags = Pattern.MULTILINE | (matchCase ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            this.pattern = Pattern.compile(query, flags);
+        } else {
+            this.pattern = null;
+        }
+    }
+
+    /**
+     * Returns a fresh copy for use on another thread.
+     */
+    public TextSearch copy() {
+        return new TextSearch(query, matchCase, wholeWord, pattern != null);
+    }
+
+    public boolean isEmpty() {
+        return query.isEmpty();
+    }
+
+    public boolean isRegex() {
+        return pattern != null;
+    }
+
+    /**
+     * Finds the next non-empty match starting at or after {@code from}.
+     *
+     * @return false if there are no more matches
+     */
+    public boolean find(String text, int from) {
+        if (query.isEmpty()) {
+            return false;
+        }
+        int pos = from;
+        while (pos <= text.length()) {
+            boolean found = pattern != null ? findRegex(text, pos) : findLiteral(text, pos);
+            if (!found) {
+                start = -1;
+                end = -1;
+                return false;
+            }
+            if (end > start && (!wholeWord || isWordBoundary(text, start, end))) {
+                return true;
+            }
+            pos = start + 1;
+        }
+        start = -1;
+        end = -1;
+        return false;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Expands {@code replacement} for the last match: {@code $1} and {@code ${name}}
+     * refer to groups in regex mode, a backslash escapes the next character.
+     * Literal queries use the replacement as it is.
+     */
+    public String replacement(String replacement) {
+        if (pattern == null) {
+            return replacement;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < replacement.length(); i++) {
+            char c = replacement.charAt(i);
+            if (c == '\\' && i + 1 < replacement.length()) {
+                sb.append(replacement.charAt(++i));
+            } else if (c == '$' && i + 1 < replacement.length() && replacement.charAt(i + 1) == '{') {
+                int close = replacement.indexOf('}', i);
+                if (close < 0) {
+                    sb.append(c);
+                    continue;
+                }
+                String group = matcher.group(replacement.substring(i + 2, close));
+                sb.append(group != null ? group : "");
+                i = close;
+            } else if (c == '$' && i + 1 < replacement.length() && isDigit(replacement.charAt(i + 1))) {
+                // Take as many digits as still name an existing group
+                int group = replacement.charAt(++i) - '0';
+                while (i + 1 < replacement.length() && isDigit(replacement.charAt(i + 1))
+                        && group * 10 + (replacement.charAt(i + 1) - '0') <= matcher.groupCount()) {
+                    group = group * 10 + (replacement.charAt(++i) - '0');
+                }
+                String value = group <= matcher.groupCount() ? matcher.group(group) : null;
+                sb.append(value != null ? value : "");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private boolean findRegex(String text, int from) {
+        if (matcher == null || this.text != text) {
+            matcher = pattern.matcher(text);
+            this.text = text;
+        }
+        if (!matcher.find(from)) {
+            return false;
+        }
+        start = matcher.start();
+        end = matcher.end();
+        return true;
+    }
+
+    private boolean findLiteral(String text, int from) {
+        int index;
+        if (matchCase) {
+            index = text.indexOf(query, from);
+        } else {
+            index = indexOfIgnoreCase(text, from);
+        }
+        if (index < 0) {
+            return false;
+        }
+        start = index;
+        end = index + query.length();
+        return true;
+    }
+
+    private int indexOfIgnoreCase(String text, int from) {
+        char first = query.charAt(0);
+        char upper = Character.toUpperCase(first);
+        char lower = Character.toLowerCase(first);
+        int last = text.length() - query.length();
+        for (int i = from; i <= last; i++) {
+            char c = text.charAt(i);
+            if ((c == upper || c == lower || Character.toLowerCase(c) == lower)
+                    && text.regionMatches(true, i, query, 0, query.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWordBoundary(String text, int start, int end) {
+        return (start == 0 || !isWordChar(text.charAt(start - 1)))
+                && (end == text.length() || !isWordChar(text.charAt(end)));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
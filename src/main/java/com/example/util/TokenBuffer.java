@@ -0,0 +1,62 @@
+package com.example.util;
+
+import java.util.Arrays;
+
+/**
+ * Reusable, growable buffer of tokens stored as parallel primitive arrays.
+ * Clearing keeps the arrays, so a warmed-up buffer does not allocate.
+ */
+public final class TokenBuffer {
+
+    private int[] starts;
+    private int[] lengths;
+    private byte[] kinds;
+    private int size;
+
+    public TokenBuffer() {
+        this(256);
+    }
+
+    public TokenBuffer(int initialCapacity) {
+        starts = new int[initialCapacity];
+        lengths = new int[initialCapacity];
+        kinds = new byte[initialCapacity];
+    }
+
+    public void add(int start, int length, int kind) {
+        if (size == starts.length) {
+            int capacity = Math.max(16, size * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+        starts[size] = start;
+        lengths[size] = length;
+        kinds[size] = (byte) kind;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int end(int index) {
+        return starts[index] + lengths[index];
+    }
+
+    public int kind(int index) {
+        return kinds[index];
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Token kinds produced by {@link JavaLexer}, with the CSS style class used to
+ * highlight each of them.
+ */
+public final class TokenKind {
+
+    public static final int IDENTIFIER = 0;
+    public static final int ANNOTATION = 1;
+    public static final int KEYWORD = 2;
+    public static final int TYPE = 3;
+    public static final int FUNCTION = 4;
+    public static final int CONSTANT = 5;
+    public static final int VARIABLE = 6;
+    public static final int NUMBER = 7;
+    public static final int STRING = 8;
+    public static final int COMMENT = 9;
+    public static final int OPERATOR = 10;
+    public static final int PAREN = 11;
+    public static final int BRACE = 12;
+    public static final int BRACKET = 13;
+    public static final int SEMICOLON = 14;
+
+    public static final int COUNT = 15;
+
+    /** Style class added to a bracket and its match while the caret is on one of them. */
+    public static final String MATCH_STYLE_CLASS = "brace-match";
+
+    // Plain identifiers (e.g. class names) are tokens but carry no style
+    private static final String[] STYLE_CLASSES = {
+            null, "annotation", "keyword", "type", "function",
+            "constant", "variable", "number", "string", "comment",
+            "operator", "paren", "brace", "bracket", "semicolon"
+    };
+
+    // Interned style collections, so building spans does not allocate per token
+    private static final List<Collection<String>> STYLES = new ArrayList<>();
+    private static final List<Collection<String>> MATCHED_STYLES = new ArrayList<>();
+
+    static {
+        for (String styleClass : STYLE_CLASSES) {
+            STYLES.add(styleClass == null ? Collections.emptyList() : List.of(styleClass));
+            MATCHED_STYLES.add(styleClass == null ? List.of(MATCH_STYLE_CLASS) : List.of(styleClass, MATCH_STYLE_CLASS));
+        }
+    }
+
+    private TokenKind() {
+    }
+
+    /**
+     * Returns the style class for the given kind, or null if it is not highlighted.
+     */
+    public static String styleClass(int kind) {
+        return STYLE_CLASSES[kind];
+    }
+
+    /**
+     * Returns the shared style collection for the given kind; empty if it is not highlighted.
+     */
+    public static Collection<String> styles(int kind) {
+        return STYLES.get(kind);
+    }
+
+    /**
+     * Returns the shared style collection for a matched bracket of the given kind.
+     */
+    public static Collection<String> matchedStyles(int kind) {
+        return MATCHED_STYLES.get(kind);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-document token store kept alongside a code area. Each paragraph holds
+ * its tokens packed into a {@code long[]} (paragraph-relative start, length
+ * and kind) together with the lexer state it was lexed from. Edits shift the
+ * paragraphs below them and drop the tokens of the damaged paragraphs, so
+ * only those need lexing again.
+ */
+public final class TokenStore {
+
+    private static final long[] EMPTY = new long[0];
+    private static final int MAX_LENGTH = 0xFFFFFF;
+
+    // Tokens of each paragraph, null while the paragraph has not been lexed
+    private long[][] lines = new long[64][];
+    private byte[] entryStates = new byte[64];
+    private int lineCount;
+
+    public static long pack(int start, int length, int kind) {
+        return ((long) start << 32) | ((long) Math.min(length, MAX_LENGTH) << 8) | kind;
+    }
+
+    public static int start(long token) {
+        return (int) (token >>> 32);
+    }
+
+    public static int length(long token) {
+        return (int) (token >>> 8) & MAX_LENGTH;
+    }
+
+    public static int end(long token) {
+        return start(token) + length(token);
+    }
+
+    public static int kind(long token) {
+        return (int) token & 0xFF;
+    }
+
+    /**
+     * Packs the tokens of a single lexed paragraph.
+     */
+    public static long[] pack(TokenBuffer tokens) {
+        if (tokens.size() == 0) {
+            return EMPTY;
+        }
+        long[] packed = new long[tokens.size()];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = pack(tokens.start(i), tokens.length(i), tokens.kind(i));
+        }
+        return packed;
+    }
+
+    /**
+     * Lexes every line from scratch, e.g. for text that is not in an editor.
+     */
+    public static TokenStore lex(List<String> lines) {
+        TokenStore store = new TokenStore();
+        store.reset(lines.size());
+        TokenBuffer buffer = new TokenBuffer();
+        int state = JavaLexer.STATE_CODE;
+        for (int line = 0; line < lines.size(); line++) {
+            String text = lines.get(line);
+            buffer.clear();
+            int exitState = JavaLexer.lex(text, 0, text.length(), state, buffer);
+            store.set(line, state, pack(buffer));
+            state = exitState;
+        }
+        return store;
+    }
+
+    /**
+     * Drops all tokens and resizes the store to {@code lineCount} paragraphs.
+     */
+    public void reset(int lineCount) {
+        ensureCapacity(lineCount);
+        Arrays.fill(lines, null);
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * Applies an edit of paragraph {@code line} that removed {@code removedLines}
+     * and inserted {@code insertedLines} line separators. Tokens below the edit
+     * move with it; the edited paragraphs have to be lexed again.
+     */
+    public void replaceLines(int line, int removedLines, int insertedLines) {
+        int delta = insertedLines - removedLines;
+        if (delta != 0) {
+            ensureCapacity(lineCount + delta);
+            int tail = lineCount - (line + 1 + removedLines);
+            System.arraycopy(lines, line + 1 + removedLines, lines, line + 1 + insertedLines, tail);
+            System.arraycopy(entryStates, line + 1 + removedLines, entryStates, line + 1 + insertedLines, tail);
+            lineCount += delta;
+            if (delta < 0) {
+                Arrays.fill(lines, lineCount, lineCount - delta, null);
+            }
+        }
+        Arrays.fill(lines, line, line + 1 + insertedLines, null);
+    }
+
+    /**
+     * Drops the tokens of paragraphs {@code [from, to)}.
+     */
+    public void invalidate(int from, int to) {
+        Arrays.fill(lines, from, to, null);
+    }
+
+    public void set(int line, int entryState, long[] tokens) {
+        lines[line] = tokens;
+        entryStates[line] = (byte) entryState;
+    }
+
+    /**
+     * Returns the packed tokens of a paragraph, or null if it has not been lexed.
+     */
+    public long[] get(int line) {
+        return lines[line];
+    }
+
+    /**
+     * Returns the lexer state a paragraph with tokens was lexed from.
+     */
+    public int entryState(int line) {
+        return entryStates[line];
+    }
+
+    public int lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * True if every paragraph has tokens.
+     */
+    public boolean isComplete() {
+        for (int line = 0; line < lineCount; line++) {
+            if (lines[line] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a copy that later edits of this store do not affect. The token
+     * arrays themselves are never modified, so they are shared.
+     */
+    public TokenStore copy() {
+        TokenStore copy = new TokenStore();
+        copy.reset(lineCount);
+        System.arraycopy(lines, 0, copy.lines, 0, lineCount);
+        System.arraycopy(entryStates, 0, copy.entryStates, 0, lineCount);
+        return copy;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > lines.length) {
+            int capacity = Math.max(size, lines.length * 2);
+            lines = Arrays.copyOf(lines, capacity);
+            entryStates = Arrays.copyOf(entryStates, capacity);
+        }
+    }
+}
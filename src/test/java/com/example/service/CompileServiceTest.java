@@ -0,0 +1,128 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for in-process compilation from editor text.
+ */
+public class CompileServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void compilesTheGivenTextToMemory() throws Exception {
+        // The file on disk is stale; the editor text is what gets compiled
+        Path file = Files.writeString(dir.resolve("App.java"), "class App { broken");
+        Files.writeString(dir.resolve("Helper.java"), "class Helper { static int two() { return 2; } }");
+        CompileService compiler = new CompileService();
+
+        CompileService.Result result = compiler.compile(file,
+                "public class App { class Inner { } int x = Helper.two(); }", List.of()).join();
+
+        assertTrue(result.success());
+        assertEquals(Set.of("App", "App$Inner", "Helper"), result.classes().keySet());
+        try (var files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+        result.writeClasses(dir.resolve("out"));
+        assertTrue(Files.isRegularFile(dir.resolve("out").resolve("App.class")));
+    }
+
+    @Test
+    public void reportsProblemsWithLineAndColumn() {
+        CompileService compiler = new CompileService();
+
+        CompileService.Result result = compiler.compile(dir.resolve("Main.java"),
+                "class Main {\n    int x = \"text\";\n}", List.of()).join();
+
+        assertFalse(result.success());
+        assertEquals(1, result.errorCount());
+        CompileService.Problem problem = result.problems().get(0);
+        assertEquals("Main.java", problem.source());
+        assertEquals(2, problem.line());
+        assertEquals(13, problem.column());
+        assertTrue(result.classes().isEmpty());
+    }
+
+    @Test
+    public void recompilesOnlyChangedSourcesAndTheirDependents() throws Exception {
+        Path pkg = Files.createDirectories(dir.resolve("app"));
+        Path main = Files.writeString(pkg.resolve("Main.java"),
+                "package app;\npublic class Main { int x = Helper.VALUE; }");
+        Path helper = Files.writeString(pkg.resolve("Helper.java"),
+                "package app;\npublic class Helper { static final int VALUE = 1; }");
+        Files.writeString(pkg.resolve("Other.java"), "package app;\nclass Other { }");
+        CompileService compiler = new CompileService();
+
+        CompileService.Result first = compiler.compileProject(main, Files.readString(main)).join();
+        assertTrue(first.success());
+        assertEquals(3, first.compiled());
+        assertEquals(Set.of("app.Main", "app.Helper", "app.Other"), first.classes().keySet());
+
+        // Nothing changed
+        assertEquals(0, compiler.compileProject(main, Files.readString(main)).join().compiled());
+
+        // Only the editor text changed; Helper comes from its cached class file
+        CompileService.Result edited = compiler.compileProject(main,
+                "package app;\npublic class Main { int y = Helper.VALUE + 1; }").join();
+        assertTrue(edited.success());
+        assertEquals(1, edited.compiled());
+        assertEquals(3, edited.classes().size());
+
+        // Main uses Helper, so it is compiled again with it; Other is not
+        Files.writeString(helper, "package app;\npublic class Helper { static final int VALUE = 2; }");
+        CompileService.Result changed = compiler.compileProject(main, Files.readString(main)).join();
+        assertTrue(changed.success());
+        assertEquals(2, changed.compiled());
+
+        // A dependent of a deleted source fails to compile
+        Files.delete(helper);
+        CompileService.Result deleted = compiler.compileProject(main, Files.readString(main)).join();
+        assertFalse(deleted.success());
+        assertEquals(1, deleted.compiled());
+    }
+
+    @Test
+    public void leavesSubdirectoriesOutOfTheDefaultPackage() throws Exception {
+        Path main = Files.writeString(dir.resolve("Main.java"), "public class Main { Helper helper; }");
+        Files.writeString(dir.resolve("Helper.java"), "class Helper { }");
+        // A scratch copy in a subdirectory would otherwise clash with Main
+        Path scratch = Files.createDirectories(dir.resolve("old"));
+        Files.writeString(scratch.resolve("Main.java"), "public class Main { }");
+        CompileService compiler = new CompileService();
+
+        CompileService.Result result = compiler.compileProject(main, Files.readString(main)).join();
+
+        assertTrue(result.success(), result.problems().toString());
+        assertEquals(2, result.compiled());
+        assertEquals(Set.of("Main", "Helper"), result.classes().keySet());
+    }
+
+    @Test
+    public void qualifiesTheMainClassWithTheFilesPackage() throws Exception {
+        Path app = Files.createDirectories(dir.resolve("app"));
+        Path tools = Files.createDirectories(dir.resolve("tools"));
+        Files.writeString(app.resolve("Main.java"), "package app; public class Main { }");
+        Path main = Files.writeString(tools.resolve("Main.java"),
+                "// A second Main\npackage tools;\n\npublic class Main { }");
+        CompileService compiler = new CompileService();
+
+        CompileService.Result result = compiler.compileProject(main, Files.readString(main)).join();
+
+        assertTrue(result.success(), result.problems().toString());
+        assertEquals(Set.of("app.Main", "tools.Main"), result.classes().keySet());
+        assertEquals("tools.Main", CompileService.qualifiedName(Files.readString(main), "Main"));
+        assertEquals("Main", CompileService.qualifiedName("public class Main { }", "Main"));
+    }
+}
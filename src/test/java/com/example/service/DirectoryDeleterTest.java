@@ -0,0 +1,59 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Unit tests for the background recursive delete.
+ */
+public class DirectoryDeleterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void deletesWideAndDeepTrees() throws Exception {
+        Path target = dir.resolve("target");
+        Path deep = Files.createDirectories(target.resolve("a/b/c/d"));
+        Files.writeString(deep.resolve("Deep.class"), "x");
+        Path wide = Files.createDirectories(target.resolve("classes"));
+        for (int i = 0; i < 500; i++) {
+            Files.createFile(wide.resolve("C" + i + ".class"));
+        }
+        Path kept = Files.createFile(dir.resolve("pom.xml"));
+
+        DirectoryDeleter.Report report = DirectoryDeleter.start(target, count -> { }, done -> { }).join();
+
+        assertTrue(report.isComplete());
+        // 501 files and 6 directories
+        assertEquals(507, report.deleted());
+        assertFalse(Files.exists(target));
+        assertTrue(Files.exists(kept));
+    }
+
+    @Test
+    public void deletesLinksWithoutFollowingThem() throws Exception {
+        Path outside = Files.createDirectories(dir.resolve("outside"));
+        Files.createFile(outside.resolve("keep.txt"));
+        Path target = Files.createDirectories(dir.resolve("node_modules"));
+        try {
+            Files.createSymbolicLink(target.resolve("link"), outside);
+        } catch (UnsupportedOperationException | java.io.IOException e) {
+            // No symbolic links here
+            return;
+        }
+
+        DirectoryDeleter.Report report = DirectoryDeleter.start(target, count -> { }, done -> { }).join();
+
+        assertTrue(report.isComplete());
+        assertFalse(Files.exists(target));
+        assertTrue(Files.exists(outside.resolve("keep.txt")));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the batching directory watcher.
+ */
+public class DirectoryWatcherTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void reportsChangedEntriesInOneBatch() throws Exception {
+        BlockingQueue<Map<Path, DirectoryWatcher.Changes>> batches = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher watcher = new DirectoryWatcher(batches::add)) {
+            assertTrue(watcher.register(dir));
+            Files.writeString(dir.resolve("a.txt"), "a");
+            Files.createDirectory(dir.resolve("sub"));
+            Files.delete(dir.resolve("a.txt"));
+
+            Map<Path, DirectoryWatcher.Changes> batch = batches.poll(10, TimeUnit.SECONDS);
+            assertNotNull(batch);
+            DirectoryWatcher.Changes changes = batch.get(dir);
+            assertFalse(changes.isOverflow());
+            assertTrue(changes.getPaths().contains(dir.resolve("a.txt")));
+            assertTrue(changes.getPaths().contains(dir.resolve("sub")));
+        }
+    }
+
+    @Test
+    public void reportsBurstsAsOverflow() throws Exception {
+        BlockingQueue<Map<Path, DirectoryWatcher.Changes>> batches = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher watcher = new DirectoryWatcher(batches::add)) {
+            watcher.register(dir);
+            for (int i = 0; i < 1000; i++) {
+                Files.createFile(dir.resolve("file" + i));
+            }
+
+            Map<Path, DirectoryWatcher.Changes> batch = batches.poll(10, TimeUnit.SECONDS);
+            assertNotNull(batch);
+            assertTrue(batch.get(dir).isOverflow());
+            assertEquals(0, batch.get(dir).getPaths().size());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the background file reader behind the editor tabs.
+ */
+public class DocumentLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Collects what a load delivers; completes with null on success or the error.
+     */
+    private static final class Collector implements DocumentLoader.Listener {
+        final List<String> chunks = new ArrayList<>();
+        final CompletableFuture<IOException> done = new CompletableFuture<>();
+        LargeFileDocument document;
+
+        @Override
+        public void onText(String chunk) {
+            chunks.add(chunk);
+        }
+
+        @Override
+        public void onLargeDocument(LargeFileDocument document) {
+            this.document = document;
+        }
+
+        @Override
+        public void onLoaded() {
+            done.complete(null);
+        }
+
+        @Override
+        public void onFailed(IOException error) {
+            done.complete(error);
+        }
+    }
+
+    @Test
+    public void deliversTextInChunks() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 3_000_000) {
+            // Multi-byte characters end up split across chunk boundaries
+            text.append("int größe = 1; // ✓\r\n");
+        }
+        Path file = Files.writeString(dir.resolve("Big.java"), text);
+        Collector collector = new Collector();
+
+        DocumentLoader.start(file, Long.MAX_VALUE, collector, Runnable::run);
+
+        assertEquals(null, collector.done.get(10, TimeUnit.SECONDS));
+        assertTrue(collector.chunks.size() > 1);
+        assertEquals(text.toString(), String.join("", collector.chunks));
+    }
+
+    @Test
+    public void opensLargeFilesAsMappedDocuments() throws Exception {
+        Path file = Files.writeString(dir.resolve("huge.log"), "one\ntwo\n");
+        Collector collector = new Collector();
+
+        DocumentLoader.start(file, 4, collector, Runnable::run);
+
+        assertEquals(null, collector.done.get(10, TimeUnit.SECONDS));
+        assertNotNull(collector.document);
+        assertEquals(List.of(), collector.chunks);
+        collector.document.close();
+    }
+
+    @Test
+    public void dropsCallbacksOfCancelledLoads() throws Exception {
+        Path file = Files.writeString(dir.resolve("A.java"), "x".repeat(3_000_000));
+        Collector collector = new Collector();
+        BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+
+        DocumentLoader.Handle handle = DocumentLoader.start(file, Long.MAX_VALUE, collector, callbacks::add);
+        Runnable first = callbacks.poll(10, TimeUnit.SECONDS);
+        handle.cancel();
+        first.run();
+
+        assertEquals(List.of(), collector.chunks);
+        // The loader waited for the first chunk to be taken, so it queued nothing else
+        assertNull(callbacks.poll(200, TimeUnit.MILLISECONDS));
+        assertFalse(collector.done.isDone());
+    }
+
+    @Test
+    public void reportsInvalidUtf8() throws Exception {
+        Path file = Files.write(dir.resolve("binary.dat"), new byte[] {'a', (byte) 0xC3, (byte) 0x28});
+        Collector collector = new Collector();
+
+        DocumentLoader.start(file, Long.MAX_VALUE, collector, Runnable::run);
+
+        assertTrue(collector.done.get(10, TimeUnit.SECONDS) instanceof MalformedInputException);
+    }
+}
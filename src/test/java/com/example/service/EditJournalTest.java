@@ -0,0 +1,119 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the journal of unsaved edits.
+ */
+public class EditJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void replaysEditsOnTopOfTheFile() throws Exception {
+        Path file = Files.writeString(dir.resolve("App.java"), "class App {}");
+        EditJournal journal = new EditJournal(dir.resolve("journal"));
+        EditJournal.Recorder recorder = journal.open(file, "class App {}");
+
+        recorder.record(11, 0, "\n    int é;\n");
+        recorder.record(0, 5, "record");
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of(new EditJournal.Recovered(file.toAbsolutePath(), "record App {\n    int é;\n}")),
+                journal.recover());
+        recorder.discard();
+    }
+
+    @Test
+    public void ignoresATornAppend() throws Exception {
+        Path file = Files.writeString(dir.resolve("notes.txt"), "one");
+        EditJournal journal = new EditJournal(dir.resolve("journal"));
+        EditJournal.Recorder recorder = journal.open(file, "one");
+        recorder.record(3, 0, " two");
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+        recorder.record(7, 0, " three");
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+
+        Path journalFile;
+        try (var files = Files.list(dir.resolve("journal"))) {
+            journalFile = files.findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(journalFile);
+        Files.write(journalFile, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertEquals("one two", journal.recover().get(0).text());
+        recorder.discard();
+    }
+
+    @Test
+    public void checkpointsAndDropsJournalsOfSavedOrChangedFiles() throws Exception {
+        Path file = Files.writeString(dir.resolve("Main.java"), "a");
+        EditJournal journal = new EditJournal(dir.resolve("journal"));
+        EditJournal.Recorder recorder = journal.open(file, "a");
+
+        recorder.record(1, 0, "b");
+        recorder.checkpoint("ab");
+        recorder.record(2, 0, "c");
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+        assertEquals("abc", journal.recover().get(0).text());
+
+        // Saved: nothing left to recover
+        recorder.rebase("abc");
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+        assertTrue(journal.recover().isEmpty());
+
+        // Changed on disk after the edit was journaled
+        Files.writeString(file, "abc");
+        recorder.record(3, 0, "d");
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+        Files.writeString(file, "xyz");
+        assertTrue(journal.recover().isEmpty());
+        try (var files = Files.list(dir.resolve("journal"))) {
+            assertFalse(files.findAny().isPresent());
+        }
+        recorder.discard();
+    }
+
+    @Test
+    public void backsOffAfterAFailedCheckpointUntilSaved() throws Exception {
+        Path file = Files.writeString(dir.resolve("Main.java"), "a");
+        // A file where the journal directory should be, so no journal can be written
+        Path blocked = Files.writeString(dir.resolve("journal"), "");
+        EditJournal.Recorder recorder = new EditJournal(blocked).open(file, "a");
+
+        recorder.record(1, 0, "b");
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+        assertTrue(recorder.needsCheckpoint());
+
+        // One checkpoint at a time
+        recorder.checkpoint("ab");
+        assertFalse(recorder.needsCheckpoint());
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+
+        // It failed as well: no more checkpoints until the document is saved
+        recorder.record(2, 0, "c");
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+        assertFalse(recorder.needsCheckpoint());
+
+        Files.delete(blocked);
+        Files.writeString(file, "abc");
+        recorder.rebase("abc");
+        recorder.record(3, 0, "d");
+        assertTrue(EditJournal.awaitPending(5, TimeUnit.SECONDS));
+        assertFalse(recorder.needsCheckpoint());
+        assertEquals("abcd", new EditJournal(blocked).recover().get(0).text());
+        recorder.discard();
+    }
+}
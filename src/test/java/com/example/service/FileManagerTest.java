@@ -0,0 +1,59 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Unit tests for the directory listing behind the lazy file tree.
+ */
+public class FileManagerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void listsDirectoriesFirstSortedByName() throws Exception {
+        Files.createFile(dir.resolve("b.txt"));
+        Files.createFile(dir.resolve("A.java"));
+        Files.createDirectory(dir.resolve("src"));
+        Files.createDirectory(dir.resolve("Docs"));
+
+        List<FileManager.DirectoryEntry> entries = FileManager.listDirectory(dir);
+
+        assertEquals(List.of("Docs", "src", "A.java", "b.txt"),
+                entries.stream().map(entry -> entry.file().getName()).toList());
+        assertEquals(List.of(true, true, false, false),
+                entries.stream().map(FileManager.DirectoryEntry::directory).toList());
+    }
+
+    @Test
+    public void recordsMetadataWhileListing() throws Exception {
+        Files.writeString(dir.resolve("Main.java"), "class Main {}");
+        Files.createFile(dir.resolve(".gitignore"));
+        Files.createDirectory(dir.resolve("src"));
+        Files.createFile(dir.resolve("src").resolve("notes.md"));
+        FileMetadataCache cache = new FileMetadataCache();
+
+        FileManager.listDirectory(dir, null, cache);
+        FileManager.listDirectory(dir.resolve("src"), null, cache);
+
+        FileMetadataCache.Metadata main = cache.get(dir.resolve("Main.java").toFile());
+        assertEquals(FileMetadataCache.Kind.JAVA, main.kind());
+        assertEquals(13, main.size());
+        assertEquals(Files.getLastModifiedTime(dir.resolve("Main.java")).toMillis(), main.lastModified());
+        assertEquals(FileMetadataCache.Kind.GIT, cache.get(dir.resolve(".gitignore").toFile()).kind());
+        assertEquals(FileMetadataCache.Kind.DIRECTORY, cache.get(dir.resolve("src").toFile()).kind());
+        assertEquals(4, cache.size());
+
+        cache.removeSubtree(dir.resolve("src").toFile());
+        assertNull(cache.get(dir.resolve("src").resolve("notes.md").toFile()));
+        assertEquals(2, cache.size());
+    }
+}
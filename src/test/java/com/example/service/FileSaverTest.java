@@ -0,0 +1,63 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Unit tests for the background save pipeline.
+ */
+public class FileSaverTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void writesThroughTemporaryFile() throws Exception {
+        Path file = Files.writeString(dir.resolve("App.java"), "class App {}");
+        FileSaver saver = new FileSaver();
+
+        FileSaver.Result result = saver.save(file, "class App { int é; }").join();
+
+        assertEquals(FileSaver.Status.WRITTEN, result.status());
+        assertEquals("class App { int é; }", Files.readString(file));
+        assertFalse(Files.exists(dir.resolve(".App.java.jwrite-save")));
+    }
+
+    @Test
+    public void skipsUnchangedContentUnlessChangedElsewhere() throws Exception {
+        Path file = Files.writeString(dir.resolve("notes.txt"), "one");
+        FileSaver saver = new FileSaver();
+        saver.track(file, "one");
+
+        assertEquals(FileSaver.Status.UNCHANGED, saver.save(file, "one").join().status());
+        assertEquals(FileSaver.Status.WRITTEN, saver.save(file, "two").join().status());
+        assertEquals(FileSaver.Status.UNCHANGED, saver.save(file, "two").join().status());
+
+        Files.writeString(file, "changed elsewhere, longer");
+        assertEquals(FileSaver.Status.WRITTEN, saver.save(file, "two").join().status());
+        assertEquals("two", Files.readString(file));
+    }
+
+    @Test
+    public void coalescesQueuedSaves() throws Exception {
+        Path file = dir.resolve("New.java");
+        FileSaver saver = new FileSaver();
+
+        CompletableFuture<FileSaver.Result> first = saver.save(file, "a");
+        CompletableFuture<FileSaver.Result> second = saver.save(file, "ab");
+        CompletableFuture<FileSaver.Result> third = saver.save(file, "abc");
+
+        assertEquals(FileSaver.Status.WRITTEN, third.join().status());
+        // The later saves were written together, whether or not the first had started
+        assertEquals(second.join(), third.join());
+        first.join();
+        assertEquals("abc", Files.readString(file));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Unit tests for the memory-mapped large file document and its edit overlay.
+ */
+public class LargeFileDocumentTest {
+
+    @TempDir
+    Path dir;
+
+    private static String numberedLines(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("line").append(i).append('\n');
+        }
+        return sb.append("last").toString();
+    }
+
+    @Test
+    public void indexesAndReadsLines() throws Exception {
+        Path file = dir.resolve("big.txt");
+        Files.writeString(file, numberedLines(100));
+        try (LargeFileDocument document = LargeFileDocument.open(file)) {
+            assertEquals(101, document.getLineCount());
+            assertEquals("line10\nline11\n", document.readLines(10, 12));
+            assertEquals("last", document.readLines(100, 101));
+        }
+    }
+
+    @Test
+    public void keepsEditsAsOverlayUntilSaved() throws Exception {
+        Path file = dir.resolve("big.txt");
+        String original = numberedLines(100);
+        Files.writeString(file, original);
+        try (LargeFileDocument document = LargeFileDocument.open(file)) {
+            String window = document.readLines(10, 20);
+            document.updateLines(10, 20, window.replace("line12\n", "line12\nadded\n"));
+            assertTrue(document.isModified());
+            assertEquals(102, document.getVirtualLineCount());
+            assertEquals(21, document.virtualLineOf(20));
+            assertEquals(original, Files.readString(file));
+
+            // A later window overlapping the patch is widened to contain it
+            int start = document.alignStart(11);
+            int end = document.alignEnd(30);
+            document.updateLines(start, end, document.readLines(start, end).replace("line25\n", ""));
+
+            document.save(file);
+            assertFalse(document.isModified());
+            assertEquals(original.replace("line12\n", "line12\nadded\n").replace("line25\n", ""),
+                    Files.readString(file));
+            assertEquals(101, document.getLineCount());
+        }
+    }
+
+    @Test
+    public void editsEmptyFile() throws Exception {
+        Path file = dir.resolve("empty.txt");
+        Files.writeString(file, "");
+        try (LargeFileDocument document = LargeFileDocument.open(file)) {
+            assertEquals(1, document.getLineCount());
+            document.updateLines(0, 1, "hello\nworld");
+            document.save(file);
+        }
+        assertEquals("hello\nworld", Files.readString(file));
+    }
+
+    @Test
+    public void failedSaveKeepsDocumentUsable() throws Exception {
+        Path file = dir.resolve("big.txt");
+        String original = numberedLines(100);
+        Files.writeString(file, original);
+        // A non-empty directory cannot be replaced by the saved file
+        Path blocked = Files.createDirectory(dir.resolve("blocked"));
+        Files.writeString(blocked.resolve("inside.txt"), "x");
+        try (LargeFileDocument document = LargeFileDocument.open(file)) {
+            document.updateLines(0, 1, "first\n");
+
+            assertThrows(IOException.class, () -> document.save(blocked));
+            assertFalse(Files.exists(dir.resolve(".blocked.jwrite-save")));
+            assertTrue(document.isModified());
+            assertEquals("line1\n", document.readLines(1, 2));
+
+            document.save(file);
+        }
+        assertEquals(original.replaceFirst("line0\n", "first\n"), Files.readString(file));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import javafx.application.Platform;
+import org.fxmisc.richtext.CodeArea;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the windowed large file editor. These need the JavaFX
+ * toolkit and are skipped where it cannot start, e.g. without a display.
+ */
+public class LargeFileEditorTest {
+
+    private static boolean fxAvailable;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    public static void startToolkit() {
+        try {
+            Platform.startup(() -> { });
+            fxAvailable = true;
+        } catch (IllegalStateException e) {
+            // Already started
+            fxAvailable = true;
+        } catch (RuntimeException | UnsatisfiedLinkError e) {
+            fxAvailable = false;
+        }
+    }
+
+    private static <T> T onFxThread(Callable<T> task) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result.get(30, TimeUnit.SECONDS);
+    }
+
+    private static String numberedLines(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("line").append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void savingTwiceKeepsEveryEdit() throws Exception {
+        assumeTrue(fxAvailable, "JavaFX cannot start here");
+        Path file = dir.resolve("big.txt");
+        // More lines than one window holds, so the window bounds do not move with the line count
+        Files.writeString(file, numberedLines(20_000));
+        LargeFileDocument document = LargeFileDocument.open(file);
+        FileSaver saver = new FileSaver();
+        try {
+            LargeFileEditor editor = onFxThread(() -> new LargeFileEditor(document, new CodeArea(), Integer.MAX_VALUE));
+            onFxThread(() -> {
+                editor.getCodeArea().insertText(0, "a\nb\nc\n");
+                return editor.save(file, saver);
+            }).get(30, TimeUnit.SECONDS);
+            onFxThread(() -> {
+                editor.getCodeArea().insertText(0, "x");
+                return editor.save(file, saver);
+            }).get(30, TimeUnit.SECONDS);
+        } finally {
+            document.close();
+        }
+
+        assertEquals("xa\nb\nc\n" + numberedLines(20_000), Files.readString(file));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for running programs in the warm runner JVM.
+ */
+public class ProgramRunnerTest {
+
+    @TempDir
+    Path dir;
+
+    private final CompileService compiler = new CompileService();
+
+    /**
+     * Output and exit of one run.
+     */
+    private static final class Capture implements ProgramRunner.Listener {
+        private final StringBuilder out = new StringBuilder();
+        private final StringBuilder err = new StringBuilder();
+        private final CompletableFuture<ProgramRunner.Exit> exit = new CompletableFuture<>();
+
+        @Override
+        public synchronized void onOutput(String text, boolean error) {
+            (error ? err : out).append(text);
+        }
+
+        @Override
+        public void onExit(ProgramRunner.Exit exit) {
+            this.exit.complete(exit);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return out.toString();
+        }
+
+        ProgramRunner.Exit await() throws Exception {
+            return exit.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private Capture run(ProgramRunner runner, String source) throws Exception {
+        Capture capture = new Capture();
+        start(runner, source, capture);
+        capture.await();
+        return capture;
+    }
+
+    private ProgramRunner.Run start(ProgramRunner runner, String source, Capture capture) throws Exception {
+        CompileService.Result result = compiler.compile(dir.resolve("Main.java"), source, List.of()).join();
+        assertTrue(result.success(), result.problems().toString());
+        return runner.run(dir, "Main", result.classes(), capture);
+    }
+
+    @Test
+    public void keepsTheWorkerAndSeparatesStreams() throws Exception {
+        try (ProgramRunner runner = new ProgramRunner()) {
+            Capture first = run(runner, "public class Main { static int runs;"
+                    + " public static void main(String[] a) { System.out.println(\"out é \" + ++runs);"
+                    + " System.err.println(\"err\"); } }");
+            long pid = runner.workerPid();
+            Capture second = run(runner, "public class Main { static int runs;"
+                    + " public static void main(String[] a) { System.out.println(\"out é \" + ++runs); } }");
+
+            assertEquals("out é 1" + System.lineSeparator(), first.out.toString());
+            assertEquals("err" + System.lineSeparator(), first.err.toString());
+            assertNull(first.await().recycleReason());
+            // Same JVM, but a fresh class loader: static state starts over
+            assertEquals("out é 1" + System.lineSeparator(), second.out.toString());
+            assertEquals(pid, runner.workerPid());
+        }
+    }
+
+    @Test
+    public void recyclesAfterExitOrLeakedThreads() throws Exception {
+        try (ProgramRunner runner = new ProgramRunner()) {
+            Capture exited = run(runner, "public class Main { public static void main(String[] a) {"
+                    + " System.out.println(\"bye\"); System.exit(3); } }");
+            assertEquals(3, exited.await().status());
+            assertEquals("bye" + System.lineSeparator(), exited.out.toString());
+            long pid = runner.workerPid();
+
+            Capture leaked = run(runner, "public class Main { public static void main(String[] a) {"
+                    + " Thread t = new Thread(() -> { while (true) { try { Thread.sleep(1000); }"
+                    + " catch (InterruptedException e) { } } }); t.setDaemon(true); t.start(); } }");
+            assertEquals(0, leaked.await().status());
+            assertTrue(leaked.await().recycleReason() != null);
+            assertNotEquals(pid, runner.workerPid());
+
+            Capture thrown = run(runner, "public class Main { public static void main(String[] a) {"
+                    + " throw new IllegalStateException(\"boom\"); } }");
+            assertEquals(1, thrown.await().status());
+            assertTrue(thrown.err.toString().startsWith("Exception in thread \"main\" java.lang.IllegalStateException: boom"));
+        }
+    }
+
+    @Test
+    public void sendsInputAndShowsPromptsBeforeReading() throws Exception {
+        try (ProgramRunner runner = new ProgramRunner()) {
+            Capture capture = new Capture();
+            ProgramRunner.Run run = start(runner, "import java.io.*; public class Main {"
+                    + " public static void main(String[] a) throws IOException { System.out.print(\"name? \");"
+                    + " BufferedReader in = new BufferedReader(new InputStreamReader(System.in));"
+                    + " for (String line; (line = in.readLine()) != null; ) System.out.println(line.toUpperCase()); } }",
+                    capture);
+
+            // The prompt has no newline, but is sent before the program waits for input
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!capture.toString().equals("name? ") && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("name? ", capture.toString());
+            assertTrue(run.input("ada\nbob\n"));
+            run.closeInput();
+
+            assertEquals(0, capture.await().status());
+            String n = System.lineSeparator();
+            assertEquals("name? ADA" + n + "BOB" + n, capture.toString());
+            assertFalse(run.input("late\n"));
+        }
+    }
+
+    @Test
+    public void deliversLargeOutputWhole() throws Exception {
+        try (ProgramRunner runner = new ProgramRunner()) {
+            Capture capture = run(runner, "public class Main { public static void main(String[] a) {"
+                    + " for (int i = 0; i < 200000; i++) System.out.println(\"line \" + i); } }");
+
+            String[] lines = capture.toString().split(System.lineSeparator());
+            assertEquals(200000, lines.length);
+            assertEquals("line 199999", lines[lines.length - 1]);
+        }
+    }
+
+    @Test
+    public void prestartLeavesARunningProgramAlone() throws Exception {
+        try (ProgramRunner runner = new ProgramRunner()) {
+            Capture capture = new Capture();
+            ProgramRunner.Run run = start(runner, "public class Main { public static void main(String[] a)"
+                    + " throws Exception { System.out.println(\"started\"); Thread.sleep(60_000); } }", capture);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (capture.toString().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            long pid = runner.workerPid();
+
+            runner.prestart(dir.resolve("other"));
+            assertEquals(pid, runner.workerPid());
+            assertFalse(run.isEnded());
+
+            run.stop();
+            assertEquals(-1, capture.await().status());
+        }
+    }
+}
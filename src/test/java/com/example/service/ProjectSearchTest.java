@@ -0,0 +1,92 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.util.IgnoreFilter;
+import com.example.util.TextSearch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unit tests for Find in Files.
+ */
+public class ProjectSearchTest {
+
+    @TempDir
+    Path dir;
+
+    private IgnoreFilter filter() {
+        return new IgnoreFilter(dir, IgnoreFilter.DEFAULT_EXCLUDES);
+    }
+
+    private ProjectSearch.Summary search(String query, Map<Path, List<ProjectSearch.Match>> results) {
+        ProjectSearch.Handle handle = ProjectSearch.start(filter(), new TextSearch(query, true, false, false),
+                fileMatches -> results.put(dir.relativize(fileMatches.file()), fileMatches.matches()),
+                summary -> { });
+        return handle.join();
+    }
+
+    @Test
+    public void findsMatchesInNestedFiles() throws Exception {
+        Files.createDirectories(dir.resolve("src/main"));
+        Files.writeString(dir.resolve("src/main/App.java"), "class App {\r\n    int count = 0; // count\r\n}\r\n");
+        Files.writeString(dir.resolve("notes.txt"), "nothing here");
+        // Large enough to be memory-mapped instead of read into the pooled buffer
+        Files.writeString(dir.resolve("big.txt"), "x".repeat(100_000) + "\ncount");
+
+        Map<Path, List<ProjectSearch.Match>> results = new ConcurrentHashMap<>();
+        ProjectSearch.Summary summary = search("count", results);
+
+        assertEquals(3, summary.filesSearched());
+        assertEquals(3, summary.matches());
+        List<ProjectSearch.Match> matches = results.get(Path.of("src/main/App.java"));
+        assertEquals(2, matches.size());
+        assertEquals(1, matches.get(0).line());
+        assertEquals(8, matches.get(0).column());
+        assertEquals(5, matches.get(0).length());
+        assertEquals("    int count = 0; // count", matches.get(0).preview());
+        assertEquals(22, matches.get(1).column());
+        assertEquals(List.of(1), results.get(Path.of("big.txt")).stream().map(ProjectSearch.Match::line).toList());
+    }
+
+    @Test
+    public void skipsBinaryAndIgnoredFiles() throws Exception {
+        Files.createDirectories(dir.resolve(".git"));
+        Files.writeString(dir.resolve(".git/config"), "needle");
+        Files.createDirectories(dir.resolve("logs"));
+        Files.writeString(dir.resolve("logs/run.log"), "needle");
+        Files.writeString(dir.resolve(".gitignore"), "*.log");
+        Files.write(dir.resolve("data.bin"), new byte[] {'n', 'e', 'e', 'd', 'l', 'e', 0, 1, 2});
+        Files.writeString(dir.resolve("Main.java"), "// needle");
+
+        Map<Path, List<ProjectSearch.Match>> results = new ConcurrentHashMap<>();
+        ProjectSearch.Summary summary = search("needle", results);
+
+        assertEquals(Map.of(Path.of("Main.java"), results.get(Path.of("Main.java"))), results);
+        assertEquals(2, summary.filesSearched());
+        assertEquals(1, summary.filesSkipped());
+        assertFalse(summary.cancelled());
+    }
+
+    @Test
+    public void stopsWhenCancelled() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            Files.writeString(dir.resolve("file" + i + ".txt"), "needle");
+        }
+        ProjectSearch.Handle handle = ProjectSearch.start(filter(), new TextSearch("needle", true, false, false),
+                fileMatches -> { }, summary -> { });
+        handle.cancel();
+        ProjectSearch.Summary summary = handle.join();
+
+        assertTrue(summary.cancelled());
+        assertTrue(handle.isDone());
+    }
+}
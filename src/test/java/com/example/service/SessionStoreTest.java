@@ -0,0 +1,69 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.example.util.TokenStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Unit tests for the binary session file.
+ */
+public class SessionStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void restoresTabsAndTokensOfUnchangedFiles() throws Exception {
+        String text = "class App {\n    /* note\n    */ int x = 1;\n}";
+        Path source = Files.writeString(dir.resolve("App.java"), text);
+        Path other = Files.writeString(dir.resolve("Other.java"), "class Other {}");
+        TokenStore tokens = TokenStore.lex(List.of(text.split("\n")));
+        SessionStore store = new SessionStore(dir.resolve("state").resolve("session.bin"));
+
+        store.write(new SessionStore.Snapshot(dir, List.of(dir.resolve("src")),
+                List.of(new SessionStore.TabState(source, 3, 7, 120.5), new SessionStore.TabState(other, 0, 0, 0)),
+                1, List.of(new SessionStore.DocumentTokens(source, text, tokens)), List.of()));
+        SessionStore.Session session = store.load();
+
+        assertNotNull(session);
+        assertEquals(dir, session.getRoot());
+        assertEquals(List.of(dir.resolve("src")), session.getExpanded());
+        assertEquals(new SessionStore.TabState(source, 3, 7, 120.5), session.getTabs().get(0));
+        assertEquals(1, session.getSelectedTab());
+        TokenStore restored = session.tokens(source, text);
+        assertNotNull(restored);
+        assertEquals(tokens.lineCount(), restored.lineCount());
+        for (int line = 0; line < tokens.lineCount(); line++) {
+            assertEquals(tokens.entryState(line), restored.entryState(line));
+            assertArrayEquals(tokens.get(line), restored.get(line));
+        }
+        // Other text, or a file without saved tokens
+        assertNull(session.tokens(source, text + " "));
+        assertNull(session.tokens(other, "class Other {}"));
+
+        // Carried tokens survive a session in which the file was not opened
+        store.write(new SessionStore.Snapshot(null, List.of(), List.of(), -1, List.of(),
+                List.of(session.carry(source))));
+        assertNotNull(store.load().tokens(source, text));
+
+        Files.writeString(source, text + "\n");
+        assertNull(store.load().tokens(source, text));
+    }
+
+    @Test
+    public void ignoresMissingOrCorruptFiles() throws Exception {
+        Path file = dir.resolve("session.bin");
+        assertNull(new SessionStore(file).load());
+        Files.write(file, new byte[] {1, 2, 3});
+        assertNull(new SessionStore(file).load());
+    }
+}
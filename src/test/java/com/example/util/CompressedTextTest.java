@@ -0,0 +1,28 @@
+package com.example.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the compressed text of hibernated tabs.
+ */
+public class CompressedTextTest {
+
+    @Test
+    public void roundTripsText() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            source.append("    private int field").append(i).append(" = ").append(i).append("; // größe ✓\r\n");
+        }
+        String text = source.toString();
+
+        CompressedText compressed = CompressedText.of(text);
+
+        assertEquals(text, compressed.toString());
+        assertTrue(compressed.size() < text.length() / 4);
+        assertEquals("", CompressedText.of("").toString());
+        assertEquals("😀 surrogates", CompressedText.of("😀 surrogates").toString());
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for the console's line ring buffer.
+ */
+public class ConsoleBufferTest {
+
+    @Test
+    public void joinsChunksIntoLinesAndKeepsStreamsApart() {
+        ConsoleBuffer buffer = new ConsoleBuffer(10, 100);
+
+        buffer.append("Hel", false);
+        buffer.append("lo\r\nwor", false);
+        buffer.append("ld\n\n", false);
+        buffer.append("Enter a number: ", false);
+        buffer.append("bad input\n", true);
+        // A line end split between two chunks
+        buffer.append("split\r", false);
+        buffer.append("\nnext\n", false);
+
+        List<ConsoleBuffer.Line> lines = buffer.linesFrom(0);
+        assertEquals(List.of(
+                new ConsoleBuffer.Line("Hello", false),
+                new ConsoleBuffer.Line("world", false),
+                new ConsoleBuffer.Line("", false),
+                new ConsoleBuffer.Line("Enter a number: ", false),
+                new ConsoleBuffer.Line("bad input", true),
+                new ConsoleBuffer.Line("split", false),
+                new ConsoleBuffer.Line("next", false)), lines);
+    }
+
+    @Test
+    public void dropsOldestLinesAndWrapsLongOnes() {
+        ConsoleBuffer buffer = new ConsoleBuffer(3, 4);
+
+        for (int i = 0; i < 1000; i++) {
+            buffer.append("line " + i + "\n", false);
+        }
+        buffer.append("abcdefghij", false);
+
+        assertEquals(2003, buffer.endLine());
+        assertEquals(2000, buffer.firstLine());
+        assertEquals(List.of("abcd", "efgh", "ij"),
+                buffer.linesFrom(0).stream().map(ConsoleBuffer.Line::text).toList());
+
+        // The open line is only grown up to the limit
+        buffer.append("klmn", false);
+        assertEquals(List.of("ijkl", "mn"),
+                buffer.linesFrom(2002).stream().map(ConsoleBuffer.Line::text).toList());
+    }
+
+    @Test
+    public void clearKeepsNumbering() {
+        ConsoleBuffer buffer = new ConsoleBuffer(10, 100);
+        buffer.append("one\ntwo", false);
+
+        buffer.clear();
+        assertTrue(buffer.linesFrom(0).isEmpty());
+        assertEquals(2, buffer.firstLine());
+
+        // The open line was dropped, so this starts a new one
+        buffer.append("three", false);
+        assertEquals(3, buffer.endLine());
+        assertFalse(buffer.linesFrom(0).get(0).error());
+        assertEquals("three", buffer.linesFrom(0).get(0).text());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Unit tests for the exclude list and .gitignore handling.
+ */
+public class IgnoreFilterTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    public void appliesDefaultExcludes() {
+        IgnoreFilter filter = new IgnoreFilter(root, IgnoreFilter.DEFAULT_EXCLUDES);
+
+        assertTrue(filter.isIgnored(root.resolve(".git"), true));
+        assertTrue(filter.isIgnored(root.resolve("web/node_modules"), true));
+        assertTrue(filter.isIgnored(root.resolve("target"), true));
+        // Directory-only patterns do not hide files of the same name
+        assertFalse(filter.isIgnored(root.resolve("target"), false));
+        assertFalse(filter.isIgnored(root.resolve("src"), true));
+        assertFalse(filter.isIgnored(root.resolve(".gitignore"), false));
+    }
+
+    @Test
+    public void honorsNestedGitignoreFiles() throws Exception {
+        Files.writeString(root.resolve(".gitignore"), """
+                # build output
+                *.class
+                /dist
+                logs/**/*.log
+                docs/*.tmp
+                """);
+        Files.createDirectories(root.resolve("app"));
+        Files.writeString(root.resolve("app/.gitignore"), """
+                generated/
+                !Keep.class
+                """);
+        IgnoreFilter filter = new IgnoreFilter(root, List.of());
+
+        assertTrue(filter.isIgnored(root.resolve("Main.class"), false));
+        assertTrue(filter.isIgnored(root.resolve("app/src/Main.class"), false));
+        assertFalse(filter.isIgnored(root.resolve("app/Keep.class"), false));
+        assertTrue(filter.isIgnored(root.resolve("dist"), true));
+        assertFalse(filter.isIgnored(root.resolve("app/dist"), true));
+        assertTrue(filter.isIgnored(root.resolve("logs/a/b/run.log"), false));
+        assertTrue(filter.isIgnored(root.resolve("logs/run.log"), false));
+        assertTrue(filter.isIgnored(root.resolve("docs/notes.tmp"), false));
+        assertFalse(filter.isIgnored(root.resolve("docs/sub/notes.tmp"), false));
+        assertTrue(filter.isIgnored(root.resolve("app/generated"), true));
+        assertFalse(filter.isIgnored(root.resolve("generated"), true));
+    }
+
+    @Test
+    public void picksUpChangedGitignoreAfterInvalidate() throws Exception {
+        IgnoreFilter filter = new IgnoreFilter(root, List.of());
+        assertFalse(filter.isIgnored(root.resolve("a.tmp"), false));
+
+        Files.writeString(root.resolve(".gitignore"), "*.tmp\n");
+        filter.invalidate(root);
+        assertTrue(filter.isIgnored(root.resolve("a.tmp"), false));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for the token-based Java formatter.
+ */
+public class JavaFormatterTest {
+
+    private static String format(String code) {
+        List<String> lines = List.of(code.split("\n", -1));
+        return JavaFormatter.format(lines, TokenStore.lex(lines));
+    }
+
+    @Test
+    public void indentsByBrackets() {
+        assertEquals("class A {\n    void f() {\n        g(1,\n            2);\n    }\n}\n",
+                format("class A {\nvoid f() {\n  g(1,\n2);\n}\n   }\n\n"));
+    }
+
+    @Test
+    public void ignoresBracketsInStringsAndComments() {
+        assertEquals("class A {\n    // {\n    String s = \"{(\";\n    /* {\n     * (\n     */\n}\n",
+                format("class A {\n// {\nString s = \"{(\";\n/* {\n* (\n*/\n}"));
+    }
+
+    @Test
+    public void keepsTextBlocksVerbatim() {
+        assertEquals("class A {\n    String s = \"\"\"\n  {\n\"\"\";\n}\n",
+                format("class A {\nString s = \"\"\"\n  {\n\"\"\";\n}"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the hand-written Java lexer.
+ */
+public class JavaLexerTest {
+
+    private static List<String> lex(String text, int state) {
+        TokenBuffer tokens = new TokenBuffer();
+        JavaLexer.lex(text, 0, text.length(), state, tokens);
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            result.add(text.substring(tokens.start(i), tokens.end(i)) + ":" + tokens.kind(i));
+        }
+        return result;
+    }
+
+    @Test
+    public void keywordsAreCaseSensitive() {
+        assertEquals(List.of("class:" + TokenKind.KEYWORD), lex("class", JavaLexer.STATE_CODE));
+        assertEquals(List.of("Class:" + TokenKind.IDENTIFIER), lex("Class", JavaLexer.STATE_CODE));
+        assertEquals(List.of("PUBLIC:" + TokenKind.CONSTANT), lex("PUBLIC", JavaLexer.STATE_CODE));
+    }
+
+    @Test
+    public void classifiesIdentifiers() {
+        assertEquals(List.of(
+                "@Override:" + TokenKind.ANNOTATION,
+                "String:" + TokenKind.TYPE,
+                "run:" + TokenKind.FUNCTION,
+                "(:" + TokenKind.PAREN,
+                "count:" + TokenKind.VARIABLE,
+                "):" + TokenKind.PAREN,
+                ";:" + TokenKind.SEMICOLON),
+                lex("@Override String run (count);", JavaLexer.STATE_CODE));
+    }
+
+    @Test
+    public void lexesLiteralsAndComments() {
+        assertEquals(List.of(
+                "\"a\\\"b\":" + TokenKind.STRING,
+                "'\\n':" + TokenKind.STRING,
+                "0x1F:" + TokenKind.NUMBER,
+                "+=:" + TokenKind.OPERATOR,
+                "3.5e10f:" + TokenKind.NUMBER,
+                "// done:" + TokenKind.COMMENT),
+                lex("\"a\\\"b\" '\\n' 0x1F += 3.5e10f // done", JavaLexer.STATE_CODE));
+    }
+
+    @Test
+    public void carriesMultiLineStateAcrossCalls() {
+        TokenBuffer tokens = new TokenBuffer();
+        assertEquals(JavaLexer.STATE_BLOCK_COMMENT, JavaLexer.lex("int x; /* open", 0, 14, JavaLexer.STATE_CODE, tokens));
+        assertEquals(JavaLexer.STATE_BLOCK_COMMENT, JavaLexer.lex("still open", 0, 10, JavaLexer.STATE_BLOCK_COMMENT, tokens));
+        assertEquals(List.of("done */:" + TokenKind.COMMENT, "x:" + TokenKind.VARIABLE),
+                lex("done */ x", JavaLexer.STATE_BLOCK_COMMENT));
+
+        assertEquals(JavaLexer.STATE_TEXT_BLOCK, JavaLexer.lex("s = \"\"\"", 0, 7, JavaLexer.STATE_CODE, tokens));
+        assertEquals(JavaLexer.STATE_CODE, JavaLexer.lex("end\"\"\";", 0, 7, JavaLexer.STATE_TEXT_BLOCK, tokens));
+    }
+
+    @Test
+    public void lookupUsesPerfectHashTable() {
+        assertEquals(JavaKeywords.KEYWORD, JavaKeywords.lookup("synchronized", 0, 12));
+        assertEquals(JavaKeywords.TYPE, JavaKeywords.lookup("xCompletableFuture", 1, 17));
+        assertEquals(JavaKeywords.ANNOTATION, JavaKeywords.lookup("FunctionalInterface", 0, 19));
+        assertEquals(0, JavaKeywords.lookup("Synchronized", 0, 12));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for the fuzzy path index.
+ */
+public class PathIndexTest {
+
+    private static PathIndex index(String... paths) {
+        PathIndex index = new PathIndex();
+        for (String path : paths) {
+            index.add(path);
+        }
+        return index;
+    }
+
+    @Test
+    public void ranksFileNameMatchesFirst() {
+        PathIndex index = index(
+                "src/main/java/com/example/MainController.java",
+                "src/main/java/com/example/service/EditorManager.java",
+                "src/main/resources/com/example/MainView.fxml",
+                "docs/my/controllers/notes.txt");
+
+        assertEquals(List.of("src/main/java/com/example/MainController.java",
+                "docs/my/controllers/notes.txt"), index.search("mctrl", 10));
+        assertEquals("src/main/java/com/example/service/EditorManager.java", index.search("EdMan", 10).get(0));
+        assertEquals("src/main/resources/com/example/MainView.fxml", index.search("main view", 1).get(0));
+        assertEquals(List.of(), index.search("xyz", 10));
+    }
+
+    @Test
+    public void keepsTopResultsInOrder() {
+        PathIndex index = new PathIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.add("pkg" + i + "/Other" + i + ".java");
+        }
+        index.add("App.java");
+        index.add("src/App.java");
+
+        List<String> results = index.search("app", 3);
+        assertEquals(List.of("App.java", "src/App.java"), results);
+        assertEquals(5, index.search("other", 5).size());
+    }
+
+    @Test
+    public void followsRenamesAndDeletes() {
+        PathIndex index = index("src/a/One.java", "src/a/Two.java", "src/ab/Three.java", "README.md");
+
+        index.rename("src/a", "src/b");
+        assertTrue(index.contains("src/b/One.java"));
+        assertFalse(index.contains("src/a/Two.java"));
+        assertTrue(index.contains("src/ab/Three.java"));
+
+        assertEquals(2, index.remove("src/b"));
+        assertEquals(1, index.remove("README.md"));
+        assertEquals(1, index.size());
+        assertEquals(List.of("src/ab/Three.java"), index.search("three", 10));
+    }
+
+    @Test
+    public void narrowsPreviousResultsWhileTyping() {
+        PathIndex index = index("a/Alpha.java", "b/Beta.java", "a/Alphabet.java");
+
+        assertEquals(3, index.search("a", 10).size());
+        assertEquals(List.of("a/Alpha.java", "a/Alphabet.java"), index.search("alp", 10));
+        assertEquals(List.of("a/Alphabet.java"), index.search("alphab", 10));
+        // A query that does not extend the previous one starts over
+        assertEquals(List.of("b/Beta.java", "a/Alphabet.java"), index.search("bet", 10));
+        index.add("c/Better.java");
+        assertEquals(List.of("c/Better.java"), index.search("bett", 10));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the find query modes.
+ */
+public class TextSearchTest {
+
+    private static List<String> findAll(TextSearch search, String text) {
+        List<String> matches = new ArrayList<>();
+        int pos = 0;
+        while (search.find(text, pos)) {
+            matches.add(search.start() + ":" + text.substring(search.start(), search.end()));
+            pos = search.end();
+        }
+        return matches;
+    }
+
+    @Test
+    public void findsLiteralMatches() {
+        String text = "Foo foo food FOO";
+        assertEquals(List.of("4:foo", "8:foo"), findAll(new TextSearch("foo", true, false, false), text));
+        assertEquals(List.of("0:Foo", "4:foo", "8:foo", "13:FOO"),
+                findAll(new TextSearch("foo", false, false, false), text));
+        assertEquals(List.of("0:Foo", "4:foo", "13:FOO"), findAll(new TextSearch("foo", false, true, false), text));
+    }
+
+    @Test
+    public void findsRegexMatches() {
+        String text = "int a = 1;\nint bb = 22;";
+        assertEquals(List.of("8:1", "20:22"), findAll(new TextSearch("\\d+", true, false, true), text));
+        assertEquals(List.of("0:int", "11:int"), findAll(new TextSearch("^INT", false, false, true), text));
+        // Empty matches are skipped instead of looping
+        assertEquals(List.of("4:a", "15:bb"), findAll(new TextSearch("[ab]*", true, true, true), text));
+    }
+
+    @Test
+    public void expandsRegexReplacements() {
+        TextSearch search = new TextSearch("(\\w+) = (?<value>\\d+)", true, false, true);
+        search.find("int a = 1;", 0);
+        assertEquals("1 = a $ ${value}", search.replacement("${value} = $1 \\$ \\${value}"));
+
+        TextSearch literal = new TextSearch("a", true, false, false);
+        literal.find("a", 0);
+        assertEquals("$1", literal.replacement("$1"));
+    }
+
+    @Test
+    public void rejectsEmptyQuery() {
+        assertFalse(new TextSearch("", false, false, false).find("text", 0));
+    }
+}
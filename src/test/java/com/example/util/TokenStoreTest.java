@@ -0,0 +1,57 @@
+package com.example.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the packed per-document token store.
+ */
+public class TokenStoreTest {
+
+    private static long[] lex(String line) {
+        TokenBuffer tokens = new TokenBuffer();
+        JavaLexer.lex(line, 0, line.length(), JavaLexer.STATE_CODE, tokens);
+        return TokenStore.pack(tokens);
+    }
+
+    @Test
+    public void packsStartLengthAndKind() {
+        long token = TokenStore.pack(1234, 56, TokenKind.COMMENT);
+        assertEquals(1234, TokenStore.start(token));
+        assertEquals(56, TokenStore.length(token));
+        assertEquals(1290, TokenStore.end(token));
+        assertEquals(TokenKind.COMMENT, TokenStore.kind(token));
+
+        long[] tokens = lex("int x = 1;");
+        assertEquals(5, tokens.length);
+        assertEquals(TokenKind.KEYWORD, TokenStore.kind(tokens[0]));
+        assertEquals(8, TokenStore.start(tokens[3]));
+    }
+
+    @Test
+    public void shiftsLinesOnEdit() {
+        TokenStore store = new TokenStore();
+        store.reset(4);
+        for (int line = 0; line < 4; line++) {
+            store.set(line, JavaLexer.STATE_CODE, lex("x" + line + ";"));
+        }
+        long[] third = store.get(2);
+        long[] fourth = store.get(3);
+
+        // Two lines inserted after line 1: lines 1-3 are damaged, the rest move down
+        store.replaceLines(1, 0, 2);
+        assertEquals(6, store.lineCount());
+        assertNull(store.get(1));
+        assertNull(store.get(3));
+        assertEquals(third, store.get(4));
+        assertEquals(fourth, store.get(5));
+
+        // Lines 3-4 joined into line 2
+        store.replaceLines(2, 2, 0);
+        assertEquals(4, store.lineCount());
+        assertNull(store.get(2));
+        assertEquals(fourth, store.get(3));
+    }
+}